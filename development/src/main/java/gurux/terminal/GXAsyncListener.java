@@ -0,0 +1,515 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import gurux.common.IGXMediaListener;
+import gurux.common.MediaStateEventArgs;
+import gurux.common.PropertyChangedEventArgs;
+import gurux.common.ReceiveEventArgs;
+import gurux.common.TraceEventArgs;
+import gurux.terminal.enums.OverflowPolicy;
+
+/**
+ * Media listener that delivers events to the wrapped listener from the given
+ * executor. Events are queued to a bounded queue, so a slow listener does
+ * not stall the receiver. Received data that is queued while the listener is
+ * busy is delivered in one event.
+ * 
+ * <pre>
+ * terminal.addListener(new GXAsyncListener(listener, executor, 1024,
+ *         OverflowPolicy.DROP_OLDEST));
+ * </pre>
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXAsyncListener implements IGXMediaListener {
+    /**
+     * Default queue size.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * Event type.
+     */
+    private enum EventType {
+        /**
+         * Error occurred.
+         */
+        ERROR,
+        /**
+         * Data received.
+         */
+        RECEIVED,
+        /**
+         * Media state changed.
+         */
+        MEDIA_STATE,
+        /**
+         * Trace event.
+         */
+        TRACE,
+        /**
+         * Property changed.
+         */
+        PROPERTY
+    }
+
+    /**
+     * Queued event.
+     */
+    private static final class Event {
+        /**
+         * Event type.
+         */
+        private final EventType type;
+        /**
+         * Event sender.
+         */
+        private final Object sender;
+        /**
+         * Event arguments.
+         */
+        private final Object args;
+
+        /**
+         * Constructor.
+         * 
+         * @param eventType
+         *            Event type.
+         * @param eventSender
+         *            Event sender.
+         * @param eventArgs
+         *            Event arguments.
+         */
+        Event(final EventType eventType, final Object eventSender,
+                final Object eventArgs) {
+            type = eventType;
+            sender = eventSender;
+            args = eventArgs;
+        }
+    }
+
+    /**
+     * Wrapped listener.
+     */
+    private final IGXMediaListener listener;
+    /**
+     * Executor that delivers the events.
+     */
+    private final Executor executor;
+    /**
+     * Maximum amount of queued events.
+     */
+    private final int queueSize;
+    /**
+     * What is done when queue is full.
+     */
+    private final OverflowPolicy policy;
+    /**
+     * Queued events.
+     */
+    private final ArrayDeque<Event> queue = new ArrayDeque<Event>();
+    /**
+     * Is delivery task running.
+     */
+    private boolean running;
+    /**
+     * Thread that delivers the events or null.
+     */
+    private volatile Thread deliveryThread;
+    /**
+     * Is overflow reported to the listener.
+     */
+    private boolean overflowReported;
+    /**
+     * Maximum amount of queued events.
+     */
+    private int maxQueueDepth;
+    /**
+     * Amount of removed events.
+     */
+    private long droppedEvents;
+    /**
+     * Amount of delivered batches.
+     */
+    private long batches;
+
+    /**
+     * Task that delivers queued events.
+     */
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            deliverEvents();
+        }
+    };
+
+    /**
+     * Constructor. Default queue size is used and the listener is notified
+     * with an error when the queue is full.
+     * 
+     * @param target
+     *            Wrapped listener.
+     * @param eventExecutor
+     *            Executor that delivers the events.
+     */
+    public GXAsyncListener(final IGXMediaListener target,
+            final Executor eventExecutor) {
+        this(target, eventExecutor, DEFAULT_QUEUE_SIZE, OverflowPolicy.ERROR);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param target
+     *            Wrapped listener.
+     * @param eventExecutor
+     *            Executor that delivers the events.
+     * @param size
+     *            Maximum amount of queued events.
+     * @param overflowPolicy
+     *            What is done when queue is full.
+     */
+    public GXAsyncListener(final IGXMediaListener target,
+            final Executor eventExecutor, final int size,
+            final OverflowPolicy overflowPolicy) {
+        if (target == null || eventExecutor == null
+                || overflowPolicy == null) {
+            throw new IllegalArgumentException("Invalid argument.");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid queue size.");
+        }
+        listener = target;
+        executor = eventExecutor;
+        queueSize = size;
+        policy = overflowPolicy;
+    }
+
+    /**
+     * @return Wrapped listener.
+     */
+    public final IGXMediaListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @return Amount of queued events.
+     */
+    public final int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return Maximum amount of queued events after the counters were reset.
+     */
+    public final int getMaxQueueDepth() {
+        synchronized (queue) {
+            return maxQueueDepth;
+        }
+    }
+
+    /**
+     * @return Amount of events that are removed because the queue was full.
+     */
+    public final long getDroppedEvents() {
+        synchronized (queue) {
+            return droppedEvents;
+        }
+    }
+
+    /**
+     * @return Amount of delivered batches. One batch can contain several
+     *         events.
+     */
+    public final long getBatches() {
+        synchronized (queue) {
+            return batches;
+        }
+    }
+
+    /**
+     * Reset counters.
+     */
+    public final void resetCounters() {
+        synchronized (queue) {
+            maxQueueDepth = queue.size();
+            droppedEvents = 0;
+            batches = 0;
+        }
+    }
+
+    /**
+     * Add event to the queue. Events that the wrapped listener causes on the
+     * delivery thread are added without waiting, because the delivery thread
+     * would wait for itself.
+     * 
+     * @param e
+     *            Added event.
+     */
+    private void enqueue(final Event e) {
+        boolean start = false;
+        synchronized (queue) {
+            // Delivery thread can't wait for itself, so the queue grows
+            // over the limit.
+            boolean full = queue.size() >= queueSize
+                    && (policy != OverflowPolicy.BLOCK
+                            || Thread.currentThread() != deliveryThread);
+            if (full) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    while (queue.size() >= queueSize) {
+                        try {
+                            queue.wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new RuntimeException(ex.getMessage());
+                        }
+                    }
+                } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                    queue.poll();
+                    ++droppedEvents;
+                } else {
+                    ++droppedEvents;
+                    if (overflowReported) {
+                        return;
+                    }
+                    // Error is added even the queue is full.
+                    overflowReported = true;
+                    queue.add(new Event(EventType.ERROR, e.sender,
+                            new RuntimeException("Listener queue is full.")));
+                    return;
+                }
+            }
+            queue.add(e);
+            if (queue.size() > maxQueueDepth) {
+                maxQueueDepth = queue.size();
+            }
+            if (!running) {
+                running = true;
+                start = true;
+            }
+        }
+        if (start) {
+            try {
+                executor.execute(deliver);
+            } catch (RuntimeException ex) {
+                synchronized (queue) {
+                    running = false;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Deliver queued events. Received data events that are next to each other
+     * are delivered in one event.
+     */
+    private void deliverEvents() {
+        ArrayDeque<Event> batch = new ArrayDeque<Event>();
+        boolean completed = false;
+        deliveryThread = Thread.currentThread();
+        try {
+            while (true) {
+                synchronized (queue) {
+                    if (queue.isEmpty()) {
+                        running = false;
+                        completed = true;
+                        return;
+                    }
+                    batch.addAll(queue);
+                    queue.clear();
+                    overflowReported = false;
+                    ++batches;
+                    queue.notifyAll();
+                }
+                Event e;
+                while ((e = batch.poll()) != null) {
+                    if (e.type == EventType.RECEIVED) {
+                        e = merge(e, batch);
+                    }
+                    try {
+                        notify(e);
+                    } catch (RuntimeException ex) {
+                        try {
+                            listener.onError(e.sender, ex);
+                        } catch (RuntimeException ex2) {
+                            // Error handler failed. Delivery continues.
+                        }
+                    }
+                }
+            }
+        } finally {
+            deliveryThread = null;
+            if (!completed) {
+                // Delivery is restarted, so the queue is not left full.
+                boolean restart;
+                synchronized (queue) {
+                    restart = !queue.isEmpty();
+                    running = restart;
+                    queue.notifyAll();
+                }
+                if (restart) {
+                    executor.execute(deliver);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge received data events that are next to each other.
+     * 
+     * @param first
+     *            First received event.
+     * @param batch
+     *            Events in the batch.
+     * @return Merged event.
+     */
+    private static Event merge(final Event first,
+            final ArrayDeque<Event> batch) {
+        ReceiveEventArgs args = (ReceiveEventArgs) first.args;
+        if (!(args.getData() instanceof byte[])) {
+            return first;
+        }
+        int size = 0;
+        int count = 0;
+        for (Event it : batch) {
+            if (!canMerge(first, it)) {
+                break;
+            }
+            size += ((byte[]) ((ReceiveEventArgs) it.args).getData()).length;
+            ++count;
+        }
+        if (count == 0) {
+            return first;
+        }
+        byte[] data = (byte[]) args.getData();
+        byte[] tmp = new byte[data.length + size];
+        System.arraycopy(data, 0, tmp, 0, data.length);
+        int pos = data.length;
+        for (int i = 0; i != count; ++i) {
+            data = (byte[]) ((ReceiveEventArgs) batch.poll().args).getData();
+            System.arraycopy(data, 0, tmp, pos, data.length);
+            pos += data.length;
+        }
+        return new Event(EventType.RECEIVED, first.sender,
+                new ReceiveEventArgs(tmp, args.getSenderInfo()));
+    }
+
+    /**
+     * Check can received data events be merged.
+     * 
+     * @param first
+     *            First received event.
+     * @param e
+     *            Next event.
+     * @return True, if events can be merged.
+     */
+    private static boolean canMerge(final Event first, final Event e) {
+        if (e.type != EventType.RECEIVED || e.sender != first.sender) {
+            return false;
+        }
+        ReceiveEventArgs a = (ReceiveEventArgs) first.args;
+        ReceiveEventArgs b = (ReceiveEventArgs) e.args;
+        if (!(b.getData() instanceof byte[])) {
+            return false;
+        }
+        if (a.getSenderInfo() == null) {
+            return b.getSenderInfo() == null;
+        }
+        return a.getSenderInfo().equals(b.getSenderInfo());
+    }
+
+    /**
+     * Notify wrapped listener.
+     * 
+     * @param e
+     *            Event.
+     */
+    private void notify(final Event e) {
+        switch (e.type) {
+        case ERROR:
+            listener.onError(e.sender, (Exception) e.args);
+            break;
+        case RECEIVED:
+            listener.onReceived(e.sender, (ReceiveEventArgs) e.args);
+            break;
+        case MEDIA_STATE:
+            listener.onMediaStateChange(e.sender, (MediaStateEventArgs) e.args);
+            break;
+        case TRACE:
+            listener.onTrace(e.sender, (TraceEventArgs) e.args);
+            break;
+        default:
+            listener.onPropertyChanged(e.sender,
+                    (PropertyChangedEventArgs) e.args);
+            break;
+        }
+    }
+
+    @Override
+    public final void onError(final Object sender, final Exception ex) {
+        enqueue(new Event(EventType.ERROR, sender, ex));
+    }
+
+    @Override
+    public final void onReceived(final Object sender,
+            final ReceiveEventArgs e) {
+        enqueue(new Event(EventType.RECEIVED, sender, e));
+    }
+
+    @Override
+    public final void onMediaStateChange(final Object sender,
+            final MediaStateEventArgs e) {
+        enqueue(new Event(EventType.MEDIA_STATE, sender, e));
+    }
+
+    @Override
+    public final void onTrace(final Object sender, final TraceEventArgs e) {
+        enqueue(new Event(EventType.TRACE, sender, e));
+    }
+
+    @Override
+    public final void onPropertyChanged(final Object sender,
+            final PropertyChangedEventArgs e) {
+        enqueue(new Event(EventType.PROPERTY, sender, e));
+    }
+}
@@ -0,0 +1,142 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AT command that is sent to the modem. Command bytes are encoded once, so
+ * constant commands are not converted every time they are sent.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXAtCommand {
+    /**
+     * Check that modem answers.
+     */
+    static final GXAtCommand AT = new GXAtCommand("AT\r");
+    /**
+     * Answer incoming call.
+     */
+    static final GXAtCommand ANSWER = new GXAtCommand("ATA\r");
+    /**
+     * Enable verbose error codes.
+     */
+    static final GXAtCommand VERBOSE_ERRORS = new GXAtCommand("AT+CMEE=2\r");
+    /**
+     * Enable numeric error codes.
+     */
+    static final GXAtCommand NUMERIC_ERRORS = new GXAtCommand("AT+CMEE=1\r");
+    /**
+     * Check if PIN code is supported.
+     */
+    static final GXAtCommand PIN_SUPPORTED = new GXAtCommand("AT+CPIN=?\r");
+    /**
+     * Read PIN code status.
+     */
+    static final GXAtCommand PIN_STATUS = new GXAtCommand("AT+CPIN?\r");
+    /**
+     * Read IMEI or serial number.
+     */
+    static final GXAtCommand IDENTITY = new GXAtCommand("AT+CGSN\r");
+    /**
+     * Read model.
+     */
+    static final GXAtCommand MODEL = new GXAtCommand("AT+CGMM\r");
+    /**
+     * Read firmware version.
+     */
+    static final GXAtCommand FIRMWARE = new GXAtCommand("AT+CGMR\r");
+    /**
+     * Dial without phone number.
+     */
+    static final GXAtCommand DIAL = new GXAtCommand("ATD\r\n");
+    /**
+     * Read extended error report.
+     */
+    static final GXAtCommand ERROR_REPORT = new GXAtCommand("AT+CEER\r");
+    /**
+     * Hang up.
+     */
+    static final GXAtCommand HANG_UP = new GXAtCommand("ATH0\r");
+    /**
+     * Hang up when DTR is dropped.
+     */
+    static final GXAtCommand DTR_HANGUP = new GXAtCommand("AT&D2\r");
+    /**
+     * Escape from data mode to command mode.
+     */
+    static final GXAtCommand ESCAPE = new GXAtCommand("+++");
+
+    /**
+     * Command text.
+     */
+    private final String text;
+    /**
+     * Command bytes.
+     */
+    private final byte[] data;
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Command text.
+     */
+    GXAtCommand(final String value) {
+        text = value;
+        data = value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return Command text.
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * @return Command bytes. Returned array must not be modified.
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,254 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response of the AT command. Response contains echo, information lines and
+ * final result code.
+ * 
+ * @author Gurux Ltd.
+ * @see GXAtTokenizer
+ */
+final class GXAtResponse {
+    /**
+     * V.250 final result codes.
+     */
+    enum Result {
+        /**
+         * Final result code is not received.
+         */
+        NONE,
+        /**
+         * Command succeeded.
+         */
+        OK,
+        /**
+         * Command failed.
+         */
+        ERROR,
+        /**
+         * Mobile equipment error.
+         */
+        CME_ERROR,
+        /**
+         * Message service error.
+         */
+        CMS_ERROR,
+        /**
+         * Connection is established.
+         */
+        CONNECT,
+        /**
+         * Connection is lost or it can't be established.
+         */
+        NO_CARRIER,
+        /**
+         * Remote end is busy.
+         */
+        BUSY,
+        /**
+         * Remote end did not answer.
+         */
+        NO_ANSWER,
+        /**
+         * Dial tone is not detected.
+         */
+        NO_DIALTONE
+    }
+
+    /**
+     * Is echo of the command received.
+     */
+    private boolean echo;
+    /**
+     * Information lines before the final result code.
+     */
+    private final List<String> lines = new ArrayList<String>();
+    /**
+     * Final result code.
+     */
+    private Result result = Result.NONE;
+    /**
+     * Line of the final result code.
+     */
+    private String resultLine;
+
+    /**
+     * @return Is echo of the command received.
+     */
+    boolean isEcho() {
+        return echo;
+    }
+
+    /**
+     * @param value
+     *            Is echo of the command received.
+     */
+    void setEcho(final boolean value) {
+        echo = value;
+    }
+
+    /**
+     * @return Information lines before the final result code.
+     */
+    List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Check if information line is received.
+     * 
+     * @param value
+     *            Information line.
+     * @return True, if line is received.
+     */
+    boolean hasLine(final String value) {
+        for (String it : lines) {
+            if (it.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Final result code.
+     */
+    Result getResult() {
+        return result;
+    }
+
+    /**
+     * Set final result code.
+     * 
+     * @param value
+     *            Final result code.
+     * @param line
+     *            Received line.
+     */
+    void setResult(final Result value, final String line) {
+        result = value;
+        resultLine = line;
+    }
+
+    /**
+     * @return Is final result code received.
+     */
+    boolean isFinal() {
+        return result != Result.NONE;
+    }
+
+    /**
+     * @return Did command succeed.
+     */
+    boolean isOk() {
+        return result == Result.OK;
+    }
+
+    /**
+     * @return Did command fail.
+     */
+    boolean isError() {
+        return result == Result.ERROR || result == Result.CME_ERROR
+                || result == Result.CMS_ERROR;
+    }
+
+    /**
+     * @return Is connection established.
+     */
+    boolean isConnect() {
+        return result == Result.CONNECT;
+    }
+
+    /**
+     * Get error text of +CME ERROR or +CMS ERROR.
+     * 
+     * @return Error text or empty string.
+     */
+    String getError() {
+        if (resultLine != null) {
+            int pos = resultLine.indexOf(':');
+            if (pos != -1 && isError()) {
+                return resultLine.substring(pos + 1).trim();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Get connection rate of CONNECT result code.
+     * 
+     * @return Connection rate or empty string.
+     */
+    String getRate() {
+        if (result == Result.CONNECT) {
+            return resultLine.substring("CONNECT".length()).trim();
+        }
+        return "";
+    }
+
+    /**
+     * Get response as text. If command succeeded and information lines are
+     * received, information lines are returned. Otherwise final result code
+     * line is returned.
+     * 
+     * @return Response text.
+     */
+    String getText() {
+        if (result == Result.OK && !lines.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (String it : lines) {
+                if (sb.length() != 0) {
+                    sb.append("\r\n");
+                }
+                sb.append(it);
+            }
+            return sb.toString();
+        }
+        if (resultLine == null) {
+            return "";
+        }
+        return resultLine;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
@@ -0,0 +1,232 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming V.250 result code tokenizer. Received bytes are split to lines
+ * in one pass. Echo of the command, information lines and final result
+ * codes are recognized from whole lines, so result code text inside the
+ * payload is not matched.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXAtTokenizer {
+    /**
+     * Sent command without line terminators.
+     */
+    private final byte[] command;
+    /**
+     * Is response completed when echo is received.
+     */
+    private final boolean echoCompletes;
+    /**
+     * Parsed response.
+     */
+    private final GXAtResponse response = new GXAtResponse();
+    /**
+     * Bytes of the current line.
+     */
+    private byte[] line = new byte[64];
+    /**
+     * Length of the current line.
+     */
+    private int length;
+    /**
+     * Is response completed.
+     */
+    private boolean completed;
+
+    /**
+     * Constructor.
+     * 
+     * @param cmd
+     *            Sent command.
+     * @param waitEcho
+     *            Is response completed when echo is received.
+     */
+    GXAtTokenizer(final GXAtCommand cmd, final boolean waitEcho) {
+        byte[] tmp = cmd.getData();
+        int len = tmp.length;
+        while (len != 0 && (tmp[len - 1] == '\r' || tmp[len - 1] == '\n')) {
+            --len;
+        }
+        command = new byte[len];
+        System.arraycopy(tmp, 0, command, 0, len);
+        echoCompletes = waitEcho;
+    }
+
+    /**
+     * @return Parsed response.
+     */
+    GXAtResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return Is response completed.
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Parse received bytes.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Byte count.
+     * @return True, if response is completed.
+     */
+    boolean parse(final byte[] data, final int index, final int count) {
+        for (int pos = index; pos != index + count && !completed; ++pos) {
+            byte ch = data[pos];
+            if (ch == '\r' || ch == '\n') {
+                if (length != 0) {
+                    handleLine();
+                    length = 0;
+                }
+            } else {
+                if (length == line.length) {
+                    byte[] tmp = new byte[2 * line.length];
+                    System.arraycopy(line, 0, tmp, 0, length);
+                    line = tmp;
+                }
+                line[length] = ch;
+                ++length;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Handle received line.
+     */
+    private void handleLine() {
+        if (!response.isEcho() && response.getLines().isEmpty()
+                && isEcho()) {
+            response.setEcho(true);
+            completed = echoCompletes;
+            return;
+        }
+        GXAtResponse.Result result = GXAtResponse.Result.NONE;
+        if (isLine("OK")) {
+            result = GXAtResponse.Result.OK;
+        } else if (isLine("ERROR")) {
+            result = GXAtResponse.Result.ERROR;
+        } else if (startsWith("+CME ERROR:")) {
+            result = GXAtResponse.Result.CME_ERROR;
+        } else if (startsWith("+CMS ERROR:")) {
+            result = GXAtResponse.Result.CMS_ERROR;
+        } else if (isLine("CONNECT") || startsWith("CONNECT ")) {
+            result = GXAtResponse.Result.CONNECT;
+        } else if (isLine("NO CARRIER")) {
+            result = GXAtResponse.Result.NO_CARRIER;
+        } else if (isLine("BUSY")) {
+            result = GXAtResponse.Result.BUSY;
+        } else if (isLine("NO ANSWER")) {
+            result = GXAtResponse.Result.NO_ANSWER;
+        } else if (isLine("NO DIALTONE") || isLine("NO DIAL TONE")) {
+            result = GXAtResponse.Result.NO_DIALTONE;
+        }
+        String text = new String(line, 0, length, StandardCharsets.US_ASCII)
+                .trim();
+        if (result == GXAtResponse.Result.NONE) {
+            response.getLines().add(text);
+        } else {
+            response.setResult(result, text);
+            completed = true;
+        }
+    }
+
+    /**
+     * @return Is current line echo of the command.
+     */
+    private boolean isEcho() {
+        if (length != command.length) {
+            return false;
+        }
+        for (int pos = 0; pos != length; ++pos) {
+            if (Character.toUpperCase(line[pos]) != Character
+                    .toUpperCase(command[pos])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if current line starts with given text.
+     * 
+     * @param value
+     *            Compared text.
+     * @return True, if line starts with the text.
+     */
+    private boolean startsWith(final String value) {
+        if (length < value.length()) {
+            return false;
+        }
+        for (int pos = 0; pos != value.length(); ++pos) {
+            if (line[pos] != value.charAt(pos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if current line is given text. Trailing spaces are ignored.
+     * 
+     * @param value
+     *            Compared text.
+     * @return True, if line is the text.
+     */
+    private boolean isLine(final String value) {
+        if (!startsWith(value)) {
+            return false;
+        }
+        for (int pos = value.length(); pos != length; ++pos) {
+            if (line[pos] != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
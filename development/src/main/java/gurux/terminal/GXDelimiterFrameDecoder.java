@@ -0,0 +1,124 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.List;
+
+/**
+ * Frame decoder that splits received data with a delimiter. Delimiter is
+ * included in the frame.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXDelimiterFrameDecoder implements IGXFrameDecoder {
+    /**
+     * Default maximum frame size.
+     */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+
+    /**
+     * Compiled delimiters.
+     */
+    private final GXEopMatcher matcher;
+    /**
+     * Maximum frame size.
+     */
+    private final int maxFrameSize;
+    /**
+     * Partially received frame.
+     */
+    private final GXRingBuffer buffer = new GXRingBuffer(256, false);
+
+    /**
+     * Constructor.
+     * 
+     * @param delimiter
+     *            Delimiter. Array of objects is used if there are several
+     *            alternatives.
+     */
+    public GXDelimiterFrameDecoder(final Object delimiter) {
+        this(delimiter, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param delimiter
+     *            Delimiter. Array of objects is used if there are several
+     *            alternatives.
+     * @param maxSize
+     *            Maximum frame size. Longer frames are discarded.
+     */
+    public GXDelimiterFrameDecoder(final Object delimiter, final int maxSize) {
+        matcher = new GXEopMatcher(delimiter);
+        if (matcher.isEmpty()) {
+            throw new IllegalArgumentException("Invalid delimiter.");
+        }
+        maxFrameSize = maxSize;
+    }
+
+    @Override
+    public final void decode(final byte[] data, final int index,
+            final int count, final List<byte[]> frames) {
+        int start = index;
+        int end = index + count;
+        while (start != end) {
+            int pos = matcher.find(data, start, end - start);
+            if (pos == -1) {
+                buffer.put(data, start, end - start);
+                if (buffer.size() > maxFrameSize) {
+                    buffer.clear();
+                }
+                break;
+            }
+            int size = buffer.size() + pos - start;
+            if (size <= maxFrameSize) {
+                byte[] frame = new byte[size];
+                int cnt = buffer.get(frame, 0, buffer.size());
+                System.arraycopy(data, start, frame, cnt, pos - start);
+                frames.add(frame);
+            }
+            buffer.clear();
+            start = pos;
+        }
+    }
+
+    @Override
+    public final void reset() {
+        buffer.clear();
+        matcher.reset();
+    }
+}
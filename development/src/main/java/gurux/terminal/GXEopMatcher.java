@@ -0,0 +1,242 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gurux.common.GXSynchronousMediaBase;
+
+/**
+ * End of packet matcher. All end of packet alternatives are compiled to one
+ * automaton, so received data is scanned only once. Matcher keeps its state
+ * between chunks, so end of packet that is split between two reads is found
+ * when the last byte of it is received.
+ * <p>
+ * Matcher is not thread safe. Callers must synchronize the access.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXEopMatcher {
+    /**
+     * Amount of different byte values.
+     */
+    private static final int ALPHABET = 256;
+
+    /**
+     * Transitions. Next state is transitions[state * ALPHABET + byte].
+     */
+    private final int[] transitions;
+
+    /**
+     * Is end of packet found when state is reached.
+     */
+    private final boolean[] accept;
+
+    /**
+     * Current state.
+     */
+    private int state;
+
+    /**
+     * Constructor.
+     * 
+     * @param eop
+     *            End of packet. Array of objects is used if there are several
+     *            alternatives. Null if end of packet is not used.
+     */
+    GXEopMatcher(final Object eop) {
+        List<byte[]> patterns = new ArrayList<byte[]>();
+        if (eop instanceof Object[]) {
+            for (Object it : (Object[]) eop) {
+                addPattern(patterns, it);
+            }
+        } else {
+            addPattern(patterns, eop);
+        }
+        int count = 1;
+        for (byte[] it : patterns) {
+            count += it.length;
+        }
+        transitions = new int[count * ALPHABET];
+        accept = new boolean[count];
+        build(patterns);
+    }
+
+    /**
+     * Add end of packet alternative.
+     * 
+     * @param patterns
+     *            End of packet alternatives.
+     * @param value
+     *            End of packet.
+     */
+    private static void addPattern(final List<byte[]> patterns,
+            final Object value) {
+        if (value != null) {
+            byte[] tmp = GXSynchronousMediaBase.getAsByteArray(value);
+            if (tmp != null && tmp.length != 0) {
+                patterns.add(tmp);
+            }
+        }
+    }
+
+    /**
+     * Build the automaton.
+     * 
+     * @param patterns
+     *            End of packet alternatives.
+     */
+    private void build(final List<byte[]> patterns) {
+        int states = 1;
+        for (int pos = 0; pos != transitions.length; ++pos) {
+            transitions[pos] = -1;
+        }
+        // Build keyword tree.
+        for (byte[] it : patterns) {
+            int s = 0;
+            for (byte b : it) {
+                int index = s * ALPHABET + (b & 0xFF);
+                if (transitions[index] == -1) {
+                    transitions[index] = states;
+                    ++states;
+                }
+                s = transitions[index];
+            }
+            accept[s] = true;
+        }
+        // Add failure transitions in breadth first order.
+        int[] fail = new int[accept.length];
+        int[] queue = new int[accept.length];
+        int first = 0, last = 0;
+        for (int b = 0; b != ALPHABET; ++b) {
+            int next = transitions[b];
+            if (next == -1) {
+                transitions[b] = 0;
+            } else {
+                fail[next] = 0;
+                queue[last] = next;
+                ++last;
+            }
+        }
+        while (first != last) {
+            int s = queue[first];
+            ++first;
+            accept[s] |= accept[fail[s]];
+            for (int b = 0; b != ALPHABET; ++b) {
+                int index = s * ALPHABET + b;
+                int next = transitions[index];
+                int failNext = transitions[fail[s] * ALPHABET + b];
+                if (next == -1) {
+                    transitions[index] = failNext;
+                } else {
+                    fail[next] = failNext;
+                    queue[last] = next;
+                    ++last;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True, if end of packet is not used.
+     */
+    boolean isEmpty() {
+        return accept.length == 1;
+    }
+
+    /**
+     * Reset matcher state. Partially received end of packet is forgotten.
+     */
+    void reset() {
+        state = 0;
+    }
+
+    /**
+     * Search end of packet from received data. Data is continuation to the
+     * data that was given in the previous call. All data is scanned, so
+     * matcher state is up to date after the call.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of received bytes.
+     * @return Index after the first found end of packet or -1 if end of packet
+     *         is not found.
+     */
+    int match(final byte[] data, final int index, final int count) {
+        int end = index + count;
+        int ret = find(data, index, count);
+        int pos = ret;
+        while (pos != -1 && pos != end) {
+            // Next packet starts after found end of packet.
+            pos = find(data, pos, end - pos);
+        }
+        return ret;
+    }
+
+    /**
+     * Search first end of packet from received data. Data is continuation to
+     * the data that was given in the previous call. Search stops to the
+     * first found end of packet.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of received bytes.
+     * @return Index after the found end of packet or -1 if end of packet is
+     *         not found.
+     */
+    int find(final byte[] data, final int index, final int count) {
+        int s = state;
+        int end = index + count;
+        for (int pos = index; pos != end; ++pos) {
+            s = transitions[s * ALPHABET + (data[pos] & 0xFF)];
+            if (accept[s]) {
+                // Next packet starts from here.
+                state = 0;
+                return pos + 1;
+            }
+        }
+        state = s;
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+import gurux.common.ReceiveParameters;
+
+/**
+ * Request that waits for the reply. Reply is collected directly from the
+ * receiver and the future is completed when end of packet or count is
+ * received.
+ * 
+ * @param <T>
+ *            Reply type.
+ * @author Gurux Ltd.
+ */
+final class GXExchange<T> {
+    /**
+     * Receive parameters.
+     */
+    private final ReceiveParameters<T> args;
+    /**
+     * End of packet or null if count is used.
+     */
+    private final GXEopMatcher matcher;
+    /**
+     * Received reply.
+     */
+    private final GXRingBuffer reply;
+    /**
+     * Future that is completed when reply is received.
+     */
+    private final CompletableFuture<T> future = new CompletableFuture<T>();
+    /**
+     * Timeout task.
+     */
+    private ScheduledFuture<?> timeout;
+    /**
+     * Is whole reply received.
+     */
+    private boolean ready;
+
+    /**
+     * Constructor.
+     * 
+     * @param parameters
+     *            Receive parameters.
+     */
+    GXExchange(final ReceiveParameters<T> parameters) {
+        Class<?> type = parameters.getReplyType();
+        if (type != byte[].class && type != String.class) {
+            throw new IllegalArgumentException(
+                    "Reply type must be byte[] or String.");
+        }
+        if (parameters.getPeek()) {
+            throw new IllegalArgumentException("Peek is not supported.");
+        }
+        args = parameters;
+        if (parameters.getEop() != null) {
+            matcher = new GXEopMatcher(parameters.getEop());
+        } else {
+            matcher = null;
+        }
+        reply = new GXRingBuffer(Math.max(16, parameters.getCount()), false);
+    }
+
+    /**
+     * @return Receive parameters.
+     */
+    ReceiveParameters<T> getParameters() {
+        return args;
+    }
+
+    /**
+     * @return Future that is completed when reply is received.
+     */
+    CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    /**
+     * Set timeout task. Task is cancelled when reply is received.
+     * 
+     * @param value
+     *            Timeout task.
+     */
+    void setTimeout(final ScheduledFuture<?> value) {
+        timeout = value;
+        if (future.isDone()) {
+            value.cancel(false);
+        }
+    }
+
+    /**
+     * @return Is whole reply received.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Append received data to the reply. Future is not completed here.
+     * Caller completes it when the reply is ready.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of received bytes.
+     * @return Amount of bytes that belong to the reply.
+     */
+    int append(final byte[] data, final int index, final int count) {
+        if (ready || future.isDone()) {
+            return 0;
+        }
+        int end = index + count;
+        int pos = index;
+        if (matcher != null) {
+            while (pos != end) {
+                int found = matcher.find(data, pos, end - pos);
+                if (found == -1) {
+                    reply.put(data, pos, end - pos);
+                    return count;
+                }
+                reply.put(data, pos, found - pos);
+                pos = found;
+                if (reply.size() >= args.getCount()) {
+                    ready = true;
+                    return pos - index;
+                }
+            }
+            return count;
+        }
+        int cnt = count;
+        if (args.getCount() > 0) {
+            cnt = Math.min(count, args.getCount() - reply.size());
+        }
+        reply.put(data, index, cnt);
+        if (args.getCount() <= reply.size()) {
+            ready = true;
+        }
+        return cnt;
+    }
+
+    /**
+     * Complete the future with the received reply.
+     */
+    @SuppressWarnings("unchecked")
+    void complete() {
+        byte[] tmp = new byte[reply.size()];
+        reply.get(tmp, 0, tmp.length);
+        T value;
+        if (args.getReplyType() == String.class) {
+            value = (T) new String(tmp, StandardCharsets.US_ASCII);
+        } else {
+            value = (T) tmp;
+        }
+        args.setReply(value);
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        future.complete(value);
+    }
+}
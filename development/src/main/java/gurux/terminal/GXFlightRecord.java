@@ -0,0 +1,123 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import gurux.common.TraceEventArgs;
+import gurux.common.enums.TraceTypes;
+
+/**
+ * Record of the flight recorder.
+ * 
+ * @author Gurux Ltd.
+ * @see GXFlightRecorder
+ */
+public final class GXFlightRecord {
+    /**
+     * Time when the record was made in milliseconds since epoch.
+     */
+    private final long timestamp;
+    /**
+     * Trace type.
+     */
+    private final TraceTypes type;
+    /**
+     * Modem state.
+     */
+    private final int state;
+    /**
+     * Recorded bytes.
+     */
+    private final byte[] data;
+
+    /**
+     * Constructor.
+     * 
+     * @param time
+     *            Time when the record was made in milliseconds since epoch.
+     * @param traceType
+     *            Trace type.
+     * @param modemState
+     *            Modem state.
+     * @param value
+     *            Recorded bytes.
+     */
+    GXFlightRecord(final long time, final TraceTypes traceType,
+            final int modemState, final byte[] value) {
+        timestamp = time;
+        type = traceType;
+        state = modemState;
+        data = value;
+    }
+
+    /**
+     * @return Time when the record was made in milliseconds since epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Trace type.
+     */
+    public TraceTypes getType() {
+        return type;
+    }
+
+    /**
+     * Modem state. 0 is command mode, 1 is connecting and 2 is connected.
+     * 
+     * @return Modem state.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return Recorded bytes.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Convert record to trace event.
+     * 
+     * @return Trace event argument.
+     */
+    public TraceEventArgs toTraceEventArgs() {
+        return new TraceEventArgs(type, data, 0, data.length);
+    }
+}
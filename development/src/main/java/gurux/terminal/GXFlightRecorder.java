@@ -0,0 +1,276 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import gurux.common.enums.TraceTypes;
+
+/**
+ * Flight recorder keeps the latest sent and received bytes in a fixed size
+ * off-heap ring. Recording does not allocate memory, so it can be used
+ * always. When the ring is full, the oldest records are overwritten.
+ * Records are decoded only when they are dumped.
+ * <p>
+ * Each record is stored as record size (4 bytes), timestamp (8 bytes), trace
+ * type (1 byte), modem state (1 byte) and recorded bytes.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#setFlightRecorderSize(int)
+ */
+public final class GXFlightRecorder {
+    /**
+     * Size of the record header.
+     */
+    static final int HEADER_SIZE = 14;
+
+    /**
+     * Off-heap ring.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Position of the oldest record.
+     */
+    private int head;
+    /**
+     * Amount of recorded bytes.
+     */
+    private int size;
+    /**
+     * Amount of records.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            Size of the ring in bytes.
+     */
+    public GXFlightRecorder(final int capacity) {
+        if (capacity <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * @return Size of the ring in bytes.
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return Amount of records in the ring.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Remove all records.
+     */
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        count = 0;
+    }
+
+    /**
+     * Record bytes. If bytes do not fit to the ring, only the beginning is
+     * recorded.
+     * 
+     * @param type
+     *            Trace type.
+     * @param state
+     *            Modem state.
+     * @param data
+     *            Recorded bytes.
+     * @param index
+     *            Start index.
+     * @param length
+     *            Amount of bytes.
+     */
+    public synchronized void record(final TraceTypes type, final int state,
+            final byte[] data, final int index, final int length) {
+        int capacity = buffer.capacity();
+        int cnt = Math.min(length, capacity - HEADER_SIZE);
+        int recordSize = HEADER_SIZE + cnt;
+        // Remove oldest records until the new record fits.
+        while (capacity - size < recordSize) {
+            int old = getInt(head);
+            head = (head + old) % capacity;
+            size -= old;
+            --count;
+        }
+        int pos = (head + size) % capacity;
+        pos = putInt(pos, recordSize);
+        pos = putLong(pos, System.currentTimeMillis());
+        pos = putByte(pos, type.ordinal());
+        pos = putByte(pos, state);
+        int first = Math.min(cnt, capacity - pos);
+        buffer.position(pos);
+        buffer.put(data, index, first);
+        if (first != cnt) {
+            buffer.position(0);
+            buffer.put(data, index + first, cnt - first);
+        }
+        size += recordSize;
+        ++count;
+    }
+
+    /**
+     * Write byte to the ring.
+     * 
+     * @param pos
+     *            Position.
+     * @param value
+     *            Value.
+     * @return Next position.
+     */
+    private int putByte(final int pos, final int value) {
+        buffer.put(pos, (byte) value);
+        return (pos + 1) % buffer.capacity();
+    }
+
+    /**
+     * Write integer to the ring.
+     * 
+     * @param pos
+     *            Position.
+     * @param value
+     *            Value.
+     * @return Next position.
+     */
+    private int putInt(final int pos, final int value) {
+        int p = pos;
+        for (int i = 3; i >= 0; --i) {
+            p = putByte(p, value >>> (8 * i));
+        }
+        return p;
+    }
+
+    /**
+     * Write long to the ring.
+     * 
+     * @param pos
+     *            Position.
+     * @param value
+     *            Value.
+     * @return Next position.
+     */
+    private int putLong(final int pos, final long value) {
+        int p = pos;
+        for (int i = 7; i >= 0; --i) {
+            p = putByte(p, (int) (value >>> (8 * i)));
+        }
+        return p;
+    }
+
+    /**
+     * Read integer from the ring.
+     * 
+     * @param pos
+     *            Position.
+     * @return Value.
+     */
+    private int getInt(final int pos) {
+        int value = 0;
+        for (int i = 0; i != 4; ++i) {
+            value = (value << 8)
+                    | (buffer.get((pos + i) % buffer.capacity()) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Copy recorded bytes in the binary format. Oldest record is first.
+     * 
+     * @return Recorded bytes.
+     */
+    public synchronized byte[] dump() {
+        byte[] tmp = new byte[size];
+        int capacity = buffer.capacity();
+        for (int i = 0; i != size; ++i) {
+            tmp[i] = buffer.get((head + i) % capacity);
+        }
+        return tmp;
+    }
+
+    /**
+     * Decode recorded bytes. Oldest record is first.
+     * 
+     * @return Records.
+     */
+    public List<GXFlightRecord> decode() {
+        return decode(dump());
+    }
+
+    /**
+     * Decode bytes that are dumped from the flight recorder.
+     * 
+     * @param data
+     *            Dumped bytes.
+     * @return Records.
+     * @see #dump()
+     */
+    public static List<GXFlightRecord> decode(final byte[] data) {
+        ByteBuffer bb = ByteBuffer.wrap(data);
+        TraceTypes[] types = TraceTypes.values();
+        List<GXFlightRecord> list = new ArrayList<GXFlightRecord>();
+        while (bb.remaining() >= HEADER_SIZE) {
+            int recordSize = bb.getInt();
+            if (recordSize < HEADER_SIZE
+                    || recordSize - 4 > bb.remaining()) {
+                throw new IllegalArgumentException("Invalid record.");
+            }
+            long time = bb.getLong();
+            int type = bb.get() & 0xFF;
+            int state = bb.get() & 0xFF;
+            byte[] value = new byte[recordSize - HEADER_SIZE];
+            bb.get(value);
+            if (type >= types.length) {
+                throw new IllegalArgumentException("Invalid trace type.");
+            }
+            list.add(new GXFlightRecord(time, types[type], state, value));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,167 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.List;
+
+/**
+ * HDLC frame decoder. Frames start and end with 0x7E flag and frame length is
+ * read from the frame format field. Frames with invalid frame check sequence
+ * (FCS) are discarded. Flags are included in the frame.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXHdlcFrameDecoder implements IGXFrameDecoder {
+    /**
+     * HDLC frame flag.
+     */
+    static final byte FLAG = 0x7E;
+
+    /**
+     * Minimum frame length: frame format, addresses, control and FCS.
+     */
+    static final int MIN_FRAME_LENGTH = 7;
+
+    /**
+     * FCS table.
+     */
+    private static final int[] FCS16_TABLE = new int[256];
+
+    static {
+        for (int pos = 0; pos != 256; ++pos) {
+            int value = pos;
+            for (int bit = 0; bit != 8; ++bit) {
+                if ((value & 1) != 0) {
+                    value = (value >> 1) ^ 0x8408;
+                } else {
+                    value >>= 1;
+                }
+            }
+            FCS16_TABLE[pos] = value;
+        }
+    }
+
+    /**
+     * Amount of invalid frames.
+     */
+    private long invalidFrames;
+    /**
+     * Partially received frame.
+     */
+    private final GXRingBuffer buffer = new GXRingBuffer(256, false);
+
+    /**
+     * Count frame check sequence.
+     * 
+     * @param data
+     *            Data.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of bytes.
+     * @return Frame check sequence.
+     */
+    public static int countFcs16(final byte[] data, final int index,
+            final int count) {
+        int fcs = 0xFFFF;
+        for (int pos = index; pos != index + count; ++pos) {
+            fcs = (fcs >> 8) ^ FCS16_TABLE[(fcs ^ data[pos]) & 0xFF];
+        }
+        return ~fcs & 0xFFFF;
+    }
+
+    /**
+     * @return Amount of discarded invalid frames.
+     */
+    public final long getInvalidFrames() {
+        return invalidFrames;
+    }
+
+    @Override
+    public final void decode(final byte[] data, final int index,
+            final int count, final List<byte[]> frames) {
+        buffer.put(data, index, count);
+        while (true) {
+            // Skip bytes before the opening flag.
+            while (buffer.size() != 0 && buffer.peek(0) != FLAG) {
+                buffer.skip(1);
+            }
+            if (buffer.size() < 3) {
+                break;
+            }
+            // Closing flag of the previous frame.
+            if (buffer.peek(1) == FLAG) {
+                buffer.skip(1);
+                continue;
+            }
+            int format = ((buffer.peek(1) & 0xFF) << 8)
+                    | (buffer.peek(2) & 0xFF);
+            int length = format & 0x7FF;
+            // Frame type must be 3.
+            if ((format & 0xF000) != 0xA000 || length < MIN_FRAME_LENGTH) {
+                ++invalidFrames;
+                buffer.skip(1);
+                continue;
+            }
+            int size = length + 2;
+            if (buffer.size() < size) {
+                break;
+            }
+            if (buffer.peek(size - 1) != FLAG) {
+                ++invalidFrames;
+                buffer.skip(1);
+                continue;
+            }
+            byte[] frame = new byte[size];
+            buffer.peek(frame, 0, size);
+            int fcs = (frame[length - 1] & 0xFF)
+                    | ((frame[length] & 0xFF) << 8);
+            if (fcs != countFcs16(frame, 1, length - 2)) {
+                ++invalidFrames;
+                buffer.skip(1);
+                continue;
+            }
+            frames.add(frame);
+            // Closing flag can be the opening flag of the next frame.
+            buffer.skip(size - 1);
+        }
+    }
+
+    @Override
+    public final void reset() {
+        buffer.clear();
+    }
+}
@@ -0,0 +1,203 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report of the modem initialization. Report tells how long each phase of
+ * the initialization took and how much time was saved compared to the
+ * initialization where all commands are sent with fixed wait times.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#getInitializationReport()
+ */
+public final class GXInitializationReport {
+    /**
+     * Initialization phase.
+     */
+    public static final class Phase {
+        /**
+         * Phase name.
+         */
+        private final String name;
+        /**
+         * Duration in milliseconds.
+         */
+        private final long elapsed;
+        /**
+         * Saved time in milliseconds.
+         */
+        private final long saved;
+        /**
+         * Amount of sent commands.
+         */
+        private final int commands;
+        /**
+         * Amount of skipped commands.
+         */
+        private final int skipped;
+
+        /**
+         * Constructor.
+         * 
+         * @param phaseName
+         *            Phase name.
+         * @param elapsedTime
+         *            Duration in milliseconds.
+         * @param savedTime
+         *            Saved time in milliseconds.
+         * @param sent
+         *            Amount of sent commands.
+         * @param skippedCommands
+         *            Amount of skipped commands.
+         */
+        Phase(final String phaseName, final long elapsedTime,
+                final long savedTime, final int sent,
+                final int skippedCommands) {
+            name = phaseName;
+            elapsed = elapsedTime;
+            saved = savedTime;
+            commands = sent;
+            skipped = skippedCommands;
+        }
+
+        /**
+         * @return Phase name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Duration in milliseconds.
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * Saved time is estimated from the fixed waits and from the average
+         * command time of the skipped commands.
+         * 
+         * @return Saved time in milliseconds.
+         */
+        public long getSaved() {
+            return saved;
+        }
+
+        /**
+         * @return Amount of sent commands.
+         */
+        public int getCommands() {
+            return commands;
+        }
+
+        /**
+         * @return Amount of skipped commands.
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + elapsed + " ms, saved " + saved + " ms, "
+                    + commands + " commands, " + skipped + " skipped";
+        }
+    }
+
+    /**
+     * Phases.
+     */
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    /**
+     * Add phase.
+     * 
+     * @param value
+     *            Phase.
+     */
+    void add(final Phase value) {
+        phases.add(value);
+    }
+
+    /**
+     * @return Initialization phases.
+     */
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * @return Total duration in milliseconds.
+     */
+    public long getElapsed() {
+        long value = 0;
+        for (Phase it : phases) {
+            value += it.elapsed;
+        }
+        return value;
+    }
+
+    /**
+     * @return Total saved time in milliseconds.
+     */
+    public long getSaved() {
+        long value = 0;
+        for (Phase it : phases) {
+            value += it.saved;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase it : phases) {
+            sb.append(it.toString());
+            sb.append("\r\n");
+        }
+        sb.append("Total: ");
+        sb.append(getElapsed());
+        sb.append(" ms, saved ");
+        sb.append(getSaved());
+        sb.append(" ms");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,170 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.List;
+
+/**
+ * Frame decoder for frames that have length field in the header. Frame size
+ * is offset of the length field + size of the length field + value of the
+ * length field + length adjustment.
+ * <p>
+ * For example DLMS wrapper frame is decoded with
+ * <code>new GXLengthFieldFrameDecoder(6, 2, 0)</code>.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXLengthFieldFrameDecoder implements IGXFrameDecoder {
+    /**
+     * Default maximum frame size.
+     */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+
+    /**
+     * Offset of the length field.
+     */
+    private final int lengthOffset;
+    /**
+     * Size of the length field in bytes.
+     */
+    private final int lengthSize;
+    /**
+     * Value that is added to the value of the length field.
+     */
+    private final int lengthAdjustment;
+    /**
+     * Is length field in big endian byte order.
+     */
+    private final boolean bigEndian;
+    /**
+     * Maximum frame size.
+     */
+    private final int maxFrameSize;
+    /**
+     * Amount of invalid frames.
+     */
+    private long invalidFrames;
+    /**
+     * Partially received frame.
+     */
+    private final GXRingBuffer buffer = new GXRingBuffer(256, false);
+
+    /**
+     * Constructor. Length field is in big endian byte order.
+     * 
+     * @param offset
+     *            Offset of the length field.
+     * @param size
+     *            Size of the length field in bytes.
+     * @param adjustment
+     *            Value that is added to the value of the length field.
+     */
+    public GXLengthFieldFrameDecoder(final int offset, final int size,
+            final int adjustment) {
+        this(offset, size, adjustment, true, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param offset
+     *            Offset of the length field.
+     * @param size
+     *            Size of the length field in bytes.
+     * @param adjustment
+     *            Value that is added to the value of the length field.
+     * @param isBigEndian
+     *            Is length field in big endian byte order.
+     * @param maxSize
+     *            Maximum frame size.
+     */
+    public GXLengthFieldFrameDecoder(final int offset, final int size,
+            final int adjustment, final boolean isBigEndian,
+            final int maxSize) {
+        if (offset < 0 || size < 1 || size > 4) {
+            throw new IllegalArgumentException("Invalid length field.");
+        }
+        lengthOffset = offset;
+        lengthSize = size;
+        lengthAdjustment = adjustment;
+        bigEndian = isBigEndian;
+        maxFrameSize = maxSize;
+    }
+
+    /**
+     * @return Amount of discarded invalid frames.
+     */
+    public final long getInvalidFrames() {
+        return invalidFrames;
+    }
+
+    @Override
+    public final void decode(final byte[] data, final int index,
+            final int count, final List<byte[]> frames) {
+        buffer.put(data, index, count);
+        int header = lengthOffset + lengthSize;
+        while (buffer.size() >= header) {
+            long value = 0;
+            for (int pos = 0; pos != lengthSize; ++pos) {
+                long b = buffer.peek(lengthOffset + pos) & 0xFF;
+                if (bigEndian) {
+                    value = (value << 8) | b;
+                } else {
+                    value |= b << (8 * pos);
+                }
+            }
+            long size = header + value + lengthAdjustment;
+            if (size < header || size > maxFrameSize) {
+                // Frame boundary is lost.
+                ++invalidFrames;
+                buffer.clear();
+                break;
+            }
+            if (buffer.size() < size) {
+                break;
+            }
+            byte[] frame = new byte[(int) size];
+            buffer.get(frame, 0, frame.length);
+            frames.add(frame);
+        }
+    }
+
+    @Override
+    public final void reset() {
+        buffer.clear();
+    }
+}
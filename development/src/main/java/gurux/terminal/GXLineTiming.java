@@ -0,0 +1,143 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import gurux.io.BaudRate;
+import gurux.io.Parity;
+import gurux.io.StopBits;
+
+/**
+ * Timing of the serial line calculated from the serial port settings.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXLineTiming {
+    /**
+     * Nanoseconds in second.
+     */
+    static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Nanoseconds in millisecond.
+     */
+    static final long NANOS_PER_MILLISECOND = 1000000L;
+
+    /**
+     * Constructor.
+     */
+    private GXLineTiming() {
+
+    }
+
+    /**
+     * Get amount of bits that are sent for one character. Start bit, data
+     * bits, parity bit and stop bits are counted.
+     * 
+     * @param dataBits
+     *            Amount of data bits.
+     * @param parity
+     *            Used parity.
+     * @param stopBits
+     *            Used stop bits.
+     * @return Amount of bits per character.
+     */
+    static double getBitsPerCharacter(final int dataBits,
+            final Parity parity, final StopBits stopBits) {
+        double bits = 1 + dataBits;
+        if (parity != Parity.NONE) {
+            ++bits;
+        }
+        if (stopBits == StopBits.ONE) {
+            bits += 1;
+        } else {
+            // 1.5 stop bits is rounded up.
+            bits += 2;
+        }
+        return bits;
+    }
+
+    /**
+     * Get how long it takes to send one character.
+     * 
+     * @param baudRate
+     *            Used baud rate.
+     * @param dataBits
+     *            Amount of data bits.
+     * @param parity
+     *            Used parity.
+     * @param stopBits
+     *            Used stop bits.
+     * @return Character time in nanoseconds.
+     */
+    static long getCharacterTime(final BaudRate baudRate, final int dataBits,
+            final Parity parity, final StopBits stopBits) {
+        return (long) (NANOS_PER_SECOND
+                * getBitsPerCharacter(dataBits, parity, stopBits)
+                / baudRate.getValue());
+    }
+
+    /**
+     * Get how many bytes can be sent in a second.
+     * 
+     * @param baudRate
+     *            Used baud rate.
+     * @param dataBits
+     *            Amount of data bits.
+     * @param parity
+     *            Used parity.
+     * @param stopBits
+     *            Used stop bits.
+     * @return Line rate in bytes per second.
+     */
+    static double getLineRate(final BaudRate baudRate, final int dataBits,
+            final Parity parity, final StopBits stopBits) {
+        return baudRate.getValue()
+                / getBitsPerCharacter(dataBits, parity, stopBits);
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds. Result is rounded up and it is at
+     * least one millisecond.
+     * 
+     * @param nanos
+     *            Time in nanoseconds.
+     * @return Time in milliseconds.
+     */
+    static int toMilliseconds(final long nanos) {
+        long ms = (nanos + NANOS_PER_MILLISECOND - 1) / NANOS_PER_MILLISECOND;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, ms));
+    }
+}
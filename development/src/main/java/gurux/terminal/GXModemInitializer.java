@@ -0,0 +1,648 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Modem initialization engine. Modem is probed with short, escalating wait
+ * times and probing stops at the first OK. Readiness URCs that the modem
+ * sends during probing are used to skip commands whose answers are already
+ * known.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXModemInitializer {
+    /**
+     * Wait time of the first probe in milliseconds.
+     */
+    static final int PROBE_WAIT_TIME = 100;
+
+    /**
+     * Maximum length of the concatenated command line. V.250 requires that
+     * modem accepts at least 40 characters.
+     */
+    static final int MAX_LINE_LENGTH = 40;
+
+    /**
+     * Timing of one initialization phase.
+     */
+    private static final class PhaseTime {
+        /**
+         * Phase name.
+         */
+        private final String name;
+        /**
+         * Amount of commands that are sent without the fast path.
+         */
+        private int legacyCommands;
+        /**
+         * Fixed wait without the fast path in milliseconds.
+         */
+        private final long legacySleep;
+        /**
+         * Duration in nanoseconds.
+         */
+        private long elapsed;
+        /**
+         * Amount of sent commands.
+         */
+        private int commands;
+
+        /**
+         * Constructor.
+         * 
+         * @param phaseName
+         *            Phase name.
+         * @param commandCount
+         *            Amount of commands that are sent without the fast path.
+         * @param sleep
+         *            Fixed wait without the fast path in milliseconds.
+         */
+        PhaseTime(final String phaseName, final int commandCount,
+                final long sleep) {
+            name = phaseName;
+            legacyCommands = commandCount;
+            legacySleep = sleep;
+        }
+    }
+
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Command wait time in milliseconds.
+     */
+    private final int waitTime;
+    /**
+     * Finished phases.
+     */
+    private final List<PhaseTime> phases = new ArrayList<PhaseTime>();
+    /**
+     * Current phase.
+     */
+    private PhaseTime current;
+    /**
+     * Start time of the current phase.
+     */
+    private long phaseStart;
+    /**
+     * Total time of the answered commands in nanoseconds.
+     */
+    private long commandTime;
+    /**
+     * Amount of answered commands.
+     */
+    private int commandCount;
+    /**
+     * Has modem sent RDY.
+     */
+    private boolean ready;
+    /**
+     * Has modem sent +CPIN: READY.
+     */
+    private boolean simReady;
+    /**
+     * Has modem echoed commands.
+     */
+    private boolean echo;
+    /**
+     * Capability profile of the modem or null if profiles are not used.
+     */
+    private GXModemProfile profile;
+    /**
+     * Is profile read from the cache.
+     */
+    private boolean cached;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     * @param wt
+     *            Command wait time in milliseconds.
+     */
+    GXModemInitializer(final GXTerminal parent, final int wt) {
+        media = parent;
+        waitTime = wt;
+    }
+
+    /**
+     * @return Has modem sent RDY.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return Is SIM ready.
+     */
+    boolean isSimReady() {
+        return simReady;
+    }
+
+    /**
+     * Start new phase.
+     * 
+     * @param name
+     *            Phase name.
+     * @param legacyCommands
+     *            Amount of commands that are sent without the fast path.
+     * @param legacySleep
+     *            Fixed wait without the fast path in milliseconds.
+     */
+    private void begin(final String name, final int legacyCommands,
+            final long legacySleep) {
+        current = new PhaseTime(name, legacyCommands, legacySleep);
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * End current phase.
+     */
+    private void end() {
+        current.elapsed = System.nanoTime() - phaseStart;
+        phases.add(current);
+        current = null;
+    }
+
+    /**
+     * Send command and check readiness URCs from the reply.
+     * 
+     * @param command
+     *            Command to send.
+     * @param wt
+     *            Wait time in milliseconds.
+     * @param throwError
+     *            Is error thrown if reply is not received.
+     * @return Reply.
+     */
+    GXAtResponse send(final GXAtCommand command, final int wt,
+            final boolean throwError) {
+        long start = System.nanoTime();
+        GXAtResponse r = media.sendCommand(command, wt, false, throwError);
+        if (r.isFinal()) {
+            commandTime += System.nanoTime() - start;
+            ++commandCount;
+        }
+        if (current != null) {
+            ++current.commands;
+        }
+        if (r.isEcho()) {
+            echo = true;
+        }
+        for (String it : r.getLines()) {
+            if ("RDY".equalsIgnoreCase(it)) {
+                ready = true;
+            } else if ("+CPIN: READY".equalsIgnoreCase(it)) {
+                simReady = true;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Probe the modem with escalating wait times until it answers OK. Wait
+     * time is doubled after each unanswered probe. If modem sends RDY, next
+     * probe is sent with the shortest wait time. Receive buffer is cleared
+     * before each probe, and after the modem has answered if earlier probes
+     * were unanswered, so late replies are not taken as replies to the next
+     * commands.
+     */
+    void probe() {
+        begin("Probe", 3, GXTerminal.INITIALIZE_SLEEP);
+        int wt = PROBE_WAIT_TIME;
+        long total = 0;
+        while (true) {
+            boolean wasReady = ready;
+            int w = Math.min(wt, waitTime);
+            // Late reply of the previous probe is not taken as a reply to
+            // this probe.
+            media.resetSynchronousBuffer();
+            if (send(GXAtCommand.AT, w, false).isOk()) {
+                if (total != 0) {
+                    // Wait replies of the unanswered probes.
+                    try {
+                        Thread.sleep(PROBE_WAIT_TIME);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex.getMessage());
+                    }
+                    media.resetSynchronousBuffer();
+                }
+                break;
+            }
+            total += w;
+            if (total >= 2L * waitTime) {
+                throw new RuntimeException(
+                        "Failed to receive answer from the modem. "
+                                + "Check serial port.");
+            }
+            if (!wasReady && ready) {
+                // Modem has just started. It answers quickly now.
+                wt = PROBE_WAIT_TIME;
+            } else {
+                wt *= 2;
+            }
+        }
+        end();
+    }
+
+    /**
+     * @return Capability profile of the modem or null if profiles are not
+     *         used.
+     */
+    GXModemProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Read identity of the modem and get the capability profile from the
+     * cache. If profile is not found, model and firmware are read and new
+     * profile is created.
+     * 
+     * @param cache
+     *            Profile cache.
+     * @param port
+     *            Serial port name.
+     */
+    void identify(final GXModemProfileCache cache, final String port) {
+        begin("Identify", 0, 0);
+        GXAtResponse r = send(GXAtCommand.IDENTITY, waitTime, false);
+        String identity = "";
+        if (r.isOk() && !r.getLines().isEmpty()) {
+            identity = r.getLines().get(0);
+        }
+        profile = cache.get(port, identity);
+        cached = profile != null;
+        if (!cached) {
+            profile = new GXModemProfile(port, identity);
+            r = send(GXAtCommand.MODEL, waitTime, false);
+            if (r.isOk()) {
+                profile.setModel(r.getText());
+            }
+            r = send(GXAtCommand.FIRMWARE, waitTime, false);
+            if (r.isOk()) {
+                profile.setFirmware(r.getText());
+            }
+        }
+        profile.setEcho(echo);
+        end();
+    }
+
+    /**
+     * Enable verbose error codes or numeric error codes if verbose codes are
+     * not supported. If supported error mode is known, it is enabled
+     * directly.
+     */
+    void configureErrors() {
+        begin("Error reporting", 2, 0);
+        int mode = GXModemProfile.UNKNOWN;
+        if (cached) {
+            mode = profile.getErrorMode();
+        }
+        if (mode == 2) {
+            send(GXAtCommand.VERBOSE_ERRORS, waitTime, false);
+        } else if (mode == 1) {
+            current.legacyCommands = 3;
+            send(GXAtCommand.NUMERIC_ERRORS, waitTime, false);
+        } else if (mode == 0) {
+            current.legacyCommands = 3;
+        } else {
+            mode = 2;
+            if (!send(GXAtCommand.VERBOSE_ERRORS, waitTime, false).isOk()) {
+                current.legacyCommands = 3;
+                mode = 1;
+                if (!send(GXAtCommand.NUMERIC_ERRORS, waitTime, false)
+                        .isOk()) {
+                    mode = 0;
+                }
+            }
+        }
+        if (profile != null) {
+            profile.setErrorMode(mode);
+        }
+        end();
+    }
+
+    /**
+     * Check PIN code status and enter PIN code if it is needed. Status is
+     * not asked if modem has already told that SIM is ready. PIN code is
+     * not handled if modem doesn't support AT+CPIN or SIM is not inserted.
+     * 
+     * @param pin
+     *            PIN code.
+     */
+    void checkPin(final String pin) {
+        begin("PIN", 2, 0);
+        if (cached && (profile.getPinReady()
+                || Boolean.FALSE.equals(profile.getPinSupported()))) {
+            // PIN code is already accepted or it is not supported.
+            simReady = profile.getPinReady();
+        } else if (!simReady) {
+            boolean supported;
+            if (cached && profile.getPinSupported() != null) {
+                supported = profile.getPinSupported();
+            } else {
+                supported = send(GXAtCommand.PIN_SUPPORTED, waitTime, false)
+                        .isOk();
+            }
+            GXAtResponse r = null;
+            if (supported) {
+                r = send(GXAtCommand.PIN_STATUS, waitTime, false);
+                if (r.getResult() == GXAtResponse.Result.CME_ERROR) {
+                    if (!isPinUnavailable(r)) {
+                        throw new RuntimeException(
+                                "Failed to read PIN code.\r\n" + r.getError());
+                    }
+                    supported = false;
+                } else if (!r.isOk()) {
+                    supported = false;
+                }
+            }
+            if (profile != null) {
+                profile.setPinSupported(supported);
+            }
+            if (supported && !r.hasLine("+CPIN: READY")) {
+                if (pin == null || pin.equals("")) {
+                    throw new RuntimeException("PIN is needed.");
+                }
+                current.legacyCommands += 2;
+                r = send(new GXAtCommand(
+                        String.format("AT+CPIN=\"%1$s\"\r", pin)), waitTime,
+                        false);
+                if (!r.isOk()) {
+                    throw new RuntimeException(
+                            "Failed to set PIN code." + r.getError());
+                }
+                r = send(GXAtCommand.PIN_STATUS, waitTime, false);
+                if (!r.hasLine("+CPIN: READY")) {
+                    throw new RuntimeException(
+                            "Failed to set PIN code." + r.getError());
+                }
+            }
+            simReady = supported && r.hasLine("+CPIN: READY");
+        }
+        if (profile != null) {
+            profile.setPinReady(simReady);
+        }
+        end();
+    }
+
+    /**
+     * Check if PIN code can't be read because the operation is not
+     * supported or SIM is not inserted. Verbose and numeric error codes are
+     * checked.
+     * 
+     * @param r
+     *            Reply of the PIN status query.
+     * @return True, if PIN code is not used.
+     */
+    private static boolean isPinUnavailable(final GXAtResponse r) {
+        String err = r.getError();
+        return "4".equals(err) || "10".equals(err)
+                || "operation not supported".equalsIgnoreCase(err)
+                || "SIM not inserted".equalsIgnoreCase(err);
+    }
+
+    /**
+     * Execute initialize commands. Adjacent commands are concatenated to one
+     * command line if modem accepts it. If concatenated command fails,
+     * commands are sent one by one, so the failed command is found. If
+     * concatenated command is not answered, concatenation is not supported.
+     * Next command is sent as soon as the final result code of the previous
+     * command is received.
+     * 
+     * @param commands
+     *            Initialize commands.
+     * @return Reply of each command.
+     */
+    GXAtResponse[] execute(final String[] commands) {
+        begin("Initialize commands", commands.length, 0);
+        GXAtResponse[] results = new GXAtResponse[commands.length];
+        boolean concatenate = profile == null
+                || !Boolean.FALSE.equals(profile.getConcatenation());
+        int pos = 0;
+        while (pos != commands.length) {
+            int end = pos;
+            if (concatenate) {
+                end = getGroupEnd(commands, pos);
+            }
+            if (end - pos > 1) {
+                StringBuilder sb = new StringBuilder("AT");
+                for (int i = pos; i != end; ++i) {
+                    if (i != pos && isExtended(commands[i - 1])) {
+                        sb.append(';');
+                    }
+                    sb.append(commands[i].substring(2));
+                }
+                sb.append('\r');
+                GXAtResponse r =
+                        send(new GXAtCommand(sb.toString()), waitTime, false);
+                if (r.isOk()) {
+                    split(r, commands, pos, end, results);
+                    if (profile != null) {
+                        profile.setConcatenation(true);
+                    }
+                    pos = end;
+                    continue;
+                }
+                if (!r.isFinal()) {
+                    // Some modems don't answer to too long command line.
+                    concatenate = false;
+                    if (profile != null) {
+                        profile.setConcatenation(false);
+                    }
+                    media.resetSynchronousBuffer();
+                }
+                // Find the failed command.
+                boolean failed = false;
+                for (int i = pos; i != end; ++i) {
+                    results[i] = send(new GXAtCommand(commands[i] + "\r\n"),
+                            waitTime, true);
+                    failed |= !results[i].isOk();
+                }
+                if (!failed) {
+                    // Modem does not accept concatenated commands.
+                    concatenate = false;
+                    if (profile != null) {
+                        profile.setConcatenation(false);
+                    }
+                }
+                pos = end;
+            } else {
+                results[pos] = send(new GXAtCommand(commands[pos] + "\r\n"),
+                        waitTime, true);
+                ++pos;
+            }
+        }
+        end();
+        return results;
+    }
+
+    /**
+     * Find end of the commands that can be concatenated.
+     * 
+     * @param commands
+     *            Commands.
+     * @param start
+     *            First command.
+     * @return Index after the last command in the group.
+     */
+    private static int getGroupEnd(final String[] commands, final int start) {
+        int length = 2;
+        int pos = start;
+        while (pos != commands.length && canConcatenate(commands[pos])) {
+            length += commands[pos].length() - 1;
+            if (length > MAX_LINE_LENGTH) {
+                break;
+            }
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Check if command can be concatenated with other commands. Dial, answer,
+     * hang up, online and reset commands are sent alone.
+     * 
+     * @param command
+     *            Command.
+     * @return True, if command can be concatenated.
+     */
+    private static boolean canConcatenate(final String command) {
+        if (command.length() < 3
+                || !command.regionMatches(true, 0, "AT", 0, 2)) {
+            return false;
+        }
+        char ch = Character.toUpperCase(command.charAt(2));
+        if (ch == 'D' || ch == 'A' || ch == 'H' || ch == 'O' || ch == 'Z') {
+            return false;
+        }
+        return !command.regionMatches(true, 2, "&F", 0, 2);
+    }
+
+    /**
+     * Check if command is an extended command. Extended command must be
+     * terminated with semicolon when other commands follow it.
+     * 
+     * @param command
+     *            Command.
+     * @return True, if command is an extended command.
+     */
+    private static boolean isExtended(final String command) {
+        char ch = command.charAt(2);
+        return !Character.isLetter(ch) && ch != '&';
+    }
+
+    /**
+     * Split reply of the concatenated command to the commands. Information
+     * line that starts with the name of the command belongs to that command.
+     * Other lines belong to the previous command that has a reply line.
+     * 
+     * @param reply
+     *            Reply of the concatenated command.
+     * @param commands
+     *            Commands.
+     * @param start
+     *            First concatenated command.
+     * @param end
+     *            Index after the last concatenated command.
+     * @param results
+     *            Replies of the commands.
+     */
+    private static void split(final GXAtResponse reply,
+            final String[] commands, final int start, final int end,
+            final GXAtResponse[] results) {
+        for (int i = start; i != end; ++i) {
+            results[i] = new GXAtResponse();
+            results[i].setResult(GXAtResponse.Result.OK, "OK");
+        }
+        int owner = start;
+        for (String line : reply.getLines()) {
+            for (int i = start; i != end; ++i) {
+                String name = getName(commands[i]);
+                if (name.length() > 1 && line.regionMatches(true, 0, name, 0,
+                        name.length())) {
+                    owner = i;
+                    break;
+                }
+            }
+            results[owner].getLines().add(line);
+        }
+    }
+
+    /**
+     * Get name of the command without AT prefix and parameters.
+     * 
+     * @param command
+     *            Command.
+     * @return Command name.
+     */
+    private static String getName(final String command) {
+        int end = 2;
+        while (end != command.length() && command.charAt(end) != '='
+                && command.charAt(end) != '?') {
+            ++end;
+        }
+        return command.substring(2, end);
+    }
+
+    /**
+     * Create report. Saved time is estimated from the fixed waits and from
+     * the average command time of the skipped commands.
+     * 
+     * @return Initialization report.
+     */
+    GXInitializationReport finish() {
+        long average = 0;
+        if (commandCount != 0) {
+            average = commandTime / commandCount;
+        }
+        GXInitializationReport report = new GXInitializationReport();
+        for (PhaseTime it : phases) {
+            long legacy = it.legacySleep * GXLineTiming.NANOS_PER_MILLISECOND
+                    + it.legacyCommands * average;
+            report.add(new GXInitializationReport.Phase(it.name,
+                    it.elapsed / GXLineTiming.NANOS_PER_MILLISECOND,
+                    (legacy - it.elapsed) / GXLineTiming.NANOS_PER_MILLISECOND,
+                    it.commands, Math.max(0, it.legacyCommands - it.commands)));
+        }
+        return report;
+    }
+}
@@ -0,0 +1,247 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+/**
+ * Capability profile of the modem. Profile tells what the modem answered
+ * when it was initialized, so the same questions are not asked again when
+ * the port is opened next time.
+ * 
+ * @author Gurux Ltd.
+ * @see GXModemProfileCache
+ */
+public final class GXModemProfile {
+    /**
+     * Error mode is not known.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Serial port name.
+     */
+    private final String port;
+    /**
+     * Modem identity (IMEI or serial number).
+     */
+    private final String identity;
+    /**
+     * Modem model.
+     */
+    private String model;
+    /**
+     * Firmware version.
+     */
+    private String firmware;
+    /**
+     * Supported CMEE error mode. 2 is verbose, 1 is numeric and 0 is not
+     * supported.
+     */
+    private int errorMode = UNKNOWN;
+    /**
+     * Is PIN code query supported.
+     */
+    private Boolean pinSupported;
+    /**
+     * Is PIN code accepted.
+     */
+    private boolean pinReady;
+    /**
+     * Does modem echo commands.
+     */
+    private boolean echo;
+    /**
+     * Does modem accept concatenated commands.
+     */
+    private Boolean concatenation;
+    /**
+     * Time when profile was updated in milliseconds since epoch.
+     */
+    private long updated;
+
+    /**
+     * Constructor.
+     * 
+     * @param portName
+     *            Serial port name.
+     * @param modemIdentity
+     *            Modem identity (IMEI or serial number).
+     */
+    public GXModemProfile(final String portName, final String modemIdentity) {
+        port = portName;
+        identity = modemIdentity;
+        updated = System.currentTimeMillis();
+    }
+
+    /**
+     * @return Serial port name.
+     */
+    public String getPort() {
+        return port;
+    }
+
+    /**
+     * @return Modem identity (IMEI or serial number).
+     */
+    public String getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return Modem model.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @param value
+     *            Modem model.
+     */
+    public void setModel(final String value) {
+        model = value;
+    }
+
+    /**
+     * @return Firmware version.
+     */
+    public String getFirmware() {
+        return firmware;
+    }
+
+    /**
+     * @param value
+     *            Firmware version.
+     */
+    public void setFirmware(final String value) {
+        firmware = value;
+    }
+
+    /**
+     * @return Supported CMEE error mode. 2 is verbose, 1 is numeric, 0 is not
+     *         supported and UNKNOWN if not known.
+     */
+    public int getErrorMode() {
+        return errorMode;
+    }
+
+    /**
+     * @param value
+     *            Supported CMEE error mode.
+     */
+    public void setErrorMode(final int value) {
+        errorMode = value;
+    }
+
+    /**
+     * @return Is PIN code query supported or null if not known.
+     */
+    public Boolean getPinSupported() {
+        return pinSupported;
+    }
+
+    /**
+     * @param value
+     *            Is PIN code query supported.
+     */
+    public void setPinSupported(final Boolean value) {
+        pinSupported = value;
+    }
+
+    /**
+     * @return Is PIN code accepted.
+     */
+    public boolean getPinReady() {
+        return pinReady;
+    }
+
+    /**
+     * @param value
+     *            Is PIN code accepted.
+     */
+    public void setPinReady(final boolean value) {
+        pinReady = value;
+    }
+
+    /**
+     * @return Does modem echo commands.
+     */
+    public boolean getEcho() {
+        return echo;
+    }
+
+    /**
+     * @param value
+     *            Does modem echo commands.
+     */
+    public void setEcho(final boolean value) {
+        echo = value;
+    }
+
+    /**
+     * @return Does modem accept concatenated commands or null if not known.
+     */
+    public Boolean getConcatenation() {
+        return concatenation;
+    }
+
+    /**
+     * @param value
+     *            Does modem accept concatenated commands.
+     */
+    public void setConcatenation(final Boolean value) {
+        concatenation = value;
+    }
+
+    /**
+     * @return Time when profile was updated in milliseconds since epoch.
+     */
+    public long getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @param value
+     *            Time when profile was updated in milliseconds since epoch.
+     */
+    public void setUpdated(final long value) {
+        updated = value;
+    }
+
+    @Override
+    public String toString() {
+        return port + " " + identity + " " + model + " " + firmware;
+    }
+}
@@ -0,0 +1,321 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Cache of the modem capability profiles. Profiles are kept in memory and
+ * optionally saved to a file. Profile is keyed by the serial port name and it
+ * is used only if identity of the modem is the same and profile has not
+ * expired.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#setModemProfileCache(GXModemProfileCache)
+ */
+public final class GXModemProfileCache {
+    /**
+     * Default time to live is one day.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 24 * 60 * 60 * 1000L;
+
+    /**
+     * File lock can be held only once in the JVM, so saving is serialized
+     * also between the caches.
+     */
+    private static final Object SAVE_LOCK = new Object();
+
+    /**
+     * Profiles by port name.
+     */
+    private final Map<String, GXModemProfile> profiles =
+            new HashMap<String, GXModemProfile>();
+    /**
+     * File where profiles are saved or null if profiles are kept only in
+     * memory.
+     */
+    private File file;
+    /**
+     * How long profile is valid in milliseconds.
+     */
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /**
+     * Constructor. Profiles are kept only in memory.
+     */
+    public GXModemProfileCache() {
+    }
+
+    /**
+     * Constructor. Profiles are read from the file if it exists and saved to
+     * the file when they are changed.
+     * 
+     * @param value
+     *            File where profiles are saved.
+     * @throws IOException
+     *             Reading the file failed.
+     */
+    public GXModemProfileCache(final File value) throws IOException {
+        file = value;
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * @return File where profiles are saved or null if profiles are kept only
+     *         in memory.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return How long profile is valid in milliseconds.
+     */
+    public synchronized long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @param value
+     *            How long profile is valid in milliseconds.
+     */
+    public synchronized void setTimeToLive(final long value) {
+        timeToLive = value;
+    }
+
+    /**
+     * Get profile of the modem.
+     * 
+     * @param port
+     *            Serial port name.
+     * @param identity
+     *            Modem identity.
+     * @return Profile or null if profile is not found, modem is changed or
+     *         profile has expired.
+     */
+    public synchronized GXModemProfile get(final String port,
+            final String identity) {
+        GXModemProfile p = profiles.get(port);
+        if (p == null) {
+            return null;
+        }
+        if (!p.getIdentity().equals(identity) || System.currentTimeMillis()
+                - p.getUpdated() > timeToLive) {
+            profiles.remove(port);
+            return null;
+        }
+        return p;
+    }
+
+    /**
+     * Add or update profile of the modem.
+     * 
+     * @param value
+     *            Modem profile.
+     */
+    public void put(final GXModemProfile value) {
+        synchronized (this) {
+            value.setUpdated(System.currentTimeMillis());
+            profiles.put(value.getPort(), value);
+        }
+        save();
+    }
+
+    /**
+     * Remove profile of the port. Profile is removed when initialization
+     * fails, so the modem is probed again.
+     * 
+     * @param port
+     *            Serial port name.
+     */
+    public void remove(final String port) {
+        boolean removed;
+        synchronized (this) {
+            removed = profiles.remove(port) != null;
+        }
+        if (removed) {
+            save();
+        }
+    }
+
+    /**
+     * Remove all profiles.
+     */
+    public void clear() {
+        synchronized (this) {
+            profiles.clear();
+        }
+        save();
+    }
+
+    /**
+     * Read profiles from the file. Invalid profile is skipped, so it's read
+     * again from the modem.
+     * 
+     * @throws IOException
+     *             Reading the file failed.
+     */
+    private void load() throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            p.load(in);
+        }
+        synchronized (this) {
+            for (String name : p.stringPropertyNames()) {
+                if (!name.endsWith(".identity")) {
+                    continue;
+                }
+                String port = name.substring(0,
+                        name.length() - ".identity".length());
+                GXModemProfile profile =
+                        new GXModemProfile(port, p.getProperty(name));
+                profile.setModel(p.getProperty(port + ".model"));
+                profile.setFirmware(p.getProperty(port + ".firmware"));
+                String tmp = p.getProperty(port + ".pinSupported");
+                if (tmp != null) {
+                    profile.setPinSupported(Boolean.valueOf(tmp));
+                }
+                tmp = p.getProperty(port + ".concatenation");
+                if (tmp != null) {
+                    profile.setConcatenation(Boolean.valueOf(tmp));
+                }
+                profile.setPinReady(Boolean
+                        .parseBoolean(p.getProperty(port + ".pinReady")));
+                profile.setEcho(
+                        Boolean.parseBoolean(p.getProperty(port + ".echo")));
+                try {
+                    profile.setErrorMode(Integer.parseInt(p.getProperty(
+                            port + ".errorMode",
+                            String.valueOf(GXModemProfile.UNKNOWN))));
+                    profile.setUpdated(Long.parseLong(
+                            p.getProperty(port + ".updated", "0")));
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                profiles.put(port, profile);
+            }
+        }
+    }
+
+    /**
+     * Save profiles to the file. Profiles are written to a temporary file
+     * that replaces the file, so a reader never sees a partly written file.
+     * Other processes are locked out with a lock file. Errors are ignored,
+     * because the cache only speeds up the initialization.
+     */
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File lockFile = new File(file.getPath() + ".lock");
+        synchronized (SAVE_LOCK) {
+            try (FileChannel ch = FileChannel.open(lockFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Lock is released when the channel is closed.
+                ch.lock();
+                // Profiles are read under the file lock, so the newest
+                // profiles are saved last.
+                Properties p = getProperties();
+                File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+                try {
+                    try (OutputStream out = new FileOutputStream(tmp)) {
+                        p.store(out, "Gurux terminal modem profiles");
+                    }
+                    try {
+                        Files.move(tmp.toPath(), file.toPath(),
+                                StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        Files.move(tmp.toPath(), file.toPath(),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    tmp.delete();
+                }
+            } catch (IOException ex) {
+                // Profiles are read again from the modem.
+            }
+        }
+    }
+
+    /**
+     * @return Profiles as properties.
+     */
+    private synchronized Properties getProperties() {
+        Properties p = new Properties();
+        for (GXModemProfile it : profiles.values()) {
+            String port = it.getPort();
+            p.setProperty(port + ".identity", it.getIdentity());
+            if (it.getModel() != null) {
+                p.setProperty(port + ".model", it.getModel());
+            }
+            if (it.getFirmware() != null) {
+                p.setProperty(port + ".firmware", it.getFirmware());
+            }
+            p.setProperty(port + ".errorMode",
+                    String.valueOf(it.getErrorMode()));
+            if (it.getPinSupported() != null) {
+                p.setProperty(port + ".pinSupported",
+                        String.valueOf(it.getPinSupported()));
+            }
+            if (it.getConcatenation() != null) {
+                p.setProperty(port + ".concatenation",
+                        String.valueOf(it.getConcatenation()));
+            }
+            p.setProperty(port + ".pinReady",
+                    String.valueOf(it.getPinReady()));
+            p.setProperty(port + ".echo", String.valueOf(it.getEcho()));
+            p.setProperty(port + ".updated", String.valueOf(it.getUpdated()));
+        }
+        return p;
+    }
+}
@@ -0,0 +1,343 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import gurux.io.NativeCode;
+
+/**
+ * Access to the native serial port. Terminal and receiver use the serial
+ * port through this class, so the native library can be replaced in the
+ * tests.
+ */
+class GXNativePort {
+    /**
+     * Native serial port.
+     */
+    static final GXNativePort NATIVE = new GXNativePort();
+
+    /**
+     * Open serial port.
+     * 
+     * @param port
+     *            Serial port name.
+     * @param closing
+     *            Handle that is used to cancel the read.
+     * @return Serial port handle.
+     */
+    int openSerialPort(final String port, final long[] closing) {
+        return NativeCode.openSerialPort(port, closing);
+    }
+
+    /**
+     * Close serial port.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param closing
+     *            Handle that is used to cancel the read.
+     */
+    void closeSerialPort(final long handle, final long closing) {
+        NativeCode.closeSerialPort(handle, closing);
+    }
+
+    /**
+     * Write data to the serial port.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param data
+     *            Data to write.
+     * @param timeout
+     *            Write timeout in milliseconds.
+     */
+    void write(final long handle, final byte[] data, final int timeout) {
+        NativeCode.write(handle, data, timeout);
+    }
+
+    /**
+     * Read data from the serial port.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param waitTime
+     *            Wait time in milliseconds.
+     * @param closing
+     *            Handle that is used to cancel the read.
+     * @return Received data. Array is empty if nothing is received.
+     */
+    byte[] read(final long handle, final int waitTime, final long closing) {
+        return NativeCode.read(handle, waitTime, closing);
+    }
+
+    /**
+     * Get amount of received bytes that are waiting in the input buffer.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Amount of received bytes.
+     */
+    int getBytesToRead(final long handle) {
+        return NativeCode.getBytesToRead(handle);
+    }
+
+    /**
+     * Get amount of bytes that are waiting in the output buffer.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Amount of bytes to write.
+     */
+    int getBytesToWrite(final long handle) {
+        return NativeCode.getBytesToWrite(handle);
+    }
+
+    /**
+     * Get break state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is port in a break state.
+     */
+    boolean getBreakState(final long handle) {
+        return NativeCode.getBreakState(handle);
+    }
+
+    /**
+     * Set break state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Is port in a break state.
+     */
+    void setBreakState(final long handle, final boolean value) {
+        NativeCode.setBreakState(handle, value);
+    }
+
+    /**
+     * Get Carrier Detect state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is Carrier Detect in holding state.
+     */
+    boolean getCDHolding(final long handle) {
+        return NativeCode.getCDHolding(handle);
+    }
+
+    /**
+     * Get Clear-to-Send state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is Clear-to-Send in holding state.
+     */
+    boolean getCtsHolding(final long handle) {
+        return NativeCode.getCtsHolding(handle);
+    }
+
+    /**
+     * Get Data Set Ready state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is Data Set Ready set.
+     */
+    boolean getDsrHolding(final long handle) {
+        return NativeCode.getDsrHolding(handle);
+    }
+
+    /**
+     * Get Data Terminal Ready state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is DTR enabled.
+     */
+    boolean getDtrEnable(final long handle) {
+        return NativeCode.getDtrEnable(handle);
+    }
+
+    /**
+     * Set Data Terminal Ready state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Is DTR enabled.
+     */
+    void setDtrEnable(final long handle, final boolean value) {
+        NativeCode.setDtrEnable(handle, value);
+    }
+
+    /**
+     * Get Request To Send state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Is RTS enabled.
+     */
+    boolean getRtsEnable(final long handle) {
+        return NativeCode.getRtsEnable(handle);
+    }
+
+    /**
+     * Set Request To Send state.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Is RTS enabled.
+     */
+    void setRtsEnable(final long handle, final boolean value) {
+        NativeCode.setRtsEnable(handle, value);
+    }
+
+    /**
+     * Get baud rate.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Baud rate.
+     */
+    int getBaudRate(final long handle) {
+        return NativeCode.getBaudRate(handle);
+    }
+
+    /**
+     * Set baud rate.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Baud rate.
+     */
+    void setBaudRate(final long handle, final int value) {
+        NativeCode.setBaudRate(handle, value);
+    }
+
+    /**
+     * Get amount of data bits.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Amount of data bits.
+     */
+    int getDataBits(final long handle) {
+        return NativeCode.getDataBits(handle);
+    }
+
+    /**
+     * Set amount of data bits.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Amount of data bits.
+     */
+    void setDataBits(final long handle, final int value) {
+        NativeCode.setDataBits(handle, value);
+    }
+
+    /**
+     * Get parity.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Parity as ordinal of the Parity enumeration.
+     */
+    int getParity(final long handle) {
+        return NativeCode.getParity(handle);
+    }
+
+    /**
+     * Set parity.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Parity as ordinal of the Parity enumeration.
+     */
+    void setParity(final long handle, final int value) {
+        NativeCode.setParity(handle, value);
+    }
+
+    /**
+     * Get stop bits.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Stop bits as ordinal of the StopBits enumeration.
+     */
+    int getStopBits(final long handle) {
+        return NativeCode.getStopBits(handle);
+    }
+
+    /**
+     * Set stop bits.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Stop bits as ordinal of the StopBits enumeration.
+     */
+    void setStopBits(final long handle, final int value) {
+        NativeCode.setStopBits(handle, value);
+    }
+
+    /**
+     * Get handshake.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @return Handshake as ordinal of the Handshake enumeration.
+     */
+    int getHandshake(final long handle) {
+        return NativeCode.getHandshake(handle);
+    }
+
+    /**
+     * Set handshake.
+     * 
+     * @param handle
+     *            Serial port handle.
+     * @param value
+     *            Handshake as ordinal of the Handshake enumeration.
+     */
+    void setHandshake(final long handle, final int value) {
+        NativeCode.setHandshake(handle, value);
+    }
+}
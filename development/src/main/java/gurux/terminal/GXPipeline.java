@@ -0,0 +1,385 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Pipelined requests of the terminal. Next request is sent before the reply
+ * of the previous request is received. Amount of requests waiting for the
+ * reply is limited by the window size. Rest of the requests are queued and
+ * sent when replies are received.
+ * <p>
+ * Requests are sent in the order they are added. If replies are received in
+ * request order and a sent request times out or is cancelled, it's kept as
+ * expired until its late reply is received, so the late reply is not taken
+ * as a reply to the next request.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXPipeline {
+    /**
+     * Pipelined request.
+     */
+    private final class Request {
+        /**
+         * Request data.
+         */
+        private final byte[] data;
+        /**
+         * Request key.
+         */
+        private final Object key;
+        /**
+         * Reply wait time in milliseconds.
+         */
+        private final int waitTime;
+        /**
+         * Future that is completed with the reply.
+         */
+        private final CompletableFuture<byte[]> future =
+                new CompletableFuture<byte[]>();
+        /**
+         * Timeout task.
+         */
+        private ScheduledFuture<?> timeout;
+        /**
+         * Is request timed out or cancelled after it was sent.
+         */
+        private boolean expired;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Request data.
+         * @param requestKey
+         *            Request key.
+         * @param wt
+         *            Reply wait time in milliseconds.
+         */
+        Request(final byte[] value, final Object requestKey, final int wt) {
+            data = value;
+            key = requestKey;
+            waitTime = wt;
+        }
+    }
+
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Requests waiting for the reply.
+     */
+    private final List<Request> pending = new ArrayList<Request>();
+    /**
+     * Requests waiting to be sent.
+     */
+    private final ArrayDeque<Request> queued = new ArrayDeque<Request>();
+    /**
+     * Amount of expired requests waiting for the late reply.
+     */
+    private int expired;
+    /**
+     * Requests are polled and written while this is locked, so they are
+     * sent in the same order as they are waiting for the reply.
+     */
+    private final Object sendLock = new Object();
+    /**
+     * Maximum amount of requests waiting for the reply.
+     */
+    private int window = 1;
+    /**
+     * Reply correlator or null if replies are received in request order.
+     */
+    private IGXReplyCorrelator correlator;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     */
+    GXPipeline(final GXTerminal parent) {
+        media = parent;
+    }
+
+    /**
+     * @return Maximum amount of requests waiting for the reply.
+     */
+    synchronized int getWindow() {
+        return window;
+    }
+
+    /**
+     * @param value
+     *            Maximum amount of requests waiting for the reply.
+     */
+    void setWindow(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid window size.");
+        }
+        synchronized (this) {
+            window = value;
+        }
+        sendQueued();
+    }
+
+    /**
+     * @return Reply correlator.
+     */
+    synchronized IGXReplyCorrelator getCorrelator() {
+        return correlator;
+    }
+
+    /**
+     * @param value
+     *            Reply correlator.
+     */
+    synchronized void setCorrelator(final IGXReplyCorrelator value) {
+        correlator = value;
+    }
+
+    /**
+     * @return Are there requests waiting for the reply.
+     */
+    synchronized boolean isActive() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * @return Amount of requests waiting for the reply or to be sent.
+     */
+    synchronized int getCount() {
+        return pending.size() - expired + queued.size();
+    }
+
+    /**
+     * Add request. Request is sent if window is not full.
+     * 
+     * @param data
+     *            Request data.
+     * @param waitTime
+     *            Reply wait time in milliseconds.
+     * @return Future that is completed with the reply.
+     */
+    CompletableFuture<byte[]> add(final byte[] data, final int waitTime) {
+        Object key = null;
+        synchronized (this) {
+            if (correlator != null) {
+                key = correlator.getRequestKey(data);
+            }
+        }
+        final Request r = new Request(data, key, waitTime);
+        r.future.whenComplete(new BiConsumer<byte[], Throwable>() {
+            @Override
+            public void accept(final byte[] reply, final Throwable ex) {
+                remove(r);
+            }
+        });
+        synchronized (this) {
+            queued.add(r);
+        }
+        sendQueued();
+        return r.future;
+    }
+
+    /**
+     * Remove completed, timed out or cancelled request and send next queued
+     * request. If replies are received in request order, sent request is
+     * kept as expired until its late reply is received or it has waited
+     * the wait time again.
+     * 
+     * @param r
+     *            Removed request.
+     */
+    private void remove(final Request r) {
+        if (r.timeout != null) {
+            r.timeout.cancel(false);
+        }
+        boolean late = false;
+        synchronized (this) {
+            queued.remove(r);
+            if (correlator == null && !r.expired && pending.contains(r)) {
+                r.expired = true;
+                ++expired;
+                late = true;
+            } else {
+                pending.remove(r);
+            }
+        }
+        if (late && r.waitTime > 0) {
+            GXTerminal.getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    removeExpired(r);
+                }
+            }, r.waitTime, TimeUnit.MILLISECONDS);
+        }
+        sendQueued();
+    }
+
+    /**
+     * Remove expired request whose late reply is not received.
+     * 
+     * @param r
+     *            Expired request.
+     */
+    private synchronized void removeExpired(final Request r) {
+        if (pending.remove(r)) {
+            --expired;
+        }
+    }
+
+    /**
+     * Send queued requests while window is not full. Requests are polled and
+     * written under the same lock, so concurrent senders can't change the
+     * order of the requests on the line.
+     */
+    private void sendQueued() {
+        synchronized (sendLock) {
+            while (true) {
+                final Request r;
+                synchronized (this) {
+                    if (pending.size() - expired >= window
+                            || queued.isEmpty()) {
+                        return;
+                    }
+                    r = queued.poll();
+                    pending.add(r);
+                }
+                try {
+                    media.writeBytes(r.data);
+                } catch (RuntimeException ex) {
+                    // Request is not sent and reply is not waited.
+                    synchronized (this) {
+                        pending.remove(r);
+                    }
+                    r.future.completeExceptionally(ex);
+                    continue;
+                }
+                if (r.waitTime > 0) {
+                    r.timeout = GXTerminal.getTimer().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            r.future.completeExceptionally(
+                                    new TimeoutException(
+                                            "Reply was not received in "
+                                                    + String.valueOf(
+                                                            r.waitTime)
+                                                    + " ms."));
+                        }
+                    }, r.waitTime, TimeUnit.MILLISECONDS);
+                    if (r.future.isDone()) {
+                        r.timeout.cancel(false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Complete the request that the received frame belongs to.
+     * 
+     * @param frame
+     *            Received frame.
+     * @return True, if frame was a reply to pipelined request.
+     */
+    boolean onFrame(final byte[] frame) {
+        Request found = null;
+        synchronized (this) {
+            if (correlator == null) {
+                if (!pending.isEmpty()) {
+                    found = pending.remove(0);
+                    if (found.expired) {
+                        // Late reply of the expired request is dropped.
+                        --expired;
+                        return true;
+                    }
+                }
+            } else {
+                Object key = correlator.getReplyKey(frame);
+                if (key != null) {
+                    Iterator<Request> it = pending.iterator();
+                    while (it.hasNext()) {
+                        Request r = it.next();
+                        if (key.equals(r.key)) {
+                            it.remove();
+                            found = r;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (found == null) {
+            return false;
+        }
+        // Completion sends next queued request.
+        found.future.complete(frame);
+        return true;
+    }
+
+    /**
+     * Fail all requests.
+     * 
+     * @param ex
+     *            Occurred error.
+     */
+    void fail(final RuntimeException ex) {
+        List<Request> tmp;
+        synchronized (this) {
+            tmp = new ArrayList<Request>(queued);
+            tmp.addAll(pending);
+            queued.clear();
+            pending.clear();
+            expired = 0;
+        }
+        for (Request it : tmp) {
+            it.future.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayDeque;
+
+import gurux.io.Handshake;
+
+/**
+ * Publishes received frames to the subscriber. Receiver reads the serial
+ * port only when subscriber has requested more frames than are waiting for
+ * the delivery. When there is no demand, RTS is cleared if hardware
+ * handshake is used, so the remote end stops sending.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXReceivePublisher implements IGXSubscription {
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Subscriber.
+     */
+    private final IGXSubscriber subscriber;
+    /**
+     * Frames waiting for the delivery.
+     */
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<byte[]>();
+    /**
+     * Requested frame count.
+     */
+    private long demand;
+    /**
+     * Is subscriber notified at the moment.
+     */
+    private boolean delivering;
+    /**
+     * Is subscription cancelled.
+     */
+    private boolean cancelled;
+    /**
+     * Is subscription completed.
+     */
+    private boolean completed;
+    /**
+     * Error that is delivered after queued frames.
+     */
+    private Throwable error;
+    /**
+     * Is RTS cleared because there is no demand.
+     */
+    private boolean paused;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     * @param value
+     *            Subscriber.
+     */
+    GXReceivePublisher(final GXTerminal parent, final IGXSubscriber value) {
+        media = parent;
+        subscriber = value;
+    }
+
+    /**
+     * @return Is receiver allowed to read more data.
+     */
+    synchronized boolean isAccepting() {
+        return !cancelled && !completed && demand > frames.size();
+    }
+
+    /**
+     * Wait until subscriber requests more data.
+     * 
+     * @param waitTime
+     *            Maximum wait time in milliseconds.
+     * @return True, if receiver can read more data.
+     */
+    synchronized boolean waitDemand(final int waitTime) {
+        long end = System.currentTimeMillis() + waitTime;
+        while (!isAccepting()) {
+            long left = end - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            try {
+                wait(left);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add received frame.
+     * 
+     * @param data
+     *            Received frame.
+     */
+    void append(final byte[] data) {
+        synchronized (this) {
+            if (cancelled || completed) {
+                return;
+            }
+            frames.add(data);
+        }
+        deliver();
+    }
+
+    /**
+     * Complete the subscription.
+     * 
+     * @param ex
+     *            Occurred error or null if connection is closed.
+     */
+    void complete(final Throwable ex) {
+        synchronized (this) {
+            if (cancelled || completed) {
+                return;
+            }
+            completed = true;
+            error = ex;
+            notifyAll();
+        }
+        deliver();
+    }
+
+    /**
+     * Start the subscription.
+     */
+    void start() {
+        synchronized (this) {
+            delivering = true;
+        }
+        try {
+            subscriber.onSubscribe(this);
+        } finally {
+            synchronized (this) {
+                delivering = false;
+            }
+        }
+        deliver();
+    }
+
+    @Override
+    public void request(final long count) {
+        if (count <= 0) {
+            synchronized (this) {
+                frames.clear();
+                if (cancelled || completed) {
+                    return;
+                }
+                completed = true;
+                error = new IllegalArgumentException(
+                        "Requested count must be positive.");
+            }
+            media.removePublisher(this);
+        } else {
+            synchronized (this) {
+                demand += count;
+                // Demand is unbounded if it overflows.
+                if (demand < 0) {
+                    demand = Long.MAX_VALUE;
+                }
+                notifyAll();
+            }
+        }
+        deliver();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            frames.clear();
+            notifyAll();
+        }
+        media.removePublisher(this);
+        updateFlowControl();
+    }
+
+    /**
+     * Deliver queued frames while there is demand. Only one thread notifies
+     * the subscriber at the time.
+     */
+    private void deliver() {
+        while (true) {
+            byte[] data = null;
+            boolean done = false;
+            Throwable ex = null;
+            synchronized (this) {
+                if (delivering || cancelled) {
+                    break;
+                }
+                if (demand != 0 && !frames.isEmpty()) {
+                    data = frames.poll();
+                    if (demand != Long.MAX_VALUE) {
+                        --demand;
+                    }
+                } else if (completed && (frames.isEmpty() || error != null)) {
+                    cancelled = true;
+                    done = true;
+                    ex = error;
+                    frames.clear();
+                } else {
+                    break;
+                }
+                delivering = true;
+            }
+            RuntimeException failure = null;
+            try {
+                if (data != null) {
+                    subscriber.onNext(data);
+                } else if (done) {
+                    if (ex == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(ex);
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (data == null) {
+                    throw e;
+                }
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    delivering = false;
+                }
+            }
+            if (failure != null) {
+                fail(failure);
+                break;
+            }
+        }
+        updateFlowControl();
+    }
+
+    /**
+     * Subscriber failed to handle the frame. Subscription is cancelled and
+     * the error is given to the subscriber, so it's not thrown to the
+     * receiver.
+     * 
+     * @param ex
+     *            Exception that subscriber threw.
+     */
+    private void fail(final RuntimeException ex) {
+        synchronized (this) {
+            cancelled = true;
+            frames.clear();
+            notifyAll();
+        }
+        media.removePublisher(this);
+        subscriber.onError(ex);
+    }
+
+    /**
+     * Clear RTS when there is no demand and set it again when subscriber
+     * requests more data.
+     */
+    private void updateFlowControl() {
+        Handshake h = media.getHandshake();
+        if (h != Handshake.REQUEST_TO_SEND
+                && h != Handshake.REQUEST_TO_SEND_XON_XOFF) {
+            return;
+        }
+        boolean pause;
+        synchronized (this) {
+            pause = !cancelled && !completed && demand <= frames.size();
+            if (pause == paused) {
+                return;
+            }
+            paused = pause;
+        }
+        if (media.isOpen()) {
+            media.setRtsEnable(!pause);
+        }
+    }
+}
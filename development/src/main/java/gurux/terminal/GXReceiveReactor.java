@@ -0,0 +1,344 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Receive reactor services received data of many terminals from a small
+ * fixed amount of threads. Each reactor thread checks the channels that are
+ * assigned for it and reads the ones that have data. Native serial port
+ * offers no way to wait readiness of many ports, so channels are polled.
+ * Channel that has no data is polled less often until it's polled at
+ * maximum wait time. Channel is polled again at the full rate when data is
+ * received or sent, so replies are read without delays.
+ * <p>
+ * Same reactor can be shared between terminals with
+ * {@link GXTerminal#setReceiveReactor(GXReceiveReactor)}.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXReceiveReactor implements AutoCloseable {
+    /**
+     * Default wait time in milliseconds when no channel has data.
+     */
+    static final int DEFAULT_WAIT_TIME = 5;
+
+    /**
+     * Idle channel is polled at most this many wait times apart.
+     */
+    static final int MAX_WAIT_FACTOR = 16;
+
+    /**
+     * Reactor threads.
+     */
+    private final Worker[] workers;
+
+    /**
+     * Registered channels.
+     */
+    private final Map<IGXReactorChannel, Entry> entries =
+            new ConcurrentHashMap<IGXReactorChannel, Entry>();
+
+    /**
+     * Constructor.
+     * 
+     * @param threadCount
+     *            Amount of reactor threads.
+     */
+    public GXReceiveReactor(final int threadCount) {
+        this(threadCount, DEFAULT_WAIT_TIME);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param threadCount
+     *            Amount of reactor threads.
+     * @param waitTime
+     *            How long reactor thread waits in milliseconds before the
+     *            channel that has data is polled again.
+     */
+    public GXReceiveReactor(final int threadCount, final int waitTime) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Invalid thread count.");
+        }
+        if (waitTime < 1) {
+            throw new IllegalArgumentException("Invalid wait time.");
+        }
+        workers = new Worker[threadCount];
+        for (int pos = 0; pos != threadCount; ++pos) {
+            workers[pos] = new Worker(
+                    waitTime * GXLineTiming.NANOS_PER_MILLISECOND);
+            Thread t = new Thread(workers[pos],
+                    "GXReceiveReactor " + String.valueOf(pos));
+            t.setDaemon(true);
+            workers[pos].thread = t;
+            t.start();
+        }
+    }
+
+    /**
+     * @return Amount of reactor threads.
+     */
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    /**
+     * @return Amount of registered channels.
+     */
+    public int getChannelCount() {
+        int count = 0;
+        for (Worker it : workers) {
+            count += it.channels.length;
+        }
+        return count;
+    }
+
+    /**
+     * Register channel. Channel is serviced by the reactor thread that has
+     * least channels.
+     * 
+     * @param channel
+     *            Registered channel.
+     */
+    public void register(final IGXReactorChannel channel) {
+        synchronized (workers) {
+            Worker target = workers[0];
+            for (Worker it : workers) {
+                if (it.closed) {
+                    throw new IllegalStateException("Reactor is closed.");
+                }
+                if (it.channels.length < target.channels.length) {
+                    target = it;
+                }
+            }
+            Entry e = new Entry(channel, target);
+            Entry[] tmp = new Entry[target.channels.length + 1];
+            System.arraycopy(target.channels, 0, tmp, 0,
+                    target.channels.length);
+            tmp[target.channels.length] = e;
+            target.channels = tmp;
+            entries.put(channel, e);
+            LockSupport.unpark(target.thread);
+        }
+    }
+
+    /**
+     * Unregister channel. Reactor thread may still service the channel while
+     * this method returns.
+     * 
+     * @param channel
+     *            Unregistered channel.
+     */
+    public void unregister(final IGXReactorChannel channel) {
+        synchronized (workers) {
+            entries.remove(channel);
+            for (Worker it : workers) {
+                Entry[] channels = it.channels;
+                for (int pos = 0; pos != channels.length; ++pos) {
+                    if (channels[pos].channel == channel) {
+                        Entry[] tmp = new Entry[channels.length - 1];
+                        System.arraycopy(channels, 0, tmp, 0, pos);
+                        System.arraycopy(channels, pos + 1, tmp, pos,
+                                tmp.length - pos);
+                        it.channels = tmp;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Poll channel at the full rate. This is called when data is sent, so
+     * reply is read as soon as it's received.
+     * 
+     * @param channel
+     *            Channel.
+     */
+    void wakeup(final IGXReactorChannel channel) {
+        Entry e = entries.get(channel);
+        if (e != null && e.interval != e.worker.waitTime) {
+            e.interval = e.worker.waitTime;
+            e.next = System.nanoTime();
+            LockSupport.unpark(e.worker.thread);
+        }
+    }
+
+    /**
+     * Stop reactor threads.
+     */
+    @Override
+    public void close() {
+        synchronized (workers) {
+            entries.clear();
+            for (Worker it : workers) {
+                it.closed = true;
+                it.channels = new Entry[0];
+                LockSupport.unpark(it.thread);
+            }
+        }
+    }
+
+    /**
+     * Registered channel.
+     */
+    private static final class Entry {
+        /**
+         * Channel.
+         */
+        private final IGXReactorChannel channel;
+        /**
+         * Reactor thread that services the channel.
+         */
+        private final Worker worker;
+        /**
+         * Current poll interval in nanoseconds.
+         */
+        private volatile long interval;
+        /**
+         * Time when channel is polled next time.
+         */
+        private volatile long next;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Channel.
+         * @param target
+         *            Reactor thread that services the channel.
+         */
+        Entry(final IGXReactorChannel value, final Worker target) {
+            channel = value;
+            worker = target;
+            interval = target.waitTime;
+            next = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reactor thread.
+     */
+    private final class Worker implements Runnable {
+        /**
+         * Channels serviced by this thread. Array is replaced when channels
+         * are added or removed.
+         */
+        private volatile Entry[] channels = new Entry[0];
+        /**
+         * Is reactor closed.
+         */
+        private volatile boolean closed;
+        /**
+         * Thread that runs the worker.
+         */
+        private Thread thread;
+        /**
+         * Poll interval in nanoseconds of the channel that has data.
+         */
+        private final long waitTime;
+        /**
+         * Poll interval in nanoseconds of the idle channel.
+         */
+        private final long maxWaitTime;
+
+        /**
+         * Constructor.
+         * 
+         * @param wt
+         *            Wait time in nanoseconds when no channel has data.
+         */
+        Worker(final long wt) {
+            waitTime = wt;
+            maxWaitTime = MAX_WAIT_FACTOR * wt;
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                long now = System.nanoTime();
+                long wait = Long.MAX_VALUE;
+                for (Entry it : channels) {
+                    if (now - it.next >= 0 && !poll(it, now)) {
+                        continue;
+                    }
+                    wait = Math.min(wait, it.next - now);
+                }
+                if (wait == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+        }
+
+        /**
+         * Poll channel and read it if it has data.
+         * 
+         * @param it
+         *            Polled channel.
+         * @param now
+         *            Current time.
+         * @return False, if channel failed and it's removed.
+         */
+        private boolean poll(final Entry it, final long now) {
+            try {
+                if (it.channel.getBytesToRead() != 0) {
+                    it.channel.onReadable();
+                    it.interval = waitTime;
+                    // Rest of the data is read on the next pass.
+                    it.next = now;
+                    return true;
+                }
+            } catch (RuntimeException ex) {
+                // Failed channel is not polled again, so the same error is
+                // not reported on every pass.
+                unregister(it.channel);
+                it.channel.onError(ex);
+                return false;
+            }
+            it.next = now + it.interval;
+            it.interval = Math.min(2 * it.interval, maxWaitTime);
+            return true;
+        }
+    }
+}
@@ -34,30 +34,83 @@
 
 package gurux.terminal;
 
-import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
 
-import gurux.common.GXSynchronousMediaBase;
 import gurux.common.ReceiveEventArgs;
 import gurux.common.enums.TraceLevel;
 import gurux.common.enums.TraceTypes;
-import gurux.io.NativeCode;
+import gurux.terminal.enums.ReceiveMode;
 
 /**
  * Receive thread listens serial port and sends received data to the listeners.
+ * Receiver is run in own platform thread, by the given executor or by the
+ * receive reactor.
  * 
  * @author Gurux Ltd.
  */
-class GXReceiveThread extends Thread {
+class GXReceiveThread implements Runnable, IGXReactorChannel {
 
     /**
      * If receiver buffer is empty how long is waited for new data.
      */
     static final int WAIT_TIME = 200;
 
+    /**
+     * How long the event mode blocks on the serial port if read timeout is not
+     * set. Arriving data or closing the port wakes the thread immediately.
+     */
+    static final int EVENT_WAIT_TIME = 1000;
+
+    /**
+     * How often virtual thread checks if there is data to read. Virtual
+     * thread waits between the checks without reserving carrier thread.
+     * Interval of the idle port is doubled on every check up to
+     * {@link GXReceiveReactor#MAX_WAIT_FACTOR} times this.
+     */
+    static final long VIRTUAL_WAIT_TIME = 5 * GXLineTiming.NANOS_PER_MILLISECOND;
+
+    /**
+     * Empty buffer.
+     */
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * Name of the receiver thread.
+     */
+    private final String name;
+    /**
+     * Thread that runs the receiver.
+     */
+    private Thread thread;
+    /**
+     * Is receiver stopped.
+     */
+    private boolean stopped;
+    /**
+     * Is receiver run in virtual thread.
+     */
+    private boolean virtual;
+    /**
+     * Current interval in nanoseconds how often virtual thread checks if
+     * there is data to read.
+     */
+    private volatile long virtualInterval = VIRTUAL_WAIT_TIME;
+    /**
+     * Reactor that services the receiver or null if receiver has own thread.
+     */
+    private GXReceiveReactor reactor;
+
     /**
      * Serial port handle.
      */
     private long comPort;
+    /**
+     * Serial port.
+     */
+    private final GXNativePort port;
     /**
      * Parent component.
      */
@@ -66,6 +119,18 @@ class GXReceiveThread extends Thread {
      * Bytes received.
      */
     private long bytesReceived = 0;
+    /**
+     * Preallocated buffer where received chunks are combined.
+     */
+    private final GXRingBuffer receiveBuffer;
+    /**
+     * Reused array where data is copied from off-heap receive buffer.
+     */
+    private byte[] scratch;
+    /**
+     * Decoded frames.
+     */
+    private final List<byte[]> frames = new ArrayList<byte[]>();
 
     /**
      * Constructor.
@@ -76,9 +141,126 @@ class GXReceiveThread extends Thread {
      *            Handle for the serial port.
      */
     GXReceiveThread(final GXTerminal parent, final long hComPort) {
-        super("GXTerminal " + String.valueOf(hComPort));
+        name = "GXTerminal " + String.valueOf(hComPort);
         comPort = hComPort;
         parentMedia = parent;
+        port = parent.getNativePort();
+        receiveBuffer = new GXRingBuffer(
+                Math.max(1, parent.getReadBufferSize()),
+                parent.getReceiveBufferDirect());
+    }
+
+    /**
+     * Start the receiver.
+     * 
+     * @param executor
+     *            Executor that runs the receiver. If null, receiver is run in
+     *            own platform thread.
+     */
+    final void start(final Executor executor) {
+        if (executor == null) {
+            new Thread(this, name).start();
+        } else {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Start the receiver in the receive reactor.
+     * 
+     * @param value
+     *            Reactor that services the receiver.
+     */
+    final void start(final GXReceiveReactor value) {
+        synchronized (this) {
+            reactor = value;
+        }
+        value.register(this);
+    }
+
+    /**
+     * Stop the receiver. Thread that runs the receiver is interrupted or
+     * receiver is removed from the reactor.
+     */
+    final void interrupt() {
+        GXReceiveReactor r;
+        synchronized (this) {
+            stopped = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+            r = reactor;
+        }
+        if (r != null) {
+            r.unregister(this);
+        }
+    }
+
+    /**
+     * Poll the serial port at the full rate after data is sent.
+     */
+    final void wakeup() {
+        GXReceiveReactor r;
+        Thread t = null;
+        synchronized (this) {
+            r = reactor;
+            if (virtual && virtualInterval != VIRTUAL_WAIT_TIME) {
+                t = thread;
+            }
+        }
+        if (t != null) {
+            virtualInterval = VIRTUAL_WAIT_TIME;
+            LockSupport.unpark(t);
+        }
+        if (r != null) {
+            r.wakeup(this);
+        }
+    }
+
+    /**
+     * @return Is receiver stopped.
+     */
+    private boolean isStopped() {
+        synchronized (this) {
+            return stopped;
+        }
+    }
+
+    @Override
+    public final int getBytesToRead() {
+        if (isStopped()) {
+            return 0;
+        }
+        GXReceivePublisher publisher = parentMedia.getPublisher();
+        if (publisher != null && !publisher.isAccepting()) {
+            return 0;
+        }
+        return port.getBytesToRead(this.comPort);
+    }
+
+    @Override
+    public final void onReadable() {
+        if (!isStopped()) {
+            byte[] buff = port.read(this.comPort, 1,
+                    parentMedia.getClosing());
+            if (buff.length != 0) {
+                handleReceivedData(buff, buff.length, false);
+            }
+        }
+    }
+
+    @Override
+    public final void onError(final RuntimeException ex) {
+        // Errors are expected when the port is closing.
+        if (!isStopped()) {
+            synchronized (this) {
+                reactor = null;
+            }
+            parentMedia.notifyError(new RuntimeException(ex.getMessage()));
+            // Reactor has removed the channel. Receiver continues in own
+            // thread that blocks in the native read.
+            start((Executor) null);
+        }
     }
 
     /**
@@ -97,14 +279,37 @@ class GXReceiveThread extends Thread {
         bytesReceived = 0;
     }
 
+    /**
+     * Handle data that is combined to the receive buffer.
+     */
+    private void handleBufferedData() {
+        int len = receiveBuffer.size();
+        if (!receiveBuffer.isDirect() && receiveBuffer.position() == 0
+                && receiveBuffer.isContiguous()) {
+            handleReceivedData(receiveBuffer.array(), len, true);
+        } else {
+            if (scratch == null || scratch.length < len) {
+                scratch = new byte[receiveBuffer.capacity()];
+            }
+            receiveBuffer.peek(scratch, 0, len);
+            handleReceivedData(scratch, len, true);
+        }
+        receiveBuffer.clear();
+    }
+
     /**
      * Handle received data.
      * 
      * @param buffer
      *            Received data from the serial port.
+     * @param len
+     *            Amount of received bytes in the buffer.
+     * @param shared
+     *            Is buffer reused. Listeners get own copy from the reused
+     *            buffer. Otherwise buffer is given as it is.
      */
-    private void handleReceivedData(final byte[] buffer) {
-        int len = buffer.length;
+    private void handleReceivedData(final byte[] buffer, final int len,
+            final boolean shared) {
         if (len == 0) {
             try {
                 Thread.sleep(WAIT_TIME);
@@ -114,33 +319,136 @@ class GXReceiveThread extends Thread {
             return;
         }
         bytesReceived += len;
-        int totalCount = 0;
+        GXFlightRecorder fr = parentMedia.getFlightRecorder();
+        if (fr != null) {
+            fr.record(TraceTypes.RECEIVED, parentMedia.getModemState(),
+                    buffer, 0, len);
+        }
+        GXUrcDemultiplexer urc = parentMedia.getUrcDemultiplexer();
+        if (urc != null) {
+            boolean dataMode = parentMedia.isDataMode();
+            int cnt;
+            if (dataMode) {
+                cnt = urc.passThrough(buffer, len);
+            } else {
+                cnt = urc.process(buffer, len);
+            }
+            List<GXUnsolicitedResult> results = urc.getResults();
+            if (!results.isEmpty()) {
+                for (GXUnsolicitedResult it : results) {
+                    parentMedia.notifyUnsolicited(it);
+                }
+                results.clear();
+            }
+            if (cnt != 0) {
+                dispatchReceivedData(urc.getOutput(), cnt, true);
+            }
+            if (dataMode) {
+                dispatchReceivedData(buffer, len, shared);
+            }
+            return;
+        }
+        dispatchReceivedData(buffer, len, shared);
+    }
+
+    /**
+     * Give received data to the pending exchange, stream, subscriber or
+     * listeners.
+     * 
+     * @param buffer
+     *            Received data from the serial port.
+     * @param len
+     *            Amount of received bytes in the buffer.
+     * @param shared
+     *            Is buffer reused.
+     */
+    private void dispatchReceivedData(final byte[] buffer, final int len,
+            final boolean shared) {
+        int used = parentMedia.handleExchange(buffer, len);
+        if (used != 0) {
+            if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                        TraceTypes.RECEIVED, buffer, 0, used));
+            }
+            if (used == len) {
+                return;
+            }
+            // Rest of the data is handled as usual.
+            byte[] tmp = new byte[len - used];
+            System.arraycopy(buffer, used, tmp, 0, tmp.length);
+            dispatchReceivedData(tmp, tmp.length, false);
+            return;
+        }
+        GXPipeline pipeline = parentMedia.getPipeline();
+        IGXFrameDecoder decoder = parentMedia.getFrameDecoder();
+        if (decoder != null && pipeline.isActive()) {
+            if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                        TraceTypes.RECEIVED, buffer, 0, len));
+            }
+            decoder.decode(buffer, 0, len, frames);
+            for (byte[] it : frames) {
+                if (!pipeline.onFrame(it)) {
+                    parentMedia.notifyReceived(
+                            new ReceiveEventArgs(it, parentMedia.getPortName()));
+                }
+            }
+            frames.clear();
+            return;
+        }
+        GXTerminalInputStream in = parentMedia.getStreamInput();
+        if (in != null) {
+            if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                        TraceTypes.RECEIVED, buffer, 0, len));
+            }
+            in.append(buffer, 0, len);
+            return;
+        }
+        GXTerminalChannel channel = parentMedia.getChannel();
+        if (channel != null) {
+            if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                        TraceTypes.RECEIVED, buffer, 0, len));
+            }
+            channel.append(buffer, 0, len);
+            return;
+        }
+        GXReceivePublisher publisher = parentMedia.getPublisher();
+        if (publisher != null) {
+            if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                        TraceTypes.RECEIVED, buffer, 0, len));
+            }
+            if (decoder != null) {
+                decoder.decode(buffer, 0, len, frames);
+                for (byte[] it : frames) {
+                    publisher.append(it);
+                }
+                frames.clear();
+            } else if (shared || len != buffer.length) {
+                byte[] data = new byte[len];
+                System.arraycopy(buffer, 0, data, 0, len);
+                publisher.append(data);
+            } else {
+                publisher.append(buffer);
+            }
+            return;
+        }
         if (parentMedia.getIsSynchronous()) {
             gurux.common.TraceEventArgs arg = null;
             synchronized (parentMedia.getSyncBase().getSync()) {
                 parentMedia.getSyncBase().appendData(buffer, 0, len);
                 // Search end of packet if given.
-                if (parentMedia.getEop() != null) {
-                    if (parentMedia.getEop() instanceof Array) {
-                        for (Object eop : (Object[]) parentMedia.getEop()) {
-                            totalCount = GXSynchronousMediaBase.indexOf(buffer,
-                                    GXSynchronousMediaBase.getAsByteArray(eop),
-                                    0, len);
-                            if (totalCount != -1) {
-                                break;
-                            }
-                        }
-                    } else {
-                        totalCount = GXSynchronousMediaBase.indexOf(buffer,
-                                GXSynchronousMediaBase.getAsByteArray(
-                                        parentMedia.getEop()),
-                                0, len);
-                    }
+                GXEopMatcher matcher = parentMedia.getEopMatcher();
+                int totalCount = len;
+                if (!matcher.isEmpty()) {
+                    totalCount = matcher.match(buffer, 0, len);
                 }
                 if (totalCount != -1) {
                     if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
                         arg = new gurux.common.TraceEventArgs(
-                                TraceTypes.RECEIVED, buffer, 0, totalCount + 1);
+                                TraceTypes.RECEIVED, buffer, 0, totalCount);
                     }
                     parentMedia.getSyncBase().setReceived();
                 }
@@ -150,8 +458,28 @@ class GXReceiveThread extends Thread {
             }
         } else {
             parentMedia.getSyncBase().resetReceivedSize();
-            byte[] data = new byte[len];
-            System.arraycopy(buffer, 0, data, 0, len);
+            if (decoder != null) {
+                if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
+                    parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
+                            TraceTypes.RECEIVED, buffer, 0, len));
+                }
+                decoder.decode(buffer, 0, len, frames);
+                for (byte[] it : frames) {
+                    parentMedia.notifyReceived(
+                            new ReceiveEventArgs(it, parentMedia.getPortName()));
+                }
+                frames.clear();
+                return;
+            }
+            byte[] data;
+            if (shared || len != buffer.length) {
+                data = new byte[len];
+                System.arraycopy(buffer, 0, data, 0, len);
+            } else {
+                // Native read returns new array for each read. It can be
+                // given to the listeners without copying it.
+                data = buffer;
+            }
             if (parentMedia.getTrace() == TraceLevel.VERBOSE) {
                 parentMedia.notifyTrace(new gurux.common.TraceEventArgs(
                         TraceTypes.RECEIVED, data));
@@ -164,10 +492,189 @@ class GXReceiveThread extends Thread {
 
     @Override
     public final void run() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            thread = Thread.currentThread();
+        }
+        boolean v = GXVirtualThreads.isVirtual(Thread.currentThread());
+        synchronized (this) {
+            virtual = v;
+        }
+        try {
+            if (parentMedia.getReceiveMode() == ReceiveMode.EVENT) {
+                readEvents();
+            } else if (parentMedia
+                    .getReceiveMode() == ReceiveMode.INTER_CHARACTER) {
+                readFrames();
+            } else {
+                readPolling();
+            }
+        } finally {
+            synchronized (this) {
+                thread = null;
+                // Executor threads are reused. Clear interrupted status.
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Read data from the serial port. Native read blocks the carrier of the
+     * virtual thread. Because of that, virtual thread waits in Java until
+     * there is data to read. Idle port is checked less often, so thousands
+     * of idle virtual receivers don't keep the carriers busy. Sent data
+     * resets the interval.
+     * 
+     * @param waitTime
+     *            How long data is waited in milliseconds.
+     * @return Received data. Empty if nothing is received or connection is
+     *         closed.
+     */
+    private byte[] read(final int waitTime) {
+        // Serial port is not read if subscriber has not requested data.
+        GXReceivePublisher publisher = parentMedia.getPublisher();
+        if (publisher != null && !publisher.waitDemand(
+                waitTime <= 0 ? EVENT_WAIT_TIME : waitTime)) {
+            return EMPTY;
+        }
+        if (virtual) {
+            int wt = waitTime;
+            if (wt <= 0) {
+                wt = EVENT_WAIT_TIME;
+            }
+            long end = System.nanoTime()
+                    + wt * GXLineTiming.NANOS_PER_MILLISECOND;
+            while (!Thread.currentThread().isInterrupted()) {
+                int count;
+                try {
+                    count = port.getBytesToRead(this.comPort);
+                } catch (Exception ex) {
+                    // getBytesToRead fails with some chipsets.
+                    break;
+                }
+                if (count != 0) {
+                    virtualInterval = VIRTUAL_WAIT_TIME;
+                    return port.read(this.comPort, 1,
+                            parentMedia.getClosing());
+                }
+                long left = end - System.nanoTime();
+                if (left <= 0) {
+                    return EMPTY;
+                }
+                long interval = virtualInterval;
+                LockSupport.parkNanos(Math.min(left, interval));
+                if (virtualInterval == interval) {
+                    // Interval is not reset by the sender.
+                    virtualInterval = Math.min(2 * interval,
+                            GXReceiveReactor.MAX_WAIT_FACTOR
+                                    * VIRTUAL_WAIT_TIME);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return EMPTY;
+            }
+        }
+        return port.read(this.comPort, waitTime,
+                parentMedia.getClosing());
+    }
+
+    /**
+     * Block on the serial port until data is received or the port is closed.
+     * Native read waits for readiness of the port and the closing handle, so
+     * received bytes are handled without extra delays or wake ups.
+     */
+    private void readEvents() {
+        int waitTime = parentMedia.getReadTimeout();
+        if (waitTime <= 0) {
+            waitTime = EVENT_WAIT_TIME;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                byte[] buff = read(waitTime);
+                if (buff.length == 0) {
+                    // If connection is closed.
+                    if (Thread.currentThread().isInterrupted()) {
+                        parentMedia.setClosing(0);
+                        break;
+                    }
+                    // Wait time elapsed. Block again.
+                    continue;
+                }
+                handleReceivedData(buff, buff.length, false);
+            } catch (Exception ex) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    parentMedia
+                            .notifyError(new RuntimeException(ex.getMessage()));
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Block on the serial port until data is received and read until the line
+     * is quiet for inter-character timeout. Received frame is handled when
+     * the line goes quiet or when read buffer size is reached.
+     */
+    private void readFrames() {
+        int waitTime = parentMedia.getReadTimeout();
+        if (waitTime <= 0) {
+            waitTime = EVENT_WAIT_TIME;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                byte[] buff = read(waitTime);
+                if (buff.length == 0) {
+                    // If connection is closed.
+                    if (Thread.currentThread().isInterrupted()) {
+                        parentMedia.setClosing(0);
+                        break;
+                    }
+                    continue;
+                }
+                int gap = parentMedia.getInterCharacterWaitTime();
+                int max = parentMedia.getReadBufferSize();
+                int size = buff.length;
+                // Read until the line is quiet.
+                while (size < max) {
+                    byte[] next = read(gap);
+                    if (next.length == 0) {
+                        break;
+                    }
+                    if (receiveBuffer.size() == 0) {
+                        receiveBuffer.put(buff, 0, buff.length);
+                    }
+                    receiveBuffer.put(next, 0, next.length);
+                    size += next.length;
+                }
+                if (receiveBuffer.size() == 0) {
+                    handleReceivedData(buff, buff.length, false);
+                } else {
+                    handleBufferedData();
+                }
+            } catch (Exception ex) {
+                receiveBuffer.clear();
+                if (!Thread.currentThread().isInterrupted()) {
+                    parentMedia
+                            .notifyError(new RuntimeException(ex.getMessage()));
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Poll the serial port and wait receive delay before received data is
+     * handled.
+     */
+    private void readPolling() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                byte[] buff = gurux.io.NativeCode.read(this.comPort,
-                        parentMedia.getReadTimeout(), parentMedia.getClosing());
+                byte[] buff = read(parentMedia.getReadTimeout());
                 // If connection is closed.
                 if (buff.length == 0
                         && Thread.currentThread().isInterrupted()) {
@@ -177,8 +684,8 @@ class GXReceiveThread extends Thread {
                 Thread.sleep(parentMedia.getReceiveDelay());
                 byte[] buff2 = null;
                 try {
-                    if (NativeCode.getBytesToRead(this.comPort) != 0) {
-                        buff2 = NativeCode.read(this.comPort, 1,
+                    if (port.getBytesToRead(this.comPort) != 0) {
+                        buff2 = port.read(this.comPort, 1,
                                 parentMedia.getClosing());
                     }
                 } catch (Exception ex) {
@@ -186,12 +693,11 @@ class GXReceiveThread extends Thread {
                     // Just ignore it.
                 }
                 if (buff2 != null && buff2.length != 0) {
-                    byte[] tmp = new byte[buff.length + buff2.length];
-                    System.arraycopy(buff, 0, tmp, 0, buff.length);
-                    System.arraycopy(buff2, 0, tmp, buff.length, buff2.length);
-                    handleReceivedData(tmp);
+                    receiveBuffer.put(buff, 0, buff.length);
+                    receiveBuffer.put(buff2, 0, buff2.length);
+                    handleBufferedData();
                 } else {
-                    handleReceivedData(buff);
+                    handleReceivedData(buff, buff.length, false);
                 }
             } catch (Exception ex) {
                 if (!Thread.currentThread().isInterrupted()) {
@@ -0,0 +1,371 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Preallocated ring buffer for received bytes. Backing store is allocated
+ * once and reused, so reading and writing do not allocate memory unless the
+ * buffer must grow.
+ * <p>
+ * Ring buffer is not thread safe. Callers must synchronize the access.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXRingBuffer {
+    /**
+     * Backing store.
+     */
+    private ByteBuffer buffer;
+    /**
+     * Backing array if heap buffer is used.
+     */
+    private byte[] array;
+    /**
+     * Position of the first unread byte.
+     */
+    private int head;
+    /**
+     * Amount of unread bytes.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            Initial capacity in bytes.
+     * @param direct
+     *            Is off-heap memory used.
+     */
+    GXRingBuffer(final int capacity, final boolean direct) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        } else {
+            array = new byte[capacity];
+            buffer = ByteBuffer.wrap(array);
+        }
+    }
+
+    /**
+     * @return Is off-heap memory used.
+     */
+    boolean isDirect() {
+        return array == null;
+    }
+
+    /**
+     * @return Capacity of the buffer in bytes.
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return Amount of unread bytes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Amount of bytes that can be added without growing the buffer.
+     */
+    int available() {
+        return buffer.capacity() - size;
+    }
+
+    /**
+     * Backing array if heap memory is used.
+     * 
+     * @return Backing array or null if off-heap memory is used.
+     */
+    byte[] array() {
+        return array;
+    }
+
+    /**
+     * @return Position of the first unread byte in the backing store.
+     */
+    int position() {
+        return head;
+    }
+
+    /**
+     * @return True, if unread bytes are not wrapped around the end of the
+     *         backing store.
+     */
+    boolean isContiguous() {
+        return head + size <= buffer.capacity();
+    }
+
+    /**
+     * Remove all bytes.
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Add bytes to the end of the buffer. Buffer grows if there is not enough
+     * space.
+     * 
+     * @param value
+     *            Added bytes.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of added bytes.
+     */
+    void put(final byte[] value, final int index, final int count) {
+        if (count > available()) {
+            grow(size + count);
+        }
+        int capacity = buffer.capacity();
+        int tail = (head + size) % capacity;
+        int first = Math.min(count, capacity - tail);
+        write(tail, value, index, first);
+        if (first != count) {
+            write(0, value, index + first, count - first);
+        }
+        size += count;
+    }
+
+    /**
+     * Add bytes to the end of the buffer. Buffer grows if there is not enough
+     * space.
+     * 
+     * @param value
+     *            Added bytes. All remaining bytes are read.
+     */
+    void put(final ByteBuffer value) {
+        int count = value.remaining();
+        if (count > available()) {
+            grow(size + count);
+        }
+        int capacity = buffer.capacity();
+        int tail = (head + size) % capacity;
+        int first = Math.min(count, capacity - tail);
+        int limit = value.limit();
+        value.limit(value.position() + first);
+        buffer.limit(capacity).position(tail);
+        buffer.put(value);
+        value.limit(limit);
+        if (first != count) {
+            buffer.position(0);
+            buffer.put(value);
+        }
+        buffer.clear();
+        size += count;
+    }
+
+    /**
+     * Copy bytes without removing them from the buffer.
+     * 
+     * @param target
+     *            Target array.
+     * @param index
+     *            Start index in target array.
+     * @param count
+     *            Maximum amount of bytes to copy.
+     * @return Amount of copied bytes.
+     */
+    int peek(final byte[] target, final int index, final int count) {
+        int cnt = Math.min(count, size);
+        int capacity = buffer.capacity();
+        int first = Math.min(cnt, capacity - head);
+        read(head, target, index, first);
+        if (first != cnt) {
+            read(0, target, index + first, cnt - first);
+        }
+        return cnt;
+    }
+
+    /**
+     * Get byte without removing it from the buffer.
+     * 
+     * @param offset
+     *            Offset from the first unread byte.
+     * @return Byte value.
+     */
+    byte peek(final int offset) {
+        if (offset < 0 || offset >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return buffer.get((head + offset) % buffer.capacity());
+    }
+
+    /**
+     * Read and remove bytes from the buffer.
+     * 
+     * @param target
+     *            Target array.
+     * @param index
+     *            Start index in target array.
+     * @param count
+     *            Maximum amount of bytes to read.
+     * @return Amount of read bytes.
+     */
+    int get(final byte[] target, final int index, final int count) {
+        int cnt = peek(target, index, count);
+        skip(cnt);
+        return cnt;
+    }
+
+    /**
+     * Read and remove bytes from the buffer.
+     * 
+     * @param target
+     *            Target buffer. Bytes are read until target is full or ring
+     *            buffer is empty.
+     * @return Amount of read bytes.
+     */
+    int get(final ByteBuffer target) {
+        int cnt = Math.min(target.remaining(), size);
+        int capacity = buffer.capacity();
+        int first = Math.min(cnt, capacity - head);
+        buffer.limit(head + first).position(head);
+        target.put(buffer);
+        if (first != cnt) {
+            buffer.limit(cnt - first).position(0);
+            target.put(buffer);
+        }
+        buffer.clear();
+        skip(cnt);
+        return cnt;
+    }
+
+    /**
+     * Remove bytes from the beginning of the buffer.
+     * 
+     * @param count
+     *            Amount of removed bytes.
+     */
+    void skip(final int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        size -= count;
+        if (size == 0) {
+            // Next bytes are written to the beginning of the backing store.
+            head = 0;
+        } else {
+            head = (head + count) % buffer.capacity();
+        }
+    }
+
+    /**
+     * Grow the backing store. Unread bytes are moved to the beginning of the
+     * new store.
+     * 
+     * @param required
+     *            Required capacity.
+     */
+    private void grow(final int required) {
+        int capacity = Math.max(required, 2 * buffer.capacity());
+        ByteBuffer tmp;
+        byte[] arr = null;
+        if (array == null) {
+            tmp = ByteBuffer.allocateDirect(capacity);
+        } else {
+            arr = new byte[capacity];
+            tmp = ByteBuffer.wrap(arr);
+        }
+        int cnt = size;
+        if (arr != null) {
+            peek(arr, 0, cnt);
+        } else {
+            get(tmp);
+            tmp.clear();
+        }
+        buffer = tmp;
+        array = arr;
+        head = 0;
+        size = cnt;
+    }
+
+    /**
+     * Write bytes to the backing store.
+     * 
+     * @param position
+     *            Position in the backing store.
+     * @param value
+     *            Written bytes.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of bytes.
+     */
+    private void write(final int position, final byte[] value,
+            final int index, final int count) {
+        if (array != null) {
+            System.arraycopy(value, index, array, position, count);
+        } else {
+            buffer.limit(buffer.capacity()).position(position);
+            buffer.put(value, index, count);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Read bytes from the backing store.
+     * 
+     * @param position
+     *            Position in the backing store.
+     * @param target
+     *            Target array.
+     * @param index
+     *            Start index in target array.
+     * @param count
+     *            Amount of bytes.
+     */
+    private void read(final int position, final byte[] target,
+            final int index, final int count) {
+        if (array != null) {
+            System.arraycopy(array, position, target, index, count);
+        } else {
+            buffer.limit(buffer.capacity()).position(position);
+            buffer.get(target, index, count);
+            buffer.clear();
+        }
+    }
+}
@@ -37,12 +37,26 @@ package gurux.terminal;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.AsynchronousByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -72,30 +86,35 @@ import gurux.io.NativeCode;
 import gurux.io.Parity;
 import gurux.io.StopBits;
 import gurux.terminal.enums.AvailableMediaSettings;
+import gurux.terminal.enums.HangupStrategy;
+import gurux.terminal.enums.ReceiveMode;
 
 /**
  * The GXTerminal component determines methods that make the communication
  * possible using terminal (modem) connection.
  */
 public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
-    /**
-     * Error string.
-     */
-    static final String ERROR = "ERROR:";
-
     private int receiveDelay;
 
     private int asyncWaitTime;
-    /**
-     * Minimum reply size in bytes.
-     */
-    static final int MIN_REPLY_SIZE = 5;
 
     /**
      * How long is waited before AT command is sent after connection is made.
      */
     static final int INITIALIZE_SLEEP = 100;
 
+    /**
+     * How long DTR is kept low in milliseconds. Time must be longer than the
+     * DTR delay of the modem (S25).
+     */
+    static final int DTR_DROP_TIME = 100;
+
+    /**
+     * How often carrier detect is checked after DTR is dropped in
+     * milliseconds.
+     */
+    static final int CARRIER_POLL_TIME = 10;
+
     /**
      * Initialized connection wait time.
      */
@@ -114,6 +133,10 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * Amount of default data bits.
      */
     static final int DEFAULT_DATA_BITS = 8;
+    /**
+     * Default inter-character timeout in character times.
+     */
+    static final double DEFAULT_INTER_CHARACTER_TIMEOUT = 3.5;
     /**
      * Used PIN code.
      */
@@ -135,6 +158,18 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      */
     private Parity parity = Parity.NONE;
 
+    /**
+     * Default prefixes of the unsolicited result codes.
+     */
+    static final String[] DEFAULT_UNSOLICITED_PREFIXES =
+            { "RING", "+CLIP:", "+CREG:", "+CSQ:", "+CMTI:", "NO CARRIER" };
+
+    /**
+     * Maximum amount of unsolicited result codes that are waiting to be
+     * polled. Oldest code is removed when queue is full.
+     */
+    static final int UNSOLICITED_QUEUE_SIZE = 64;
+
     /**
      * Enumeration of progress.
      */
@@ -168,11 +203,15 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
     /**
      * Progress status.
      */
-    private Progress progress;
+    private Progress progress = Progress.NONE;
     /**
      * Is in server mode.
      */
     private boolean server;
+    /**
+     * Is modem left waiting for the calls when the port is opened.
+     */
+    private boolean listening;
     /**
      * Initialize commands for the modem..
      */
@@ -194,6 +233,35 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * Read timeout.
      */
     private int readTimeout;
+    /**
+     * How received data is read from the serial port.
+     */
+    private ReceiveMode receiveMode = ReceiveMode.POLLING;
+    /**
+     * How connected call is hung up.
+     */
+    private HangupStrategy hangupStrategy = HangupStrategy.ESCAPE;
+    /**
+     * Has modem accepted AT&D2.
+     */
+    private boolean dtrHangup;
+    /**
+     * Duration of the last hang up in milliseconds.
+     */
+    private volatile long hangupTime;
+    /**
+     * Duration of all hang ups in milliseconds.
+     */
+    private volatile long totalHangupTime;
+    /**
+     * Inter-character timeout in character times.
+     */
+    private double interCharacterTimeout = DEFAULT_INTER_CHARACTER_TIMEOUT;
+    /**
+     * Inter-character timeout in milliseconds. Zero if it's not calculated
+     * yet.
+     */
+    private int interCharacterWaitTime;
     /**
      * In modem initialized.
      */
@@ -202,14 +270,40 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * Read buffer size.
      */
     private int readBufferSize;
+    /**
+     * Is off-heap memory used for the receive buffer.
+     */
+    private boolean receiveBufferDirect;
     /**
      * Receiver thread.
      */
     private GXReceiveThread receiver;
+    /**
+     * Executor that runs the receiver.
+     */
+    private Executor receiveExecutor;
+    /**
+     * Executor that runs the receivers if executor is not set for the
+     * terminal.
+     */
+    private static Executor defaultReceiveExecutor;
+    /**
+     * Reactor that services the receiver.
+     */
+    private GXReceiveReactor receiveReactor;
+    /**
+     * Reactor that services the receivers if reactor or executor is not set
+     * for the terminal.
+     */
+    private static GXReceiveReactor defaultReceiveReactor;
     /**
      * Serial port handle.
      */
     private int hWnd;
+    /**
+     * Serial port access.
+     */
+    private final GXNativePort nativePort;
     /**
      * Serial port name.
      */
@@ -234,21 +328,153 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * End of packet.
      */
     private Object eop;
+    /**
+     * Compiled end of packet.
+     */
+    private GXEopMatcher eopMatcher = new GXEopMatcher(null);
+    /**
+     * Frame decoder.
+     */
+    private IGXFrameDecoder frameDecoder;
+    /**
+     * Request that is waiting for the reply.
+     */
+    private GXExchange<?> exchange;
+    /**
+     * Exchange sync object.
+     */
+    private final Object exchangeSync = new Object();
+    /**
+     * Command sync object. AT command sequences that are sent while the
+     * port is open are not mixed.
+     */
+    private final Object commandSync = new Object();
+    /**
+     * Timer that handles exchange timeouts.
+     */
+    private static ScheduledThreadPoolExecutor timer;
+    /**
+     * Writer that drains transmit queues.
+     */
+    private static ScheduledThreadPoolExecutor writer;
+    /**
+     * Transmit queue or null if data is written directly.
+     */
+    private volatile GXTransmitQueue transmitQueue;
+    /**
+     * Maximum amount of bytes that are combined to one write. Zero if
+     * transmit queue is not used.
+     */
+    private int transmitBufferSize;
+    /**
+     * How long queued message waits other messages in milliseconds.
+     */
+    private int transmitDelay;
+    /**
+     * Output buffer size where writer stops writing. Zero if not used.
+     */
+    private int transmitHighWatermark;
+    /**
+     * Size of the chunks when transmit is paced to the line rate. Zero if
+     * transmit is not paced.
+     */
+    private int transmitChunkSize;
+    /**
+     * Amount of bytes in the last paced transmit.
+     */
+    private long pacedBytes;
+    /**
+     * Duration of the last paced transmit in nanoseconds.
+     */
+    private long pacedTime;
+    /**
+     * Flight recorder or null if not used.
+     */
+    private volatile GXFlightRecorder flightRecorder;
+    /**
+     * Is flight recorder dumped when connection is closed.
+     */
+    private boolean dumpFlightRecorderOnClose;
+    /**
+     * Is flight recorder dumped because of an error after the connection was
+     * opened.
+     */
+    private volatile boolean errorDumped;
+    /**
+     * Report of the last modem initialization.
+     */
+    private GXInitializationReport initializationReport;
+    /**
+     * Cache of the modem capability profiles or null if not used.
+     */
+    private GXModemProfileCache modemProfileCache;
+    /**
+     * Prefixes of the unsolicited result codes.
+     */
+    private String[] unsolicitedPrefixes = DEFAULT_UNSOLICITED_PREFIXES;
+    /**
+     * Unsolicited result code demultiplexer or null if not used.
+     */
+    private volatile GXUrcDemultiplexer urcDemultiplexer;
+    /**
+     * Listeners of the unsolicited result codes.
+     */
+    private final List<IGXUnsolicitedListener> unsolicitedListeners =
+            new CopyOnWriteArrayList<IGXUnsolicitedListener>();
+    /**
+     * Unsolicited result codes that are waiting to be polled. Codes are
+     * queued when there are no listeners.
+     */
+    private final BlockingQueue<GXUnsolicitedResult> unsolicitedResults =
+            new LinkedBlockingQueue<GXUnsolicitedResult>(
+                    UNSOLICITED_QUEUE_SIZE);
+    /**
+     * Pipelined requests.
+     */
+    private final GXPipeline pipeline = new GXPipeline(this);
+    /**
+     * Input stream or null if received data is not read as a stream.
+     */
+    private volatile GXTerminalInputStream inputStream;
+    /**
+     * Publisher of the received data or null if there is no subscriber.
+     */
+    private volatile GXReceivePublisher publisher;
+    /**
+     * Asynchronous channel or null if received data is not read from the
+     * channel.
+     */
+    private volatile GXTerminalChannel channel;
     /**
      * Configurable settings.
      */
     private int configurableSettings;
     /**
-     * Media listeners.
+     * Media listeners. Listeners are notified from a snapshot of the list,
+     * so listeners can be added and removed while events are notified.
      */
-    private List<IGXMediaListener> mediaListeners = new ArrayList<IGXMediaListener>();
+    private List<IGXMediaListener> mediaListeners = new CopyOnWriteArrayList<IGXMediaListener>();
 
     /**
      * Constructor.
      */
     public GXTerminal() {
+        this(GXNativePort.NATIVE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param port
+     *            Serial port access. Native library is loaded only when
+     *            the native serial port is used.
+     */
+    GXTerminal(final GXNativePort port) {
         phoneNumber = "";
-        initialize();
+        nativePort = port;
+        if (port == GXNativePort.NATIVE) {
+            initialize();
+        }
         readBufferSize = DEFUALT_READ_BUFFER_SIZE;
         syncBase = new GXSynchronousMediaBase(readBufferSize);
         setConfigurableSettings(AvailableMediaSettings.ALL.getValue());
@@ -270,11 +496,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      */
     public GXTerminal(final String port, final BaudRate baudRateValue, final int dataBitsValue,
             final Parity parityValue, final StopBits stopBitsValue) {
-        phoneNumber = "";
-        initialize();
-        readBufferSize = DEFUALT_READ_BUFFER_SIZE;
-        syncBase = new GXSynchronousMediaBase(readBufferSize);
-        setConfigurableSettings(AvailableMediaSettings.ALL.getValue());
+        this(GXNativePort.NATIVE);
         setPortName(port);
         setBaudRate(baudRateValue);
         setDataBits(dataBitsValue);
@@ -354,6 +576,20 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         return (os.indexOf("sunos") >= 0);
     }
 
+    /**
+     * @return Serial port access.
+     */
+    final GXNativePort getNativePort() {
+        return nativePort;
+    }
+
+    /**
+     * @return Command sync object.
+     */
+    final Object getCommandSync() {
+        return commandSync;
+    }
+
     /**
      * Initialize Gurux serial port library.
      */
@@ -462,6 +698,18 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      *            Occurred error.
      */
     final void notifyError(final RuntimeException ex) {
+        GXFlightRecorder fr = flightRecorder;
+        if (fr != null) {
+            byte[] msg = String.valueOf(ex.getMessage()).getBytes(StandardCharsets.UTF_8);
+            fr.record(TraceTypes.ERROR, getModemState(), msg, 0, msg.length);
+            // Only the first error is dumped, so repeated errors don't flood
+            // the listeners. Records are kept for the dump on close.
+            if (!errorDumped
+                    && trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
+                errorDumped = true;
+                dumpFlightRecorder(false);
+            }
+        }
         for (IGXMediaListener listener : mediaListeners) {
             listener.onError(this, ex);
             if (trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
@@ -531,74 +779,669 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         // Reset last position if end of packets is used.
         synchronized (syncBase.getSync()) {
             syncBase.resetLastPosition();
+            eopMatcher.reset();
         }
         byte[] buff = GXSynchronousMediaBase.getAsByteArray(data);
         if (buff == null) {
             throw new IllegalArgumentException("Data send failed. Invalid data.");
         }
-        NativeCode.write(hWnd, buff, writeTimeout);
-        this.bytesSend += buff.length;
+        write(buff);
     }
 
     /**
-     * Notify client from media state change.
+     * Send part of the byte array. Only the send of the whole array is given
+     * to the serial port without copying. Partial slice is copied once,
+     * because the native write sends the whole array.
      * 
-     * @param state
-     *            New media state.
+     * @param data
+     *            Data to send.
+     * @param offset
+     *            Start index.
+     * @param count
+     *            Amount of bytes to send.
+     */
+    public final void send(final byte[] data, final int offset, final int count) {
+        if (offset < 0 || count < 0 || count > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
+        }
+        if (trace == TraceLevel.VERBOSE) {
+            notifyTrace(new TraceEventArgs(TraceTypes.SENT, data, offset, count));
+        }
+        synchronized (syncBase.getSync()) {
+            syncBase.resetLastPosition();
+            eopMatcher.reset();
+        }
+        if (offset == 0 && count == data.length) {
+            write(data);
+        } else {
+            byte[] buff = new byte[count];
+            System.arraycopy(data, offset, buff, 0, count);
+            write(buff);
+        }
+    }
+
+    /**
+     * Send remaining bytes of the buffer. Position of the buffer is moved to
+     * the limit. If the buffer is backed by an array that holds only the sent
+     * bytes, array is given to the serial port without copying.
+     * 
+     * @param data
+     *            Data to send.
      */
-    private void notifyMediaStateChange(final MediaState state) {
-        for (IGXMediaListener listener : mediaListeners) {
-            if (trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
-                listener.onTrace(this, new TraceEventArgs(TraceTypes.INFO, state));
+    public final void send(final ByteBuffer data) {
+        int count = data.remaining();
+        if (data.hasArray()) {
+            send(data.array(), data.arrayOffset() + data.position(), count);
+        } else {
+            // Direct buffers are copied once.
+            byte[] buff = new byte[count];
+            data.duplicate().get(buff);
+            send(buff, 0, count);
+        }
+        data.position(data.limit());
+    }
+
+    /**
+     * Write bytes with the transmit queue if it's used or if asynchronous
+     * messages are queued. Otherwise bytes are written directly while the
+     * writer lock of the queue is held. All writes go through the queue, so
+     * messages are never mixed on the line.
+     * 
+     * @param buff
+     *            Bytes to send.
+     */
+    private void write(final byte[] buff) {
+        GXTransmitQueue q = transmitQueue;
+        if (q == null) {
+            throw new RuntimeException("Serial port is not open.");
+        } else if (transmitBufferSize != 0 || transmitHighWatermark != 0 || !q.writeDirect(buff)) {
+            // Wait until the writer has sent the message. Message is sent
+            // after the asynchronous messages that are queued before it.
+            try {
+                q.add(buff, false).join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
             }
-            listener.onMediaStateChange(this, new MediaStateEventArgs(state));
         }
     }
 
     /**
-     * Get error from the string.
+     * Send data asynchronously. Data is queued and written by the writer
+     * thread, so the caller is never blocked. Queued messages are combined
+     * up to transmit buffer size. If high watermark is set, writer waits
+     * while output buffer of the serial port is above the watermark. Use
+     * {@link #isWritable()} to check if more data should be queued.
      * 
-     * @param reply
-     *            Reply string from the modem.
-     * @return Error string if exists.
+     * @param data
+     *            Data to send.
+     * @return Future that is completed with the amount of sent bytes when
+     *         data has left the output buffer of the serial port.
+     * @see #setTransmitBufferSize(int)
+     * @see #setTransmitHighWatermark(int)
+     */
+    public final CompletableFuture<Integer> sendAsync(final Object data) {
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
+        }
+        byte[] buff = GXSynchronousMediaBase.getAsByteArray(data);
+        if (buff == null) {
+            throw new IllegalArgumentException("Data send failed. Invalid data.");
+        }
+        if (trace == TraceLevel.VERBOSE) {
+            notifyTrace(new TraceEventArgs(TraceTypes.SENT, buff));
+        }
+        synchronized (syncBase.getSync()) {
+            syncBase.resetLastPosition();
+            eopMatcher.reset();
+        }
+        GXTransmitQueue q = transmitQueue;
+        if (q == null) {
+            CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+            future.completeExceptionally(new IllegalStateException("Connection closed."));
+            return future;
+        }
+        return q.add(buff, true);
+    }
+
+    /**
+     * Check if more data can be queued without exceeding the high watermark.
+     * Producers use this to slow down instead of blocking on the serial
+     * port.
+     * 
+     * @return False, if queued bytes and output buffer of the serial port
+     *         are above the high watermark.
+     * @see #setTransmitHighWatermark(int)
+     */
+    public final boolean isWritable() {
+        GXTransmitQueue q = transmitQueue;
+        if (q == null || transmitHighWatermark == 0) {
+            return q != null;
+        }
+        return q.getQueuedBytes() + getOutputBufferSize() < transmitHighWatermark;
+    }
+
+    /**
+     * Gets output buffer size where writer stops writing.
+     * 
+     * @return High watermark in bytes. Zero if not used.
      */
-    private static String getError(final String reply) {
+    public final int getTransmitHighWatermark() {
+        return transmitHighWatermark;
+    }
 
-        int pos = reply.indexOf(GXTerminal.ERROR);
-        if (pos != -1) {
-            return reply.substring(pos + GXTerminal.ERROR.length()).trim();
+    /**
+     * Sets output buffer size where writer stops writing. When output buffer
+     * of the serial port holds more bytes than the watermark, queued
+     * messages wait in the transmit queue and the writer serves other
+     * terminals.
+     * 
+     * @param value
+     *            High watermark in bytes. Zero if not used.
+     */
+    public final void setTransmitHighWatermark(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid high watermark.");
+        }
+        boolean change = transmitHighWatermark != value;
+        transmitHighWatermark = value;
+        if (change) {
+            notifyPropertyChanged("TransmitHighWatermark");
         }
-        return reply.trim();
     }
 
     /**
-     * Open serial port and calls to phone number.
+     * Get amount of bytes in the output buffer of the serial port.
+     * 
+     * @return Amount of bytes to write or zero if it can't be read.
      */
-    @Override
-    public final void open() throws Exception {
-        close();
+    final int getOutputBufferSize() {
         try {
-            if (portName == null || portName == "") {
-                throw new IllegalArgumentException("Serial port is not selected.");
-            }
-            synchronized (syncBase.getSync()) {
-                syncBase.resetLastPosition();
+            return nativePort.getBytesToWrite(hWnd);
+        } catch (Exception ex) {
+            // getBytesToWrite fails with some chipsets.
+            return 0;
+        }
+    }
+
+    /**
+     * Get time that is needed to send one character.
+     * 
+     * @return Character time in nanoseconds.
+     */
+    final long getCharacterTime() {
+        return GXLineTiming.getCharacterTime(getBaudRate(), getDataBits(), getParity(), getStopBits());
+    }
+
+    /**
+     * Gets maximum amount of bytes that transmit queue combines to one write.
+     * 
+     * @return Transmit buffer size. Zero if transmit queue is not used.
+     */
+    public final int getTransmitBufferSize() {
+        return transmitBufferSize;
+    }
+
+    /**
+     * Sets maximum amount of bytes that transmit queue combines to one write.
+     * When transmit queue is used, sent messages are queued and written by
+     * the writer thread. Adjacent small messages are written with one native
+     * write.
+     * 
+     * @param value
+     *            Transmit buffer size. Zero if transmit queue is not used.
+     */
+    public final void setTransmitBufferSize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid transmit buffer size.");
+        }
+        boolean change = transmitBufferSize != value;
+        transmitBufferSize = value;
+        if (change) {
+            notifyPropertyChanged("TransmitBufferSize");
+        }
+    }
+
+    /**
+     * Gets how long queued message waits for other messages before it is
+     * written.
+     * 
+     * @return Transmit delay in milliseconds.
+     */
+    public final int getTransmitDelay() {
+        return transmitDelay;
+    }
+
+    /**
+     * Sets how long queued message waits for other messages before it is
+     * written. Messages are written without delay when transmit buffer size
+     * is reached.
+     * 
+     * @param value
+     *            Transmit delay in milliseconds.
+     */
+    public final void setTransmitDelay(final int value) {
+        boolean change = transmitDelay != value;
+        transmitDelay = value;
+        if (change) {
+            notifyPropertyChanged("TransmitDelay");
+        }
+    }
+
+    /**
+     * Get timer that handles exchange timeouts.
+     * 
+     * @return Timer.
+     */
+    static ScheduledThreadPoolExecutor getTimer() {
+        synchronized (GXTerminal.class) {
+            if (timer == null) {
+                timer = newScheduler("GXTerminal timer");
             }
-            notifyMediaStateChange(MediaState.OPENING);
-            if (trace.ordinal() >= TraceLevel.INFO.ordinal()) {
-                String eopStr = "None";
-                if (getEop() instanceof byte[]) {
-                    eopStr = GXCommon.bytesToHex((byte[]) getEop());
-                } else if (getEop() != null) {
-                    eopStr = getEop().toString();
-                }
-                notifyTrace(new TraceEventArgs(TraceTypes.INFO,
-                        "Settings: Port: " + this.getPortName() + " Baud Rate: " + getBaudRate() + " Data Bits: "
-                                + getDataBits() + " Parity: " + getParity().toString() + " Stop Bits: "
-                                + getStopBits().toString() + " Eop:" + eopStr));
+            return timer;
+        }
+    }
+
+    /**
+     * Get writer that drains transmit queues of all terminals.
+     * 
+     * @return Writer.
+     */
+    static ScheduledThreadPoolExecutor getWriter() {
+        synchronized (GXTerminal.class) {
+            if (writer == null) {
+                writer = newScheduler("GXTerminal writer");
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * Create scheduler with one daemon thread.
+     * 
+     * @param name
+     *            Thread name.
+     * @return Scheduler.
+     */
+    private static ScheduledThreadPoolExecutor newScheduler(final String name) {
+        ScheduledThreadPoolExecutor s = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        s.setRemoveOnCancelPolicy(true);
+        return s;
+    }
+
+    /**
+     * Send request and wait reply asynchronously. Returned future is
+     * completed from the receiver when end of packet or count given in
+     * receive parameters is received. Future is completed exceptionally with
+     * {@link TimeoutException} if reply is not received in wait time.
+     * Cancelling the future stops waiting the reply.
+     * <p>
+     * Received data that belongs to the reply is not given to the listeners
+     * or to the synchronous receive. Only one request can wait for the reply
+     * at the time.
+     * </p>
+     * 
+     * @param <T>
+     *            Reply type. byte[] and String are supported.
+     * @param request
+     *            Request to send.
+     * @param args
+     *            Receive parameters.
+     * @return Future that is completed with the reply.
+     */
+    public final <T> CompletableFuture<T> exchangeAsync(final byte[] request, final ReceiveParameters<T> args) {
+        final GXExchange<T> e = new GXExchange<T>(args);
+        synchronized (exchangeSync) {
+            if (exchange != null) {
+                throw new IllegalStateException("Previous request is waiting for the reply.");
+            }
+            exchange = e;
+        }
+        // Remove the request when it's completed, timed out or cancelled.
+        e.getFuture().whenComplete(new java.util.function.BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(final T reply, final Throwable ex) {
+                synchronized (exchangeSync) {
+                    if (exchange == e) {
+                        exchange = null;
+                    }
+                }
+            }
+        });
+        try {
+            send(request, null);
+        } catch (RuntimeException ex) {
+            e.getFuture().completeExceptionally(ex);
+            return e.getFuture();
+        }
+        if (args.getWaitTime() > 0) {
+            e.setTimeout(getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    e.getFuture().completeExceptionally(new TimeoutException("Reply was not received in "
+                            + String.valueOf(args.getWaitTime()) + " ms."));
+                }
+            }, args.getWaitTime(), TimeUnit.MILLISECONDS));
+        }
+        return e.getFuture();
+    }
+
+    /**
+     * Send request without waiting replies to the previous requests. Received
+     * data is split to frames with the frame decoder and frames are mapped to
+     * the requests with the reply correlator. If reply correlator is not set,
+     * replies are expected in the same order as the requests are sent.
+     * <p>
+     * If maximum amount of requests are already waiting for the reply,
+     * request is queued and sent when a reply is received. Received frames
+     * that are not replies are given to the listeners.
+     * </p>
+     * 
+     * @param request
+     *            Request to send.
+     * @param waitTime
+     *            Reply wait time in milliseconds. Wait time starts when the
+     *            request is sent.
+     * @return Future that is completed with the reply frame.
+     * @see #setFrameDecoder(IGXFrameDecoder)
+     * @see #setReplyCorrelator(IGXReplyCorrelator)
+     * @see #setPipelineWindow(int)
+     */
+    public final CompletableFuture<byte[]> exchangePipelined(final byte[] request, final int waitTime) {
+        if (frameDecoder == null) {
+            throw new IllegalStateException("Frame decoder is not set.");
+        }
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
+        }
+        return pipeline.add(request, waitTime);
+    }
+
+    /**
+     * Gets maximum amount of pipelined requests that can wait for the reply.
+     * 
+     * @return Pipeline window size.
+     */
+    public final int getPipelineWindow() {
+        return pipeline.getWindow();
+    }
+
+    /**
+     * Sets maximum amount of pipelined requests that can wait for the reply.
+     * Default value is one.
+     * 
+     * @param value
+     *            Pipeline window size.
+     */
+    public final void setPipelineWindow(final int value) {
+        pipeline.setWindow(value);
+    }
+
+    /**
+     * Gets reply correlator that maps received frames to pipelined requests.
+     * 
+     * @return Reply correlator.
+     */
+    public final IGXReplyCorrelator getReplyCorrelator() {
+        return pipeline.getCorrelator();
+    }
+
+    /**
+     * Sets reply correlator that maps received frames to pipelined requests.
+     * 
+     * @param value
+     *            Reply correlator. If null, replies are expected in the same
+     *            order as requests are sent.
+     */
+    public final void setReplyCorrelator(final IGXReplyCorrelator value) {
+        pipeline.setCorrelator(value);
+    }
+
+    /**
+     * @return Pipelined requests.
+     */
+    final GXPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Gets input stream of the connection. When input stream is used, all
+     * received data is read from the stream and listeners are not notified.
+     * Read waits until data is received or read timeout elapses. Input
+     * stream is closed when terminal is closed.
+     * 
+     * @return Input stream.
+     * @see #getReadTimeout()
+     */
+    public final InputStream getInputStream() {
+        if (hWnd == 0) {
+            throw new IllegalStateException("Serial port is not open.");
+        }
+        synchronized (exchangeSync) {
+            if (inputStream == null) {
+                inputStream = new GXTerminalInputStream(this);
+            }
+            return inputStream;
+        }
+    }
+
+    /**
+     * Gets output stream of the connection. Bytes are written directly to the
+     * serial port.
+     * 
+     * @return Output stream.
+     */
+    public final OutputStream getOutputStream() {
+        if (hWnd == 0) {
+            throw new IllegalStateException("Serial port is not open.");
+        }
+        return new GXTerminalOutputStream(this);
+    }
+
+    /**
+     * @return Input stream or null if received data is not read as a stream.
+     */
+    final GXTerminalInputStream getStreamInput() {
+        return inputStream;
+    }
+
+    /**
+     * Remove closed input stream.
+     * 
+     * @param value
+     *            Closed input stream.
+     */
+    final void removeInputStream(final GXTerminalInputStream value) {
+        synchronized (exchangeSync) {
+            if (inputStream == value) {
+                inputStream = null;
+            }
+        }
+    }
+
+    /**
+     * Gets asynchronous byte channel of the connection. When channel is used,
+     * all received data is read from the channel and listeners are not
+     * notified. Pending read is completed by the receiver thread. Channel
+     * reads end of stream when terminal is closed.
+     * 
+     * @return Asynchronous byte channel.
+     */
+    public final AsynchronousByteChannel getAsynchronousChannel() {
+        if (hWnd == 0) {
+            throw new IllegalStateException("Serial port is not open.");
+        }
+        synchronized (exchangeSync) {
+            if (channel == null) {
+                channel = new GXTerminalChannel(this);
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * @return Asynchronous channel or null if received data is not read from
+     *         the channel.
+     */
+    final GXTerminalChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Remove closed asynchronous channel.
+     * 
+     * @param value
+     *            Closed channel.
+     */
+    final void removeChannel(final GXTerminalChannel value) {
+        synchronized (exchangeSync) {
+            if (channel == value) {
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Subscribe received data. Only one subscriber is allowed at the time.
+     * While subscribed, received frames are given to the subscriber instead
+     * of the listeners. Serial port is read only when subscriber has
+     * requested more frames. If hardware handshake is used, RTS is cleared
+     * when there is no demand.
+     * 
+     * @param subscriber
+     *            Subscriber of the received data.
+     * @see #setFrameDecoder(IGXFrameDecoder)
+     */
+    public final void subscribe(final IGXSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber");
+        }
+        GXReceivePublisher value = new GXReceivePublisher(this, subscriber);
+        boolean added = false;
+        synchronized (exchangeSync) {
+            if (publisher == null) {
+                publisher = value;
+                added = true;
+            }
+        }
+        value.start();
+        if (!added) {
+            value.complete(new IllegalStateException("Terminal has already a subscriber."));
+        } else if (hWnd == 0) {
+            removePublisher(value);
+            value.complete(new IllegalStateException("Serial port is not open."));
+        }
+    }
+
+    /**
+     * @return Publisher of the received data or null if there is no
+     *         subscriber.
+     */
+    final GXReceivePublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Remove cancelled publisher.
+     * 
+     * @param value
+     *            Cancelled publisher.
+     */
+    final void removePublisher(final GXReceivePublisher value) {
+        synchronized (exchangeSync) {
+            if (publisher == value) {
+                publisher = null;
+            }
+        }
+    }
+
+    /**
+     * Give received data to the request that is waiting for the reply.
+     * 
+     * @param buffer
+     *            Received data.
+     * @param count
+     *            Amount of received bytes.
+     * @return Amount of bytes that belong to the reply.
+     */
+    final int handleExchange(final byte[] buffer, final int count) {
+        GXExchange<?> done = null;
+        int ret;
+        synchronized (exchangeSync) {
+            if (exchange == null) {
+                return 0;
+            }
+            ret = exchange.append(buffer, 0, count);
+            if (exchange.isReady()) {
+                done = exchange;
+                exchange = null;
+            }
+        }
+        // Future is completed outside of the lock, so next request can be
+        // sent from the completion handler.
+        if (done != null) {
+            done.complete();
+        }
+        return ret;
+    }
+
+    /**
+     * Notify client from media state change.
+     * 
+     * @param state
+     *            New media state.
+     */
+    private void notifyMediaStateChange(final MediaState state) {
+        for (IGXMediaListener listener : mediaListeners) {
+            if (trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
+                listener.onTrace(this, new TraceEventArgs(TraceTypes.INFO, state));
+            }
+            listener.onMediaStateChange(this, new MediaStateEventArgs(state));
+        }
+    }
+
+    /**
+     * Open serial port and calls to phone number.
+     */
+    @Override
+    public final void open() throws Exception {
+        close();
+        try {
+            if (portName == null || portName == "") {
+                throw new IllegalArgumentException("Serial port is not selected.");
+            }
+            synchronized (syncBase.getSync()) {
+                syncBase.resetLastPosition();
+                eopMatcher.reset();
+            }
+            errorDumped = false;
+            notifyMediaStateChange(MediaState.OPENING);
+            if (trace.ordinal() >= TraceLevel.INFO.ordinal()) {
+                String eopStr = "None";
+                if (getEop() instanceof byte[]) {
+                    eopStr = GXCommon.bytesToHex((byte[]) getEop());
+                } else if (getEop() != null) {
+                    eopStr = getEop().toString();
+                }
+                notifyTrace(new TraceEventArgs(TraceTypes.INFO,
+                        "Settings: Port: " + this.getPortName() + " Baud Rate: " + getBaudRate() + " Data Bits: "
+                                + getDataBits() + " Parity: " + getParity().toString() + " Stop Bits: "
+                                + getStopBits().toString() + " Eop:" + eopStr));
             }
             long[] tmp = new long[1];
-            hWnd = NativeCode.openSerialPort(portName, tmp);
+            hWnd = nativePort.openSerialPort(portName, tmp);
             // If user has change values before open.
             if (baudRate != BaudRate.BAUD_RATE_9600) {
                 setBaudRate(baudRate);
@@ -613,215 +1456,843 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
                 setStopBits(stopBits);
             }
             closing = tmp[0];
+            interCharacterWaitTime = 0;
+            if (frameDecoder != null) {
+                frameDecoder.reset();
+            }
+            transmitQueue = new GXTransmitQueue(this, getWriter());
+            unsolicitedResults.clear();
+            if (unsolicitedPrefixes.length != 0) {
+                urcDemultiplexer = new GXUrcDemultiplexer(unsolicitedPrefixes);
+            } else {
+                urcDemultiplexer = null;
+            }
             receiver = new GXReceiveThread(this, hWnd);
             setRtsEnable(true);
             setDtrEnable(true);
-            receiver.start();
-            Thread.sleep(INITIALIZE_SLEEP);
+            GXReceiveReactor reactor = receiveReactor;
+            if (reactor == null && receiveExecutor == null) {
+                reactor = getDefaultReceiveReactor();
+            }
+            if (reactor != null) {
+                receiver.start(reactor);
+            } else {
+                Executor executor = receiveExecutor;
+                if (executor == null) {
+                    executor = getDefaultReceiveExecutor();
+                }
+                receiver.start(executor);
+            }
+            GXModemInitializer initializer = new GXModemInitializer(this, commadWaitTime);
             try {
-                // Send AT
                 synchronized (getSynchronous()) {
-                    if (getInitializeCommands() != null) {
-                        for (String it : getInitializeCommands()) {
-                            sendCommand(it + "\r\n", commadWaitTime, null, true);
-                        }
+                    // Probing replaces fixed wait after the port is opened.
+                    initializer.probe();
+                    if (!server && !listening && modemProfileCache != null) {
+                        initializer.identify(modemProfileCache, portName);
                     }
-                    // Send AT few times. This helps for several modems.
-                    String reply;
-                    sendCommand("AT\r", commadWaitTime, null, false);
-                    sendCommand("AT\r", commadWaitTime, null, false);
-                    if (server) {
-                        if (!"OK".equalsIgnoreCase(sendCommand("AT\r", commadWaitTime, null, false))) {
-                            reply = sendCommand("AT\r", commadWaitTime, null, true);
-                            if (!"OK".equalsIgnoreCase(reply)) {
-                                throw new Exception("Invalid reply.");
+                    if (getInitializeCommands() != null) {
+                        String[] commands = getInitializeCommands();
+                        GXAtResponse[] results = initializer.execute(commands);
+                        for (int pos = 0; pos != results.length; ++pos) {
+                            if (results[pos].isError()) {
+                                throw new RuntimeException("Initialize command "
+                                        + commands[pos].trim() + " failed. "
+                                        + results[pos]);
                             }
                         }
-                        reply = sendCommand("ATA\r", commadWaitTime, null, true);
-                        if (!"ATA".equalsIgnoreCase(reply)) {
+                    }
+                    dtrHangup = false;
+                    if (hangupStrategy == HangupStrategy.DTR_DROP) {
+                        // Escape sequence is used if modem can't hang up with DTR.
+                        dtrHangup = initializer.send(GXAtCommand.DTR_HANGUP, commadWaitTime, false).isOk();
+                    }
+                    GXAtResponse reply;
+                    if (listening) {
+                        // Modem waits for the calls in command mode.
+                        initializer.configureErrors();
+                    } else if (server) {
+                        // Call result codes are not unsolicited while answering.
+                        progress = Progress.CONNECTING;
+                        reply = sendCommand(GXAtCommand.ANSWER, commadWaitTime, true, true);
+                        if (!reply.isEcho() && !reply.isConnect()) {
                             throw new Exception("Invalid reply.");
                         }
-                        progress = Progress.CONNECTING;
                     } else {
-                        // Send AT
-                        if ("OK".compareToIgnoreCase(sendCommand("AT\r", commadWaitTime, null, false)) != 0) {
-                            reply = sendCommand("AT\r", commadWaitTime, null, true);
-                            if ("OK".compareToIgnoreCase(reply) != 0) {
-                                throw new Exception("Invalid reply.");
-                            }
-                        }
-                        // Enable error reporting. It's OK if this fails.
-                        sendCommand("AT+CMEE\r", commadWaitTime, null, false);
-                        // Enable verbode error code,
-                        reply = sendCommand("AT+CMEE=2\r", commadWaitTime, null, false);
-                        if (!reply.equals("OK")) {
-                            // Enable numeric error codes
-                            sendCommand("AT+CMEE=1\r", commadWaitTime, null, false);
+                        initializer.configureErrors();
+                        initializer.checkPin(pin);
+                        progress = Progress.CONNECTING;
+                        if (phoneNumber == null || phoneNumber.length() == 0) {
+                            reply = sendCommand(GXAtCommand.DIAL, connectionWaitTime, true);
+                        } else {
+                            reply = sendCommand("ATD" + phoneNumber + "\r\n", connectionWaitTime, true);
                         }
-                        reply = sendCommand("AT+CPIN=?\r", commadWaitTime, null, false);
-                        boolean pinSupported = reply.equals("OK");
-                        // Is PIN Code supported.
-                        if (pinSupported) {
-                            // Check PIN-Code
-                            reply = sendCommand("AT+CPIN?\r", commadWaitTime, null, false);
-                            if (reply.contains("ERROR:")) {
-                                throw new RuntimeException("Failed to read PIN code.\r\n" + getError(reply));
-                            }
-                            // If PIN code is needed.
-                            if (!reply.equals("+CPIN: READY")) {
-                                if (pin == null || pin.equals("")) {
-                                    throw new RuntimeException("PIN is needed.");
-                                }
-                                reply = sendCommand(String.format("AT+CPIN=\"%1$s\"\r", pin), commadWaitTime, null,
-                                        false);
-                                if (!reply.equals("OK")) {
-                                    throw new RuntimeException("Failed to set PIN code." + getError(reply));
-                                }
-                                // Ask PIN Code again.
-                                reply = sendCommand("AT+CPIN?\r", commadWaitTime, null, false);
-                                if (!reply.equals("OK")) {
-                                    throw new RuntimeException("Failed to set PIN code." + getError(reply));
-                                }
-                            }
+                        if (!reply.isConnect()) {
+                            throw new RuntimeException("Connection failed: " + reply.getText().toLowerCase()
+                                    + " (when telephone call was being established).");
                         }
+                        progress = Progress.CONNECTED;
+                    }
+                }
+            } catch (Exception ex) {
+                if (modemProfileCache != null) {
+                    // Modem is probed again on the next open.
+                    modemProfileCache.remove(portName);
+                }
+                close();
+                throw ex;
+            }
+            if (modemProfileCache != null && initializer.getProfile() != null) {
+                modemProfileCache.put(initializer.getProfile());
+            }
+            initializationReport = initializer.finish();
+            if (trace.ordinal() >= TraceLevel.INFO.ordinal()) {
+                notifyTrace(new TraceEventArgs(TraceTypes.INFO, "Initialization: " + initializationReport));
+            }
+            notifyMediaStateChange(MediaState.OPEN);
+        } catch (Exception ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Send bytes to the serial port.
+     * 
+     * @param value
+     *            Bytes to send.
+     */
+    private void sendBytes(final byte[] value) {
+        // Reset last position if end of packet is used.
+        synchronized (syncBase.getSync()) {
+            syncBase.resetLastPosition();
+            eopMatcher.reset();
+        }
+        writeBytes(value);
+    }
+
+    /**
+     * Write bytes to the serial port through the transmit queue. Synchronous
+     * receive buffer is not reset, so replies to the previous requests are
+     * kept.
+     * 
+     * @param value
+     *            Bytes to send.
+     */
+    final void writeBytes(final byte[] value) {
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
+        }
+        if (trace == TraceLevel.VERBOSE) {
+            notifyTrace(new TraceEventArgs(TraceTypes.SENT, value));
+        }
+        write(value);
+    }
+
+    /**
+     * Queue bytes to the transmit queue. Synchronous receive buffer is not
+     * reset and the caller is not blocked.
+     * 
+     * @param value
+     *            Bytes to send.
+     * @return Future that is completed with the amount of written bytes
+     *         when the writer has written the bytes to the serial port.
+     */
+    final CompletableFuture<Integer> writeQueued(final byte[] value) {
+        GXTransmitQueue q = transmitQueue;
+        if (q == null) {
+            CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+            future.completeExceptionally(new RuntimeException("Serial port is not open."));
+            return future;
+        }
+        if (trace == TraceLevel.VERBOSE) {
+            notifyTrace(new TraceEventArgs(TraceTypes.SENT, value));
+        }
+        return q.add(value, false);
+    }
+
+    /**
+     * Write bytes to the serial port without tracing. Only the transmit
+     * queue calls this while its writer lock is held. Other senders use
+     * {@link #writeBytes(byte[])}.
+     * 
+     * @param value
+     *            Bytes to send.
+     */
+    final void writeNative(final byte[] value) {
+        GXFlightRecorder fr = flightRecorder;
+        if (fr != null) {
+            fr.record(TraceTypes.SENT, getModemState(), value, 0, value.length);
+        }
+        int chunk = transmitChunkSize;
+        if (chunk != 0) {
+            writePaced(value, chunk);
+        } else {
+            nativePort.write(hWnd, value, writeTimeout);
+            bytesSend += value.length;
+        }
+        GXReceiveThread r = receiver;
+        if (r != null) {
+            // Reply is expected. Reactor polls the port at the full rate.
+            r.wakeup();
+        }
+    }
+
+    /**
+     * Split bytes to chunks and write them at the line rate. Next chunk is
+     * written when the previous chunks are sent at the line rate, so the
+     * output buffer of the modem holds at most one chunk. Write timeout of
+     * each chunk is write timeout added with the time that is needed to send
+     * the chunk.
+     * 
+     * @param value
+     *            Bytes to send.
+     * @param chunk
+     *            Chunk size.
+     */
+    private void writePaced(final byte[] value, final int chunk) {
+        long ch = getCharacterTime();
+        long start = System.nanoTime();
+        byte[] tmp = null;
+        for (int pos = 0; pos < value.length; pos += chunk) {
+            int cnt = Math.min(chunk, value.length - pos);
+            long left = start + pos * ch - System.nanoTime();
+            while (left > 0) {
+                LockSupport.parkNanos(left);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("Transmit interrupted.");
+                }
+                left = start + pos * ch - System.nanoTime();
+            }
+            byte[] data = value;
+            if (cnt != value.length) {
+                if (tmp == null || tmp.length != cnt) {
+                    tmp = new byte[cnt];
+                }
+                System.arraycopy(value, pos, tmp, 0, cnt);
+                data = tmp;
+            }
+            int timeout = writeTimeout;
+            if (timeout != 0) {
+                timeout += GXLineTiming.toMilliseconds(cnt * ch);
+            }
+            nativePort.write(hWnd, data, timeout);
+            bytesSend += cnt;
+        }
+        // Transmit ends when the output buffer is sent.
+        long elapsed = System.nanoTime() - start + getOutputBufferSize() * ch;
+        synchronized (this) {
+            pacedBytes = value.length;
+            pacedTime = elapsed;
+        }
+    }
+
+    /**
+     * @return Modem state for the flight recorder.
+     */
+    final int getModemState() {
+        Progress p = progress;
+        if (p == null) {
+            return 0;
+        }
+        return p.ordinal();
+    }
+
+    /**
+     * Gets report of the last modem initialization. Report tells how long
+     * each initialization phase took and how much time was saved with
+     * adaptive probing and skipped commands.
+     * 
+     * @return Initialization report or null if modem is not initialized.
+     */
+    public final GXInitializationReport getInitializationReport() {
+        return initializationReport;
+    }
+
+    /**
+     * Gets cache of the modem capability profiles.
+     * 
+     * @return Profile cache or null if not used.
+     */
+    public final GXModemProfileCache getModemProfileCache() {
+        return modemProfileCache;
+    }
+
+    /**
+     * Sets cache of the modem capability profiles. When cache is used,
+     * identity of the modem is read on open and answers of the previous
+     * initialization are used to skip error mode and PIN code queries. Same
+     * cache can be shared between terminals.
+     * 
+     * @param value
+     *            Profile cache or null if not used.
+     */
+    public final void setModemProfileCache(final GXModemProfileCache value) {
+        modemProfileCache = value;
+    }
+
+    /**
+     * Gets prefixes of the unsolicited result codes. Default prefixes are
+     * RING, +CLIP:, +CREG:, +CSQ:, +CMTI: and NO CARRIER.
+     * 
+     * @return Prefixes of the unsolicited result codes.
+     */
+    public final String[] getUnsolicitedPrefixes() {
+        return unsolicitedPrefixes.clone();
+    }
+
+    /**
+     * Sets prefixes of the unsolicited result codes. Received line that
+     * starts with a prefix is removed from the received data and given to
+     * the unsolicited listeners. Information line of the sent command is
+     * not handled as unsolicited even if it starts with a prefix. Prefixes
+     * are not used while the call is established, so call result codes are
+     * returned to the dial. In data mode received data is not changed and
+     * NO CARRIER is only notified if it's one of the prefixes. Change is
+     * taken into use when the port is opened.
+     * 
+     * @param value
+     *            Prefixes of the unsolicited result codes. Empty array or
+     *            null if unsolicited result codes are not separated.
+     */
+    public final void setUnsolicitedPrefixes(final String[] value) {
+        String[] tmp;
+        if (value == null) {
+            tmp = new String[0];
+        } else {
+            tmp = value.clone();
+        }
+        if (!Arrays.equals(unsolicitedPrefixes, tmp)) {
+            unsolicitedPrefixes = tmp;
+            notifyPropertyChanged("UnsolicitedPrefixes");
+        }
+    }
+
+    /**
+     * Add listener of the unsolicited result codes. When there are no
+     * listeners, result codes are queued and they can be read with
+     * {@link #pollUnsolicited(int)}.
+     * 
+     * @param listener
+     *            Listener to add.
+     */
+    public final void addUnsolicitedListener(final IGXUnsolicitedListener listener) {
+        unsolicitedListeners.add(listener);
+    }
+
+    /**
+     * Remove listener of the unsolicited result codes.
+     * 
+     * @param listener
+     *            Listener to remove.
+     */
+    public final void removeUnsolicitedListener(final IGXUnsolicitedListener listener) {
+        unsolicitedListeners.remove(listener);
+    }
+
+    /**
+     * Read queued unsolicited result code.
+     * 
+     * @param waitTime
+     *            Wait time in milliseconds.
+     * @return Unsolicited result code or null if it's not received in the
+     *         wait time.
+     * @throws InterruptedException
+     *             Waiting is interrupted.
+     */
+    public final GXUnsolicitedResult pollUnsolicited(final int waitTime) throws InterruptedException {
+        return unsolicitedResults.poll(waitTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Unsolicited result code demultiplexer or null if unsolicited
+     *         result codes are not separated at the moment.
+     */
+    final GXUrcDemultiplexer getUrcDemultiplexer() {
+        if (progress == Progress.CONNECTING) {
+            return null;
+        }
+        return urcDemultiplexer;
+    }
+
+    /**
+     * @return Is modem in data mode.
+     */
+    final boolean isDataMode() {
+        return progress == Progress.CONNECTED;
+    }
+
+    /**
+     * Notify listeners from the unsolicited result code.
+     * 
+     * @param value
+     *            Received result code.
+     */
+    final void notifyUnsolicited(final GXUnsolicitedResult value) {
+        if (trace == TraceLevel.VERBOSE) {
+            notifyTrace(new TraceEventArgs(TraceTypes.RECEIVED, value.getText()));
+        }
+        if (unsolicitedListeners.isEmpty()) {
+            while (!unsolicitedResults.offer(value)) {
+                unsolicitedResults.poll();
+            }
+            return;
+        }
+        for (IGXUnsolicitedListener listener : unsolicitedListeners) {
+            listener.onUnsolicited(this, value);
+        }
+    }
+
+    /**
+     * Gets size of the flight recorder.
+     * 
+     * @return Size of the flight recorder in bytes. Zero if not used.
+     */
+    public final int getFlightRecorderSize() {
+        GXFlightRecorder fr = flightRecorder;
+        if (fr == null) {
+            return 0;
+        }
+        return fr.getCapacity();
+    }
+
+    /**
+     * Sets size of the flight recorder. Flight recorder keeps the latest sent
+     * and received bytes in off-heap memory without allocating memory for
+     * each record. Recorded data is lost when the size is changed.
+     * 
+     * @param value
+     *            Size of the flight recorder in bytes. Zero if not used.
+     */
+    public final void setFlightRecorderSize(final int value) {
+        if (value != getFlightRecorderSize()) {
+            if (value == 0) {
+                flightRecorder = null;
+            } else {
+                flightRecorder = new GXFlightRecorder(value);
+            }
+            notifyPropertyChanged("FlightRecorderSize");
+        }
+    }
+
+    /**
+     * Gets flight recorder.
+     * 
+     * @return Flight recorder or null if not used.
+     */
+    public final GXFlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    /**
+     * Is flight recorder dumped when connection is closed. Flight recorder is
+     * also dumped without removing the records when the first error occurs
+     * after the connection is opened and trace level is at least error.
+     * 
+     * @return True, if flight recorder is dumped when connection is closed.
+     */
+    public final boolean getDumpFlightRecorderOnClose() {
+        return dumpFlightRecorderOnClose;
+    }
+
+    /**
+     * Is flight recorder dumped when connection is closed. Flight recorder is
+     * also dumped without removing the records when the first error occurs
+     * after the connection is opened and trace level is at least error.
+     * 
+     * @param value
+     *            True, if flight recorder is dumped when connection is
+     *            closed.
+     */
+    public final void setDumpFlightRecorderOnClose(final boolean value) {
+        dumpFlightRecorderOnClose = value;
+    }
+
+    /**
+     * Give recorded data of the flight recorder to the trace listeners.
+     * Oldest record is given first. Records are removed after they are
+     * dumped.
+     */
+    public final void dumpFlightRecorder() {
+        dumpFlightRecorder(true);
+    }
+
+    /**
+     * Give recorded data of the flight recorder to the trace listeners.
+     * 
+     * @param clear
+     *            Are records removed after they are dumped.
+     */
+    private void dumpFlightRecorder(final boolean clear) {
+        GXFlightRecorder fr = flightRecorder;
+        if (fr != null) {
+            List<GXFlightRecord> records;
+            synchronized (fr) {
+                records = fr.decode();
+                if (clear) {
+                    fr.clear();
+                }
+            }
+            for (GXFlightRecord it : records) {
+                notifyTrace(it.toTraceEventArgs());
+            }
+        }
+    }
+
+    /**
+     * Gets size of the chunks when transmit is paced to the line rate.
+     * 
+     * @return Chunk size. Zero if transmit is not paced.
+     */
+    public final int getTransmitChunkSize() {
+        return transmitChunkSize;
+    }
+
+    /**
+     * Sets size of the chunks when transmit is paced to the line rate. When
+     * pacing is used, sent data is split to chunks and next chunk is written
+     * when the previous chunks are sent at the line rate that is calculated
+     * from baud rate, data bits, parity and stop bits. Chunk size should be
+     * the size of the transmit buffer of the modem. Write timeout is
+     * increased with the time that is needed to send the chunk.
+     * 
+     * @param value
+     *            Chunk size. Zero if transmit is not paced.
+     */
+    public final void setTransmitChunkSize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid chunk size.");
+        }
+        boolean change = transmitChunkSize != value;
+        transmitChunkSize = value;
+        if (change) {
+            notifyPropertyChanged("TransmitChunkSize");
+        }
+    }
+
+    /**
+     * Gets achieved throughput of the last paced transmit.
+     * 
+     * @return Throughput in bytes per second. Zero if paced transmit is not
+     *         made.
+     * @see #setTransmitChunkSize(int)
+     * @see #getLineRate()
+     */
+    public final synchronized double getTransmitThroughput() {
+        if (pacedTime == 0) {
+            return 0;
+        }
+        return (double) pacedBytes * GXLineTiming.NANOS_PER_SECOND / pacedTime;
+    }
+
+    /**
+     * Gets theoretical line rate that is calculated from baud rate, data
+     * bits, parity and stop bits.
+     * 
+     * @return Line rate in bytes per second.
+     */
+    public final double getLineRate() {
+        return GXLineTiming.getLineRate(getBaudRate(), getDataBits(), getParity(), getStopBits());
+    }
+
+    /**
+     * Send command to the serial port.
+     * 
+     * @param cmd
+     *            Command string to send.
+     * @param wt
+     *            Wait time.
+     * @param throwError
+     *            Is error thrown is reply message is not received.
+     * @return Received reply.
+     */
+    private GXAtResponse sendCommand(final String cmd, final int wt, final boolean throwError) {
+        return sendCommand(new GXAtCommand(cmd), wt, false, throwError);
+    }
+
+    /**
+     * Send command to the serial port.
+     * 
+     * @param command
+     *            Command to send.
+     * @param wt
+     *            Wait time.
+     * @param throwError
+     *            Is error thrown is reply message is not received.
+     * @return Received reply.
+     */
+    private GXAtResponse sendCommand(final GXAtCommand command, final int wt, final boolean throwError) {
+        return sendCommand(command, wt, false, throwError);
+    }
+
+    /**
+     * Send command to the serial port. Reply is parsed with V.250 result
+     * code tokenizer while it's received.
+     * 
+     * @param command
+     *            Command to send.
+     * @param wt
+     *            Wait time.
+     * @param waitEcho
+     *            Is reply completed when echo of the command is received.
+     * @param throwError
+     *            Is error thrown is reply message is not received.
+     * @return Received reply.
+     */
+    final GXAtResponse sendCommand(final GXAtCommand command, final int wt, final boolean waitEcho,
+            final boolean throwError) {
+        ReceiveParameters<byte[]> p = new ReceiveParameters<byte[]>(byte[].class);
+        p.setWaitTime(wt);
+        p.setEop("\r\n");
+        GXAtTokenizer tokenizer = new GXAtTokenizer(command, waitEcho);
+        GXUrcDemultiplexer urc = urcDemultiplexer;
+        if (urc != null) {
+            urc.setCommand(command);
+        }
+        try {
+            sendBytes(command.getData());
+            while (!tokenizer.isCompleted()) {
+                if (!receive(p)) {
+                    if (throwError) {
+                        throw new RuntimeException("Failed to receive answer from the modem. " + "Check serial port.");
+                    }
+                    break;
+                }
+                byte[] reply = p.getReply();
+                tokenizer.parse(reply, 0, reply.length);
+                p.setReply(null);
+            }
+        } finally {
+            if (urc != null) {
+                urc.setCommand(null);
+            }
+        }
+        GXAtResponse response = tokenizer.getResponse();
+        switch (response.getResult()) {
+        case NO_CARRIER:
+            if (command == GXAtCommand.HANG_UP) {
+                // Remote end has already ended the call.
+                break;
+            }
+            String str = "Connection failed: no carrier " + "(when telephone call was " + "being established). ";
+            for (String it : response.getLines()) {
+                if (it.startsWith("CAUSE:")) {
+                    str += it;
+                }
+            }
+            str += "\r\n" + sendCommand(GXAtCommand.ERROR_REPORT, wt, false).getText();
+            throw new RuntimeException(str);
+        case BUSY:
+            throw new RuntimeException("Connection failed: busy " + "(when telephone call " + "was being established).");
+        case NO_ANSWER:
+            throw new RuntimeException(
+                    "Connection failed: no answer " + "(when telephone call " + "was being established).");
+        case NO_DIALTONE:
+            throw new RuntimeException(
+                    "Connection failed: no dial tone " + "(when telephone call " + "was being established).");
+        default:
+            break;
+        }
+        return response;
+    }
+
+    /**
+     * Hang up the connected call. Modem is set to command mode with the
+     * escape sequence and call is ended with ATH. NO CARRIER reply to ATH
+     * means that remote end has already ended the call.
+     */
+    private void hangUpCall() {
+        synchronized (commandSync) {
+            if (progress == Progress.CONNECTED) {
+                long start = System.nanoTime();
+                boolean dtr = hangupStrategy == HangupStrategy.DTR_DROP && dtrHangup && dropDtr();
+                if (!dtr) {
+                    try {
+                        Thread.sleep(INITIALIZE_SLEEP);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex.getMessage());
+                    }
+                    ReceiveParameters<String> p = new ReceiveParameters<String>(String.class);
+                    p.setWaitTime(commadWaitTime);
+                    p.setCount(GXAtCommand.ESCAPE.getData().length);
+                    sendBytes(GXAtCommand.ESCAPE.getData());
+                    // It's OK if this fails.
+                    receive(p);
+                    sendCommand(GXAtCommand.HANG_UP, connectionWaitTime, false);
+                }
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                hangupTime = elapsed;
+                totalHangupTime += elapsed;
+                if (trace.ordinal() >= TraceLevel.INFO.ordinal()) {
+                    notifyTrace(new TraceEventArgs(TraceTypes.INFO,
+                            "Hang up: " + elapsed + " ms" + (dtr ? " (DTR drop)." : " (escape).")));
+                }
+            }
+        }
+    }
 
-                        progress = Progress.CONNECTING;
-                        if (phoneNumber == null || phoneNumber.length() == 0) {
-                            sendCommand("ATD\r\n", connectionWaitTime, null, true);
-                        } else {
-                            sendCommand("ATD" + phoneNumber + "\r\n", connectionWaitTime, null, true);
-                        }
-                        progress = Progress.CONNECTED;
+    /**
+     * Hang up by dropping DTR. Transmitted data is sent before DTR is
+     * dropped. DTR is kept low until carrier detect is lost.
+     * 
+     * @return True, if carrier is lost.
+     */
+    private boolean dropDtr() {
+        try {
+            long end = System.currentTimeMillis() + commadWaitTime;
+            while (getOutputBufferSize() != 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(CARRIER_POLL_TIME);
+            }
+            setDtrEnable(false);
+            try {
+                // DTR must be low longer than the DTR delay of the modem.
+                Thread.sleep(DTR_DROP_TIME);
+                end = System.currentTimeMillis() + commadWaitTime;
+                while (getCDHolding()) {
+                    if (System.currentTimeMillis() > end) {
+                        return false;
                     }
+                    Thread.sleep(CARRIER_POLL_TIME);
                 }
-            } catch (Exception ex) {
-                close();
-                throw ex;
+                return true;
+            } finally {
+                setDtrEnable(true);
             }
-            notifyMediaStateChange(MediaState.OPEN);
-        } catch (Exception ex) {
-            close();
-            throw ex;
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex.getMessage());
         }
     }
 
     /**
-     * Send bytes to the serial port.
+     * Fail pending requests and detach streams, channel and subscriber of
+     * the call. After this received data is given to the synchronous
+     * receive or to the listeners.
      * 
-     * @param value
-     *            Bytes to send.
+     * @param ex
+     *            Error that pending requests are failed with.
      */
-    private void sendBytes(final byte[] value) {
-        if (trace == TraceLevel.VERBOSE) {
-            notifyTrace(new TraceEventArgs(TraceTypes.SENT, value));
+    private void detachConsumers(final RuntimeException ex) {
+        failPending(ex);
+        GXTerminalInputStream in = inputStream;
+        if (in != null) {
+            in.close();
         }
-        bytesSend += value.length;
-        // Reset last position if end of packet is used.
-        synchronized (syncBase.getSync()) {
-            syncBase.resetLastPosition();
+        GXTerminalChannel ch = channel;
+        if (ch != null) {
+            removeChannel(ch);
+            ch.detach();
+        }
+        GXReceivePublisher pub = publisher;
+        if (pub != null) {
+            removePublisher(pub);
+            pub.complete(null);
         }
-        NativeCode.write(hWnd, value, writeTimeout);
     }
 
     /**
-     * Send command to the serial port.
+     * Fail pending exchange and pipelined requests.
      * 
-     * @param cmd
-     *            Command string to send.
-     * @param wt
-     *            Wait time.
-     * @param commandEop
-     *            End of command.
-     * @param throwError
-     *            Is error thrown is reply message is not received.
-     * @return Received reply.
+     * @param ex
+     *            Occurred error.
      */
-    private String sendCommand(final String cmd, final int wt, final String commandEop, final boolean throwError) {
-        ReceiveParameters<String> p = new ReceiveParameters<String>(String.class);
-        p.setWaitTime(wt);
-        if (commandEop != null) {
-            p.setEop(commandEop);
-
-        } else {
-            p.setEop("\r\n");
+    private void failPending(final RuntimeException ex) {
+        GXExchange<?> pending;
+        synchronized (exchangeSync) {
+            pending = exchange;
+            exchange = null;
         }
-        if (p.getEop().equals("")) {
-            p.setEop(null);
-            p.setCount(cmd.length());
+        if (pending != null) {
+            pending.getFuture().completeExceptionally(ex);
         }
-        try {
-            sendBytes(cmd.getBytes("ASCII"));
-        } catch (UnsupportedEncodingException ex) {
-            throw new RuntimeException(ex.getMessage());
+        pipeline.fail(ex);
+    }
+
+    /**
+     * Answer incoming call. Port must be open and modem must be in command
+     * mode.
+     * 
+     * @throws Exception
+     *             Call is not connected.
+     */
+    public final void answer() throws Exception {
+        answerCall();
+    }
+
+    /**
+     * Answer incoming call.
+     * 
+     * @return Reply of the answer command.
+     */
+    final GXAtResponse answerCall() {
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
         }
-        StringBuilder sb = new StringBuilder();
-        int index = -1;
-        String reply = "";
-        while (index == -1) {
-            if (!receive(p)) {
-                if (throwError) {
-                    throw new RuntimeException("Failed to receive answer from the modem. " + "Check serial port.");
-                }
-                return "";
+        synchronized (commandSync) {
+            if (progress != Progress.NONE) {
+                throw new IllegalStateException("Call is already connected.");
             }
-            sb.append(p.getReply());
-            reply = sb.toString();
-            // Remove echo.
-            if (sb.length() >= cmd.length() && reply.startsWith(cmd)) {
-                sb.delete(0, cmd.length());
-                reply = sb.toString();
-                // Remove echo and return if we are not expecting reply.
-                if (commandEop != null && commandEop.equals("")) {
-                    return "";
+            // Call result codes are not unsolicited while answering.
+            progress = Progress.CONNECTING;
+            try {
+                GXAtResponse reply = sendCommand(GXAtCommand.ANSWER, connectionWaitTime, false, true);
+                if (!reply.isConnect()) {
+                    throw new RuntimeException("Answer failed: " + reply.getText().toLowerCase() + ".");
                 }
-            }
-            if (commandEop != null) {
-                index = reply.lastIndexOf(commandEop);
-            } else if (reply.length() > MIN_REPLY_SIZE) {
-                index = reply.lastIndexOf("\r\nOK\r\n");
-                if (index == -1) {
-                    index = reply.lastIndexOf("ERROR:");
-                    if (index == -1) {
-                        index = reply.lastIndexOf("CONNECT");
-                        if (index == -1) {
-                            index = reply.lastIndexOf("NO CARRIER");
-                            if (index != -1) {
-                                String str = "Connection failed: no carrier " + "(when telephone call was "
-                                        + "being established). ";
-                                int start = reply.indexOf("CAUSE:");
-                                if (start != -1) {
-                                    if (start < index) {
-                                        str += reply.substring(start, index).trim();
-                                    } else {
-                                        str += reply.substring(start).trim();
-                                    }
-                                }
-                                str += "\r\n" + sendCommand("AT+CEER\r", wt, null, false);
-                                throw new RuntimeException(str);
-                            }
-                            if (reply.lastIndexOf("ERROR") != -1) {
-                                throw new RuntimeException("Connection failed: error " + "(when telephone call "
-                                        + "was being established).");
-                            }
-                            if (reply.lastIndexOf("BUSY") != -1) {
-                                throw new RuntimeException("Connection failed: busy " + "(when telephone call "
-                                        + "was being established).");
-                            }
-                        }
-                    }
-                } else if (index != 0) {
-                    // If there is a message before OK show it.
-                    reply = reply.substring(0, index);
-                    index = 0;
+                progress = Progress.CONNECTED;
+                return reply;
+            } finally {
+                if (progress != Progress.CONNECTED) {
+                    progress = Progress.NONE;
                 }
             }
-            p.setReply(null);
         }
-        if (index != 0 && commandEop == null) {
-            reply = reply.substring(0, 0) + reply.substring(0 + index);
+    }
+
+    /**
+     * Modem has answered the call automatically.
+     */
+    final void setConnected() {
+        progress = Progress.CONNECTED;
+    }
+
+    /**
+     * Hang up the connected call without closing the serial port. Modem is
+     * ready for the next call after the call is ended.
+     */
+    public final void hangUp() {
+        if (hWnd == 0) {
+            throw new RuntimeException("Serial port is not open.");
+        }
+        // Replies to the hang up commands are not given to the streams or
+        // pending requests of the call.
+        detachConsumers(new IllegalStateException("Call ended."));
+        try {
+            hangUpCall();
+        } finally {
+            progress = Progress.NONE;
+            synchronized (syncBase.getSync()) {
+                syncBase.resetLastPosition();
+                eopMatcher.reset();
+            }
         }
-        reply = reply.trim();
-        return reply;
+    }
+
+    /**
+     * @return Is call connected.
+     */
+    public final boolean isConnected() {
+        return progress == Progress.CONNECTED;
+    }
+
+    /**
+     * Set is modem left waiting for the calls when the port is opened. Call
+     * is not dialed or answered in open.
+     * 
+     * @param value
+     *            Is modem left waiting for the calls.
+     */
+    final void setListening(final boolean value) {
+        listening = value;
     }
 
     @Override
@@ -833,29 +2304,12 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
                 notifyError(ex);
                 throw ex;
             } finally {
-                if (progress != Progress.NONE) {
+                // Replies to the hang up commands are not given to the
+                // streams or pending requests.
+                detachConsumers(new IllegalStateException("Connection closed."));
+                try {
                     try {
-                        // Send AT
-                        synchronized (getSynchronous()) {
-                            if (progress == Progress.CONNECTED) {
-                                try {
-                                    Thread.sleep(INITIALIZE_SLEEP);
-                                } catch (InterruptedException ex) {
-                                    throw new RuntimeException(ex.getMessage());
-                                }
-                                ReceiveParameters<String> p = new ReceiveParameters<String>(String.class);
-                                p.setWaitTime(commadWaitTime);
-                                p.setCount("+++".length());
-                                try {
-                                    sendBytes("+++".getBytes("ASCII"));
-                                } catch (UnsupportedEncodingException ex) {
-                                    throw new RuntimeException(ex.getMessage());
-                                }
-                                // It's OK if this fails.
-                                receive(p);
-                                sendCommand("ATH0\r", connectionWaitTime, null, false);
-                            }
-                        }
+                        hangUpCall();
                     } finally {
                         progress = Progress.NONE;
                         if (receiver != null) {
@@ -863,16 +2317,26 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
                             receiver = null;
                         }
                     }
+                } finally {
+                    // Port is closed even if hang up fails.
+                    GXTransmitQueue q = transmitQueue;
+                    if (q != null) {
+                        transmitQueue = null;
+                        q.fail(new IllegalStateException("Connection closed."));
+                    }
+                    try {
+                        nativePort.closeSerialPort(hWnd, closing);
+                    } catch (java.lang.Exception e) {
+                        // Ignore all errors on close.
+                    }
+                    hWnd = 0;
+                    if (dumpFlightRecorderOnClose) {
+                        dumpFlightRecorder();
+                    }
+                    notifyMediaStateChange(MediaState.CLOSED);
+                    bytesSend = 0;
+                    syncBase.resetReceivedSize();
                 }
-                try {
-                    NativeCode.closeSerialPort(hWnd, closing);
-                } catch (java.lang.Exception e) {
-                    // Ignore all errors on close.
-                }
-                hWnd = 0;
-                notifyMediaStateChange(MediaState.CLOSED);
-                bytesSend = 0;
-                syncBase.resetReceivedSize();
             }
         }
     }
@@ -886,7 +2350,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         if (hWnd == 0) {
             return baudRate;
         }
-        return BaudRate.forValue(NativeCode.getBaudRate(hWnd));
+        return BaudRate.forValue(nativePort.getBaudRate(hWnd));
     }
 
     /**
@@ -901,8 +2365,9 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
             if (hWnd == 0) {
                 baudRate = value;
             } else {
-                NativeCode.setBaudRate(hWnd, value.getValue());
+                nativePort.setBaudRate(hWnd, value.getValue());
             }
+            interCharacterWaitTime = 0;
             notifyPropertyChanged("BaudRate");
         }
     }
@@ -1005,7 +2470,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return True if the port is in a break state; otherwise, false.
      */
     public final boolean getBreakState() {
-        return NativeCode.getBreakState(hWnd);
+        return nativePort.getBreakState(hWnd);
     }
 
     /**
@@ -1018,7 +2483,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         boolean change;
         change = getBreakState() != value;
         if (change) {
-            NativeCode.setBreakState(hWnd, value);
+            nativePort.setBreakState(hWnd, value);
             notifyPropertyChanged("BreakState");
         }
     }
@@ -1029,7 +2494,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Amount of read bytes.
      */
     public final int getBytesToRead() {
-        return NativeCode.getBytesToRead(hWnd);
+        return nativePort.getBytesToRead(hWnd);
     }
 
     /**
@@ -1038,7 +2503,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Amount of bytes to write in the send buffer.
      */
     public final int getBytesToWrite() {
-        return NativeCode.getBytesToWrite(hWnd);
+        return nativePort.getBytesToWrite(hWnd);
     }
 
     /**
@@ -1047,7 +2512,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Is Carrier Detect in holding state.
      */
     public final boolean getCDHolding() {
-        return NativeCode.getCDHolding(hWnd);
+        return nativePort.getCDHolding(hWnd);
     }
 
     /**
@@ -1056,7 +2521,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Clear-to-Send state.
      */
     public final boolean getCtsHolding() {
-        return NativeCode.getCtsHolding(hWnd);
+        return nativePort.getCtsHolding(hWnd);
     }
 
     /**
@@ -1068,7 +2533,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         if (hWnd == 0) {
             return dataBits;
         }
-        return NativeCode.getDataBits(hWnd);
+        return nativePort.getDataBits(hWnd);
     }
 
     /**
@@ -1084,8 +2549,9 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
             if (hWnd == 0) {
                 dataBits = value;
             } else {
-                NativeCode.setDataBits(hWnd, value);
+                nativePort.setDataBits(hWnd, value);
             }
+            interCharacterWaitTime = 0;
             notifyPropertyChanged("DataBits");
         }
     }
@@ -1096,7 +2562,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Is Data Set Ready set.
      */
     public final boolean getDsrHolding() {
-        return NativeCode.getDsrHolding(hWnd);
+        return nativePort.getDsrHolding(hWnd);
     }
 
     /**
@@ -1105,7 +2571,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Is DTR enabled.
      */
     public final boolean getDtrEnable() {
-        return NativeCode.getDtrEnable(hWnd);
+        return nativePort.getDtrEnable(hWnd);
     }
 
     /**
@@ -1117,7 +2583,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
     public final void setDtrEnable(final boolean value) {
         boolean change;
         change = getDtrEnable() != value;
-        NativeCode.setDtrEnable(hWnd, value);
+        nativePort.setDtrEnable(hWnd, value);
         if (change) {
             notifyPropertyChanged("DtrEnable");
         }
@@ -1129,7 +2595,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Used handshake protocol.
      */
     public final Handshake getHandshake() {
-        return Handshake.values()[NativeCode.getHandshake(hWnd)];
+        return Handshake.values()[nativePort.getHandshake(hWnd)];
     }
 
     /**
@@ -1142,7 +2608,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         boolean change;
         change = getHandshake() != value;
         if (change) {
-            NativeCode.setHandshake(hWnd, value.ordinal());
+            nativePort.setHandshake(hWnd, value.ordinal());
             notifyPropertyChanged("Handshake");
         }
     }
@@ -1161,7 +2627,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         if (hWnd == 0) {
             return parity;
         }
-        return Parity.values()[NativeCode.getParity(hWnd)];
+        return Parity.values()[nativePort.getParity(hWnd)];
     }
 
     /**
@@ -1177,8 +2643,9 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
             if (hWnd == 0) {
                 parity = value;
             } else {
-                NativeCode.setParity(hWnd, value.ordinal());
+                nativePort.setParity(hWnd, value.ordinal());
             }
+            interCharacterWaitTime = 0;
             notifyPropertyChanged("Parity");
         }
     }
@@ -1233,6 +2700,32 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         }
     }
 
+    /**
+     * Gets is off-heap memory used for the receive buffer.
+     * 
+     * @return True, if direct buffer is used.
+     */
+    public final boolean getReceiveBufferDirect() {
+        return receiveBufferDirect;
+    }
+
+    /**
+     * Sets is off-heap memory used for the receive buffer. Receive buffer is
+     * allocated when the connection is opened. Size of the buffer is read
+     * buffer size.
+     * 
+     * @param value
+     *            True, if direct buffer is used.
+     * @see #setReadBufferSize(int)
+     */
+    public final void setReceiveBufferDirect(final boolean value) {
+        boolean change = receiveBufferDirect != value;
+        receiveBufferDirect = value;
+        if (change) {
+            notifyPropertyChanged("ReceiveBufferDirect");
+        }
+    }
+
     /**
      * Gets the number of milliseconds before a time-out occurs when a read
      * operation does not finish.
@@ -1258,6 +2751,121 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         }
     }
 
+    /**
+     * Gets how received data is read from the serial port.
+     * 
+     * @return Receive mode.
+     */
+    public final ReceiveMode getReceiveMode() {
+        return receiveMode;
+    }
+
+    /**
+     * Sets how received data is read from the serial port. New value is used
+     * when the connection is opened next time.
+     * 
+     * @param value
+     *            Receive mode.
+     */
+    public final void setReceiveMode(final ReceiveMode value) {
+        boolean change = receiveMode != value;
+        receiveMode = value;
+        if (change) {
+            notifyPropertyChanged("ReceiveMode");
+        }
+    }
+
+    /**
+     * Gets how connected call is hung up.
+     * 
+     * @return Hang up strategy.
+     */
+    public final HangupStrategy getHangupStrategy() {
+        return hangupStrategy;
+    }
+
+    /**
+     * Sets how connected call is hung up. When DTR drop is used, modem is
+     * configured with AT&amp;D2 when the port is opened. New value is used
+     * when the connection is opened next time.
+     * 
+     * @param value
+     *            Hang up strategy.
+     */
+    public final void setHangupStrategy(final HangupStrategy value) {
+        boolean change = hangupStrategy != value;
+        hangupStrategy = value;
+        if (change) {
+            notifyPropertyChanged("HangupStrategy");
+        }
+    }
+
+    /**
+     * Gets how long the last hang up took.
+     * 
+     * @return Duration of the last hang up in milliseconds.
+     */
+    public final long getHangupTime() {
+        return hangupTime;
+    }
+
+    /**
+     * Gets how long all hang ups have taken. Time is the modem time that is
+     * spent to end the calls.
+     * 
+     * @return Duration of all hang ups in milliseconds.
+     */
+    public final long getTotalHangupTime() {
+        return totalHangupTime;
+    }
+
+    /**
+     * Gets inter-character timeout in character times. Inter-character
+     * timeout is used when receive mode is inter-character.
+     * 
+     * @return Inter-character timeout in character times.
+     * @see ReceiveMode#INTER_CHARACTER
+     */
+    public final double getInterCharacterTimeout() {
+        return interCharacterTimeout;
+    }
+
+    /**
+     * Sets inter-character timeout in character times. Received frame is
+     * handled when nothing is received during the timeout. Character time is
+     * calculated from baud rate, data bits, parity and stop bits. Default
+     * value is 3.5 character times.
+     * 
+     * @param value
+     *            Inter-character timeout in character times.
+     * @see ReceiveMode#INTER_CHARACTER
+     */
+    public final void setInterCharacterTimeout(final double value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid inter-character timeout.");
+        }
+        boolean change = interCharacterTimeout != value;
+        interCharacterTimeout = value;
+        interCharacterWaitTime = 0;
+        if (change) {
+            notifyPropertyChanged("InterCharacterTimeout");
+        }
+    }
+
+    /**
+     * Get inter-character timeout in milliseconds.
+     * 
+     * @return Inter-character timeout in milliseconds.
+     */
+    final int getInterCharacterWaitTime() {
+        int value = interCharacterWaitTime;
+        if (value == 0) {
+            value = GXLineTiming.toMilliseconds((long) (interCharacterTimeout * getCharacterTime()));
+            interCharacterWaitTime = value;
+        }
+        return value;
+    }
+
     /**
      * Gets a value indicating whether the Request to Send (RTS) signal is
      * enabled during serial communication.
@@ -1265,7 +2873,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
      * @return Is RTS enabled.
      */
     public final boolean getRtsEnable() {
-        return NativeCode.getRtsEnable(hWnd);
+        return nativePort.getRtsEnable(hWnd);
     }
 
     /**
@@ -1278,12 +2886,133 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
     public final void setRtsEnable(final boolean value) {
         boolean change;
         change = getRtsEnable() != value;
-        NativeCode.setRtsEnable(hWnd, value);
+        nativePort.setRtsEnable(hWnd, value);
         if (change) {
             notifyPropertyChanged("RtsEnable");
         }
     }
 
+    /**
+     * Gets executor that runs the receiver.
+     * 
+     * @return Executor that runs the receiver. If null, default receive
+     *         executor is used.
+     * @see #getDefaultReceiveExecutor()
+     */
+    public final Executor getReceiveExecutor() {
+        return receiveExecutor;
+    }
+
+    /**
+     * Sets executor that runs the receiver. Receiver blocks the executor
+     * thread until the connection is closed. New value is used when the
+     * connection is opened next time.
+     * 
+     * @param value
+     *            Executor that runs the receiver. If null, default receive
+     *            executor is used.
+     * @see #newVirtualThreadExecutor()
+     */
+    public final void setReceiveExecutor(final Executor value) {
+        receiveExecutor = value;
+    }
+
+    /**
+     * Gets executor that runs the receivers of all terminals that don't have
+     * own executor.
+     * 
+     * @return Default receive executor. If null, receiver is run in own
+     *         platform thread.
+     */
+    public static Executor getDefaultReceiveExecutor() {
+        synchronized (GXTerminal.class) {
+            return defaultReceiveExecutor;
+        }
+    }
+
+    /**
+     * Sets executor that runs the receivers of all terminals that don't have
+     * own executor.
+     * 
+     * @param value
+     *            Default receive executor. If null, receiver is run in own
+     *            platform thread.
+     */
+    public static void setDefaultReceiveExecutor(final Executor value) {
+        synchronized (GXTerminal.class) {
+            defaultReceiveExecutor = value;
+        }
+    }
+
+    /**
+     * Gets reactor that services the receiver.
+     * 
+     * @return Receive reactor. If null, receiver has own thread.
+     */
+    public final GXReceiveReactor getReceiveReactor() {
+        return receiveReactor;
+    }
+
+    /**
+     * Sets reactor that services the receiver. Reactor is used instead of
+     * own receiver thread. Receive mode is not used with the reactor. New
+     * value is used when the connection is opened next time.
+     * 
+     * @param value
+     *            Receive reactor. If null, receiver has own thread.
+     */
+    public final void setReceiveReactor(final GXReceiveReactor value) {
+        receiveReactor = value;
+    }
+
+    /**
+     * Gets reactor that services the receivers of all terminals that don't
+     * have own reactor or executor.
+     * 
+     * @return Default receive reactor.
+     */
+    public static GXReceiveReactor getDefaultReceiveReactor() {
+        synchronized (GXTerminal.class) {
+            return defaultReceiveReactor;
+        }
+    }
+
+    /**
+     * Sets reactor that services the receivers of all terminals that don't
+     * have own reactor or executor.
+     * 
+     * @param value
+     *            Default receive reactor.
+     */
+    public static void setDefaultReceiveReactor(final GXReceiveReactor value) {
+        synchronized (GXTerminal.class) {
+            defaultReceiveReactor = value;
+        }
+    }
+
+    /**
+     * Are virtual threads supported. Virtual threads require Java 21 or
+     * later.
+     * 
+     * @return True, if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return GXVirtualThreads.isSupported();
+    }
+
+    /**
+     * Create executor that runs every receiver in a new virtual thread.
+     * Virtual receiver waits for the data in Java, so waiting does not
+     * reserve a carrier thread.
+     * 
+     * @return Virtual thread executor.
+     * @throws UnsupportedOperationException
+     *             Virtual threads are not supported.
+     */
+    public static Executor newVirtualThreadExecutor() {
+        return GXVirtualThreads.newExecutor("GXTerminal");
+    }
+
     /**
      * Gets the standard number of stop bits per byte.
      * 
@@ -1293,7 +3022,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         if (hWnd == 0) {
             return stopBits;
         }
-        return StopBits.values()[NativeCode.getStopBits(hWnd)];
+        return StopBits.values()[nativePort.getStopBits(hWnd)];
     }
 
     /**
@@ -1309,8 +3038,9 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
             if (hWnd == 0) {
                 stopBits = value;
             } else {
-                NativeCode.setStopBits(hWnd, value.ordinal());
+                nativePort.setStopBits(hWnd, value.ordinal());
             }
+            interCharacterWaitTime = 0;
             notifyPropertyChanged("StopBits");
         }
     }
@@ -1433,6 +3163,18 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
             sb.append("</DataBits>");
             sb.append(nl);
         }
+        if (receiveMode != ReceiveMode.POLLING) {
+            sb.append("<ReceiveMode>");
+            sb.append(String.valueOf(receiveMode.getValue()));
+            sb.append("</ReceiveMode>");
+            sb.append(nl);
+        }
+        if (hangupStrategy != HangupStrategy.ESCAPE) {
+            sb.append("<Hangup>");
+            sb.append(String.valueOf(hangupStrategy.getValue()));
+            sb.append("</Hangup>");
+            sb.append(nl);
+        }
         if (initializeCommands != null && initializeCommands.length != 0) {
             sb.append("<Init>");
             for (String it : initializeCommands) {
@@ -1457,6 +3199,8 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         dataBits = DEFAULT_DATA_BITS;
         phoneNumber = "";
         server = false;
+        receiveMode = ReceiveMode.POLLING;
+        hangupStrategy = HangupStrategy.ESCAPE;
         initializeCommands = new String[0];
         if (value != null && !value.isEmpty()) {
             try {
@@ -1501,6 +3245,10 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
                             setPINCode(it.getFirstChild().getNodeValue());
                         } else if ("Server".equalsIgnoreCase(it.getNodeName())) {
                             server = true;
+                        } else if ("ReceiveMode".equalsIgnoreCase(it.getNodeName())) {
+                            setReceiveMode(ReceiveMode.forValue(Integer.parseInt(it.getFirstChild().getNodeValue())));
+                        } else if ("Hangup".equalsIgnoreCase(it.getNodeName())) {
+                            setHangupStrategy(HangupStrategy.forValue(Integer.parseInt(it.getFirstChild().getNodeValue())));
                         } else if ("Init".equalsIgnoreCase(it.getNodeName())) {
                             initializeCommands = it.getFirstChild().getNodeValue().split("[;]");
                         }
@@ -1521,6 +3269,8 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
         setParity(tmp.getParity());
         setDataBits(tmp.getDataBits());
         setPINCode(tmp.getPINCode());
+        setReceiveMode(tmp.getReceiveMode());
+        setHangupStrategy(tmp.getHangupStrategy());
         setInitializeCommands(getInitializeCommands());
     }
 
@@ -1555,6 +3305,7 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
     public final void resetSynchronousBuffer() {
         synchronized (syncBase.getSync()) {
             syncBase.resetReceivedSize();
+            eopMatcher.reset();
         }
     }
 
@@ -1591,7 +3342,48 @@ public class GXTerminal implements IGXMedia, IGXMedia2, AutoCloseable {
 
     @Override
     public final void setEop(final Object value) {
-        eop = value;
+        GXEopMatcher tmp = new GXEopMatcher(value);
+        synchronized (syncBase.getSync()) {
+            eop = value;
+            eopMatcher = tmp;
+        }
+    }
+
+    /**
+     * Get compiled end of packet. Access is synchronized with the sync object
+     * of the synchronous media base.
+     * 
+     * @return End of packet matcher.
+     */
+    final GXEopMatcher getEopMatcher() {
+        return eopMatcher;
+    }
+
+    /**
+     * Gets frame decoder that splits received data to frames.
+     * 
+     * @return Frame decoder or null if received data is not split.
+     */
+    public final IGXFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    /**
+     * Sets frame decoder that splits received data to frames. When frame
+     * decoder is set, listeners receive one complete frame in each received
+     * event. Frame decoder is not used when data is received synchronously.
+     * 
+     * @param value
+     *            Frame decoder or null if received data is not split.
+     * @see GXHdlcFrameDecoder
+     * @see GXLengthFieldFrameDecoder
+     * @see GXDelimiterFrameDecoder
+     */
+    public final void setFrameDecoder(final IGXFrameDecoder value) {
+        if (value != null) {
+            value.reset();
+        }
+        frameDecoder = value;
     }
 
     @Override
@@ -0,0 +1,330 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.WritePendingException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Asynchronous byte channel of the connected terminal. Pending read is
+ * completed by the receiver, which copies received bytes directly to the
+ * buffer of the caller. Bytes that are received when there is no pending read
+ * are kept until the next read. Written bytes are queued to the transmit
+ * queue and the write is completed by the writer when bytes are written to
+ * the serial port. Only one read and one write can be pending at the time.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#getAsynchronousChannel()
+ */
+final class GXTerminalChannel implements AsynchronousByteChannel {
+    /**
+     * Pending read.
+     */
+    private static final class PendingRead {
+        /**
+         * Target buffer.
+         */
+        private final ByteBuffer target;
+        /**
+         * Attachment of the handler.
+         */
+        private final Object attachment;
+        /**
+         * Completion handler.
+         */
+        private final CompletionHandler<Integer, Object> handler;
+
+        /**
+         * Constructor.
+         * 
+         * @param dst
+         *            Target buffer.
+         * @param att
+         *            Attachment of the handler.
+         * @param h
+         *            Completion handler.
+         */
+        PendingRead(final ByteBuffer dst, final Object att,
+                final CompletionHandler<Integer, Object> h) {
+            target = dst;
+            attachment = att;
+            handler = h;
+        }
+    }
+
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Bytes that are received when there is no pending read.
+     */
+    private final GXRingBuffer buffer;
+    /**
+     * Pending read or null.
+     */
+    private PendingRead pending;
+    /**
+     * Is write pending.
+     */
+    private boolean writing;
+    /**
+     * Is channel closed.
+     */
+    private boolean closed;
+    /**
+     * Is connection closed.
+     */
+    private boolean eof;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     */
+    GXTerminalChannel(final GXTerminal parent) {
+        media = parent;
+        buffer = new GXRingBuffer(Math.max(1, parent.getReadBufferSize()),
+                false);
+    }
+
+    /**
+     * Append received bytes. If there is a pending read, bytes are copied
+     * directly to the target buffer.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Byte count.
+     */
+    void append(final byte[] data, final int index, final int count) {
+        PendingRead r = null;
+        int cnt = 0;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (pending == null) {
+                buffer.put(data, index, count);
+                return;
+            }
+            r = pending;
+            pending = null;
+            cnt = Math.min(count, r.target.remaining());
+            r.target.put(data, index, cnt);
+            if (cnt != count) {
+                buffer.put(data, index + cnt, count - cnt);
+            }
+        }
+        r.handler.completed(cnt, r.attachment);
+    }
+
+    /**
+     * Connection is closed. Pending read is completed with end of stream.
+     */
+    void detach() {
+        PendingRead r;
+        synchronized (this) {
+            eof = true;
+            r = pending;
+            pending = null;
+        }
+        if (r != null) {
+            r.handler.completed(-1, r.attachment);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        PendingRead r;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            r = pending;
+            pending = null;
+            buffer.clear();
+        }
+        media.removeChannel(this);
+        if (r != null) {
+            r.handler.failed(new AsynchronousCloseException(), r.attachment);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A> void read(final ByteBuffer dst, final A attachment,
+            final CompletionHandler<Integer, ? super A> handler) {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("Read-only buffer.");
+        }
+        int cnt;
+        synchronized (this) {
+            if (pending != null) {
+                throw new ReadPendingException();
+            }
+            if (closed) {
+                cnt = -2;
+            } else if (buffer.size() != 0 || dst.remaining() == 0) {
+                cnt = buffer.get(dst);
+            } else if (eof) {
+                cnt = -1;
+            } else {
+                pending = new PendingRead(dst, attachment,
+                        (CompletionHandler<Integer, Object>) handler);
+                return;
+            }
+        }
+        if (cnt == -2) {
+            handler.failed(new ClosedChannelException(), attachment);
+        } else {
+            handler.completed(cnt, attachment);
+        }
+    }
+
+    @Override
+    public Future<Integer> read(final ByteBuffer dst) {
+        final CompletableFuture<Integer> future =
+                new CompletableFuture<Integer>();
+        read(dst, null, new FutureHandler(future));
+        return future;
+    }
+
+    @Override
+    public <A> void write(final ByteBuffer src, final A attachment,
+            final CompletionHandler<Integer, ? super A> handler) {
+        boolean open;
+        synchronized (this) {
+            if (writing) {
+                throw new WritePendingException();
+            }
+            open = !closed;
+            writing = open;
+        }
+        if (!open) {
+            handler.failed(new ClosedChannelException(), attachment);
+            return;
+        }
+        final int cnt = src.remaining();
+        if (cnt == 0) {
+            synchronized (this) {
+                writing = false;
+            }
+            handler.completed(0, attachment);
+            return;
+        }
+        byte[] data;
+        if (src.hasArray() && src.arrayOffset() == 0 && src.position() == 0
+                && src.array().length == cnt) {
+            data = src.array();
+        } else {
+            data = new byte[cnt];
+            src.duplicate().get(data);
+        }
+        media.writeQueued(data).whenComplete(
+                new BiConsumer<Integer, Throwable>() {
+                    @Override
+                    public void accept(final Integer result,
+                            final Throwable ex) {
+                        synchronized (GXTerminalChannel.this) {
+                            writing = false;
+                        }
+                        if (ex != null) {
+                            handler.failed(ex, attachment);
+                        } else {
+                            src.position(src.position() + cnt);
+                            handler.completed(cnt, attachment);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public Future<Integer> write(final ByteBuffer src) {
+        final CompletableFuture<Integer> future =
+                new CompletableFuture<Integer>();
+        write(src, null, new FutureHandler(future));
+        return future;
+    }
+
+    /**
+     * Completion handler that completes the future.
+     */
+    private static final class FutureHandler
+            implements CompletionHandler<Integer, Object> {
+        /**
+         * Completed future.
+         */
+        private final CompletableFuture<Integer> future;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Completed future.
+         */
+        FutureHandler(final CompletableFuture<Integer> value) {
+            future = value;
+        }
+
+        @Override
+        public void completed(final Integer result, final Object attachment) {
+            future.complete(result);
+        }
+
+        @Override
+        public void failed(final Throwable ex, final Object attachment) {
+            future.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Input stream of the connected terminal. Received bytes are stored to the
+ * stream buffer by the receiver and read with blocking reads. Read waits
+ * until data is received or read timeout of the terminal elapses.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#getInputStream()
+ */
+final class GXTerminalInputStream extends InputStream {
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Received bytes.
+     */
+    private final GXRingBuffer buffer;
+    /**
+     * Is stream closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     */
+    GXTerminalInputStream(final GXTerminal parent) {
+        media = parent;
+        buffer = new GXRingBuffer(Math.max(1, parent.getReadBufferSize()),
+                false);
+    }
+
+    /**
+     * Append received bytes.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Byte count.
+     */
+    synchronized void append(final byte[] data, final int index, final int count) {
+        if (!closed) {
+            buffer.put(data, index, count);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Mark stream closed. Waiting readers get end of stream.
+     */
+    synchronized void detach() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait until there is data to read.
+     * 
+     * @return False, if stream is closed and all data is read.
+     * @throws IOException
+     *             Read timeout elapsed or thread was interrupted.
+     */
+    private boolean waitData() throws IOException {
+        int timeout = media.getReadTimeout();
+        long end = System.currentTimeMillis() + timeout;
+        while (buffer.size() == 0) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (timeout <= 0) {
+                    wait();
+                } else {
+                    long left = end - System.currentTimeMillis();
+                    if (left <= 0) {
+                        throw new InterruptedIOException("Read timeout.");
+                    }
+                    wait(left);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ex.getMessage());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!waitData()) {
+            return -1;
+        }
+        int value = buffer.peek(0) & 0xFF;
+        buffer.skip(1);
+        return value;
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len)
+            throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!waitData()) {
+            return -1;
+        }
+        return buffer.get(b, off, len);
+    }
+
+    @Override
+    public synchronized long skip(final long n) throws IOException {
+        int count = (int) Math.min(n, buffer.size());
+        if (count > 0) {
+            buffer.skip(count);
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized int available() {
+        return buffer.size();
+    }
+
+    @Override
+    public void close() {
+        detach();
+        media.removeInputStream(this);
+    }
+}
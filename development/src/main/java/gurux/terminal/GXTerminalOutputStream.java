@@ -0,0 +1,89 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream of the connected terminal. Bytes are written to the serial
+ * port without buffering.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#getOutputStream()
+ */
+final class GXTerminalOutputStream extends OutputStream {
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     */
+    GXTerminalOutputStream(final GXTerminal parent) {
+        media = parent;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+            throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return;
+        }
+        byte[] data = b;
+        if (off != 0 || len != b.length) {
+            data = new byte[len];
+            System.arraycopy(b, off, data, 0, len);
+        }
+        try {
+            media.writeBytes(data);
+        } catch (RuntimeException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dial-in server that answers calls on many terminals concurrently. Serial
+ * ports are opened once and modems wait for the calls in command mode. When
+ * RING or +CLIP is received, call is answered and given to the call handler
+ * in own thread. Virtual threads are used when they are supported. Call is
+ * hung up when the handler returns and the terminal waits for the next call
+ * without closing the serial port.
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXTerminalServer implements AutoCloseable {
+    /**
+     * Call handler.
+     */
+    private final IGXCallHandler handler;
+    /**
+     * Ports that are waiting for the calls.
+     */
+    private final List<Port> ports = new ArrayList<Port>();
+    /**
+     * Amount of rings before modem answers. Zero if call is answered with
+     * ATA.
+     */
+    private int autoAnswerRings;
+    /**
+     * Executor of the call handlers.
+     */
+    private volatile Executor executor;
+    /**
+     * Amount of answered calls.
+     */
+    private final AtomicInteger callCount = new AtomicInteger();
+    /**
+     * Amount of connected calls.
+     */
+    private final AtomicInteger activeCallCount = new AtomicInteger();
+
+    /**
+     * Port that waits for the calls.
+     */
+    private final class Port implements IGXUnsolicitedListener, Runnable {
+        /**
+         * Terminal.
+         */
+        private final GXTerminal terminal;
+        /**
+         * Is call handled.
+         */
+        private final AtomicBoolean busy = new AtomicBoolean();
+        /**
+         * Phone number of the caller.
+         */
+        private volatile String caller;
+        /**
+         * Unsolicited prefixes of the terminal before the server was
+         * started. Null if prefixes are not changed.
+         */
+        private String[] prefixes;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Terminal.
+         */
+        Port(final GXTerminal value) {
+            terminal = value;
+        }
+
+        @Override
+        public void onUnsolicited(final Object sender,
+                final GXUnsolicitedResult result) {
+            String prefix = result.getPrefix();
+            if ("+CLIP:".equals(prefix)) {
+                if (result.getParameters().length != 0) {
+                    caller = result.getParameters()[0];
+                }
+            } else if ("CONNECT".equals(prefix) && autoAnswerRings != 0) {
+                // Modem has answered the call.
+                terminal.setConnected();
+            } else if (!"RING".equals(prefix)) {
+                return;
+            }
+            Executor e = executor;
+            if (e != null && busy.compareAndSet(false, true)) {
+                e.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (autoAnswerRings == 0) {
+                    GXAtResponse reply = terminal.answerCall();
+                    for (String it : reply.getLines()) {
+                        if (caller == null && it.startsWith("+CLIP:")) {
+                            caller = new GXUnsolicitedResult("+CLIP:", it)
+                                    .getParameters()[0];
+                        }
+                    }
+                } else {
+                    waitConnected();
+                }
+                callCount.incrementAndGet();
+                activeCallCount.incrementAndGet();
+                try {
+                    handler.onCall(terminal, caller);
+                } finally {
+                    activeCallCount.decrementAndGet();
+                }
+            } catch (RuntimeException ex) {
+                terminal.notifyError(ex);
+            } catch (Exception ex) {
+                terminal.notifyError(new RuntimeException(ex.getMessage(), ex));
+            } finally {
+                try {
+                    if (terminal.isOpen()) {
+                        terminal.hangUp();
+                    }
+                } catch (RuntimeException ex) {
+                    terminal.notifyError(ex);
+                } finally {
+                    caller = null;
+                    busy.set(false);
+                }
+            }
+        }
+
+        /**
+         * Wait until modem answers the call automatically.
+         * 
+         * @throws InterruptedException
+         *             Waiting is interrupted.
+         */
+        private void waitConnected() throws InterruptedException {
+            long end = System.currentTimeMillis()
+                    + terminal.getConnectionWaitTime();
+            while (!terminal.isConnected()) {
+                if (System.currentTimeMillis() > end) {
+                    throw new RuntimeException("Call was not answered.");
+                }
+                Thread.sleep(WAIT_TIME);
+            }
+        }
+    }
+
+    /**
+     * How often auto answer is checked in milliseconds.
+     */
+    private static final int WAIT_TIME = 50;
+
+    /**
+     * Constructor.
+     * 
+     * @param callHandler
+     *            Handler of the incoming calls.
+     */
+    public GXTerminalServer(final IGXCallHandler callHandler) {
+        if (callHandler == null) {
+            throw new IllegalArgumentException("Call handler is null.");
+        }
+        handler = callHandler;
+    }
+
+    /**
+     * Add terminal that waits for the calls. Terminals are added before the
+     * server is started.
+     * 
+     * @param terminal
+     *            Terminal.
+     */
+    public void add(final GXTerminal terminal) {
+        synchronized (ports) {
+            if (executor != null) {
+                throw new IllegalStateException("Server is started.");
+            }
+            ports.add(new Port(terminal));
+        }
+    }
+
+    /**
+     * @return Terminals that wait for the calls.
+     */
+    public GXTerminal[] getTerminals() {
+        synchronized (ports) {
+            GXTerminal[] list = new GXTerminal[ports.size()];
+            for (int pos = 0; pos != list.length; ++pos) {
+                list[pos] = ports.get(pos).terminal;
+            }
+            return list;
+        }
+    }
+
+    /**
+     * @return Amount of rings before modem answers the call. Zero if call is
+     *         answered with ATA.
+     */
+    public int getAutoAnswerRings() {
+        return autoAnswerRings;
+    }
+
+    /**
+     * @param value
+     *            Amount of rings before modem answers the call (ATS0). Zero
+     *            if call is answered with ATA when the first ring is
+     *            received.
+     */
+    public void setAutoAnswerRings(final int value) {
+        if (value < 0 || value > 255) {
+            throw new IllegalArgumentException("Invalid amount of rings.");
+        }
+        autoAnswerRings = value;
+    }
+
+    /**
+     * @return Amount of answered calls.
+     */
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return Amount of calls that are handled at the moment.
+     */
+    public int getActiveCallCount() {
+        return activeCallCount.get();
+    }
+
+    /**
+     * Open serial ports and start waiting for the calls. If some port can't
+     * be opened, already opened ports are closed.
+     * 
+     * @throws Exception
+     *             Occurred error.
+     */
+    public void start() throws Exception {
+        synchronized (ports) {
+            if (executor != null) {
+                throw new IllegalStateException("Server is started.");
+            }
+            if (GXVirtualThreads.isSupported()) {
+                executor = GXVirtualThreads.newExecutor("GXTerminal call");
+            } else {
+                executor = new Executor() {
+                    @Override
+                    public void execute(final Runnable command) {
+                        Thread t = new Thread(command, "GXTerminal call");
+                        t.setDaemon(true);
+                        t.start();
+                    }
+                };
+            }
+            try {
+                for (Port it : ports) {
+                    arm(it);
+                }
+            } catch (Exception ex) {
+                close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Open serial port and set modem to wait for the calls.
+     * 
+     * @param port
+     *            Port.
+     * @throws Exception
+     *             Occurred error.
+     */
+    private void arm(final Port port) throws Exception {
+        GXTerminal t = port.terminal;
+        port.prefixes = t.getUnsolicitedPrefixes();
+        List<String> prefixes = new ArrayList<String>();
+        for (String it : port.prefixes) {
+            prefixes.add(it);
+        }
+        for (String it : new String[] { "RING", "+CLIP:", "CONNECT" }) {
+            if (!prefixes.contains(it)) {
+                prefixes.add(it);
+            }
+        }
+        t.setUnsolicitedPrefixes(prefixes.toArray(new String[prefixes.size()]));
+        t.setListening(true);
+        t.addUnsolicitedListener(port);
+        t.open();
+        synchronized (t.getCommandSync()) {
+            // Caller number is optional.
+            t.sendCommand(new GXAtCommand("AT+CLIP=1\r"),
+                    t.getCommandWaitTime(), false, false);
+            GXAtResponse r = t.sendCommand(
+                    new GXAtCommand("ATS0=" + autoAnswerRings + "\r"),
+                    t.getCommandWaitTime(), false, true);
+            if (!r.isOk()) {
+                throw new RuntimeException(
+                        "Failed to set auto answer. " + r.getText());
+            }
+        }
+    }
+
+    /**
+     * Close serial ports. Connected calls are hung up and unsolicited
+     * prefixes of the terminals are restored.
+     */
+    @Override
+    public void close() {
+        synchronized (ports) {
+            for (Port it : ports) {
+                it.terminal.removeUnsolicitedListener(it);
+                try {
+                    it.terminal.close();
+                } catch (RuntimeException ex) {
+                    // Ignore errors on close.
+                }
+                it.terminal.setListening(false);
+                if (it.prefixes != null) {
+                    it.terminal.setUnsolicitedPrefixes(it.prefixes);
+                    it.prefixes = null;
+                }
+            }
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transmit queue of the terminal. Senders add messages to the lock-free
+ * queue and the writer combines adjacent messages to one native write.
+ * Messages are written when transmit buffer size is reached or when the
+ * first queued message has waited transmit delay.
+ * <p>
+ * If high watermark is set, writer does not write while output buffer of
+ * the serial port holds more bytes than the watermark. Writer is not
+ * blocked. It checks the output buffer again when the buffered bytes are
+ * sent at the line rate, so one writer thread serves all terminals.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXTransmitQueue {
+    /**
+     * Queued message.
+     */
+    private static final class Message {
+        /**
+         * Message data.
+         */
+        private final byte[] data;
+        /**
+         * Is future completed when message has left the output buffer of the
+         * serial port.
+         */
+        private final boolean drained;
+        /**
+         * Position of the end of the message in the written bytes.
+         */
+        private long end;
+        /**
+         * Error that completes the future.
+         */
+        private RuntimeException error;
+        /**
+         * Future that is completed when message is written.
+         */
+        private final CompletableFuture<Integer> future =
+                new CompletableFuture<Integer>();
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Message data.
+         * @param waitDrain
+         *            Is future completed when message has left the output
+         *            buffer of the serial port.
+         */
+        Message(final byte[] value, final boolean waitDrain) {
+            data = value;
+            drained = waitDrain;
+        }
+
+        /**
+         * Complete the future.
+         */
+        void complete() {
+            if (error == null) {
+                future.complete(data.length);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Parent terminal.
+     */
+    private final GXTerminal media;
+    /**
+     * Writer that drains the queue.
+     */
+    private final ScheduledExecutorService writer;
+    /**
+     * Queued messages.
+     */
+    private final ConcurrentLinkedQueue<Message> queue =
+            new ConcurrentLinkedQueue<Message>();
+    /**
+     * Amount of queued bytes.
+     */
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    /**
+     * Is delayed drain scheduled.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * Only one thread writes at the time.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Drains the queue.
+     */
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    /**
+     * Messages that are written with one native write.
+     */
+    private final List<Message> batch = new ArrayList<Message>();
+    /**
+     * Written messages that are waiting to leave the output buffer.
+     */
+    private final ArrayDeque<Message> sent = new ArrayDeque<Message>();
+    /**
+     * Messages whose futures are completed when lock is released.
+     */
+    private final List<Message> completed = new ArrayList<Message>();
+    /**
+     * Amount of written bytes.
+     */
+    private long written;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent terminal.
+     * @param executor
+     *            Writer that drains the queue.
+     */
+    GXTransmitQueue(final GXTerminal parent,
+            final ScheduledExecutorService executor) {
+        media = parent;
+        writer = executor;
+    }
+
+    /**
+     * @return Amount of queued bytes.
+     */
+    int getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * Add message to the queue.
+     * 
+     * @param data
+     *            Message data.
+     * @param waitDrain
+     *            Is future completed when message has left the output buffer
+     *            of the serial port. Otherwise future is completed when
+     *            message is written.
+     * @return Future that is completed with the message size.
+     */
+    CompletableFuture<Integer> add(final byte[] data,
+            final boolean waitDrain) {
+        Message m = new Message(data, waitDrain);
+        queue.offer(m);
+        int size = queuedBytes.addAndGet(data.length);
+        int delay = media.getTransmitDelay();
+        if (delay <= 0 || size >= media.getTransmitBufferSize()) {
+            writer.execute(drainTask);
+        } else {
+            schedule(delay * GXLineTiming.NANOS_PER_MILLISECOND);
+        }
+        return m.future;
+    }
+
+    /**
+     * Schedule drain if it is not already scheduled.
+     * 
+     * @param nanos
+     *            Delay in nanoseconds.
+     */
+    private void schedule(final long nanos) {
+        if (scheduled.compareAndSet(false, true)) {
+            writer.schedule(drainTask, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Write queued messages and complete sent messages.
+     */
+    void drain() {
+        do {
+            if (!lock.tryLock()) {
+                // Another thread is writing.
+                return;
+            }
+            long pending;
+            boolean deferred = false;
+            List<Message> done;
+            try {
+                scheduled.set(false);
+                while (!queue.isEmpty()) {
+                    if (!writeBatch()) {
+                        deferred = true;
+                        break;
+                    }
+                }
+                pending = checkSent();
+                done = takeCompleted();
+            } finally {
+                lock.unlock();
+            }
+            // Futures are completed outside of the lock.
+            for (Message it : done) {
+                it.complete();
+            }
+            if (deferred || pending != 0) {
+                // Check again when buffered bytes are sent.
+                schedule(Math.max(pending, 1) * media.getCharacterTime());
+                return;
+            }
+        } while (!queue.isEmpty());
+    }
+
+    /**
+     * Combine adjacent messages up to transmit buffer size and write them
+     * with one native write.
+     * 
+     * @return False, if output buffer is above the high watermark.
+     */
+    private boolean writeBatch() {
+        int watermark = media.getTransmitHighWatermark();
+        if (watermark > 0 && media.getOutputBufferSize() >= watermark) {
+            return false;
+        }
+        int max = media.getTransmitBufferSize();
+        int size = 0;
+        Message m;
+        while ((m = queue.peek()) != null) {
+            if (size != 0 && size + m.data.length > max) {
+                break;
+            }
+            queue.poll();
+            queuedBytes.addAndGet(-m.data.length);
+            // Cancelled messages are not sent.
+            if (!m.future.isDone()) {
+                batch.add(m);
+                size += m.data.length;
+            }
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        byte[] data;
+        if (batch.size() == 1) {
+            data = batch.get(0).data;
+        } else {
+            data = new byte[size];
+            int pos = 0;
+            for (Message it : batch) {
+                System.arraycopy(it.data, 0, data, pos, it.data.length);
+                pos += it.data.length;
+            }
+        }
+        RuntimeException error = null;
+        try {
+            media.writeNative(data);
+        } catch (RuntimeException ex) {
+            error = ex;
+        }
+        for (Message it : batch) {
+            written += it.data.length;
+            it.end = written;
+            it.error = error;
+            if (error == null && it.drained) {
+                sent.add(it);
+            } else {
+                completed.add(it);
+            }
+        }
+        batch.clear();
+        return true;
+    }
+
+    /**
+     * Complete messages that have left the output buffer.
+     * 
+     * @return Amount of bytes in the output buffer or zero if no message is
+     *         waiting.
+     */
+    private long checkSent() {
+        if (sent.isEmpty()) {
+            return 0;
+        }
+        int pending = media.getOutputBufferSize();
+        long transmitted = written - pending;
+        while (!sent.isEmpty() && sent.peek().end <= transmitted) {
+            completed.add(sent.poll());
+        }
+        if (sent.isEmpty()) {
+            return 0;
+        }
+        return pending;
+    }
+
+    /**
+     * Take completed messages. Lock must be held.
+     * 
+     * @return Completed messages.
+     */
+    private List<Message> takeCompleted() {
+        List<Message> tmp = new ArrayList<Message>(completed);
+        completed.clear();
+        return tmp;
+    }
+
+    /**
+     * Write data without queuing it if there are no queued messages. Data is
+     * written while the writer lock is held, so it's not mixed with the
+     * queued messages.
+     * 
+     * @param data
+     *            Data to write.
+     * @return False, if there are queued messages and data must be queued
+     *         after them.
+     */
+    boolean writeDirect(final byte[] data) {
+        lock.lock();
+        try {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+            media.writeNative(data);
+            written += data.length;
+        } finally {
+            lock.unlock();
+        }
+        if (!queue.isEmpty()) {
+            // Writer skipped the messages that were queued meanwhile.
+            writer.execute(drainTask);
+        }
+        return true;
+    }
+
+    /**
+     * Fail all queued messages.
+     * 
+     * @param ex
+     *            Occurred error.
+     */
+    void fail(final RuntimeException ex) {
+        Message m;
+        while ((m = queue.poll()) != null) {
+            queuedBytes.addAndGet(-m.data.length);
+            m.future.completeExceptionally(ex);
+        }
+        List<Message> done;
+        lock.lock();
+        try {
+            while ((m = sent.poll()) != null) {
+                m.error = ex;
+                completed.add(m);
+            }
+            done = takeCompleted();
+        } finally {
+            lock.unlock();
+        }
+        for (Message it : done) {
+            it.complete();
+        }
+    }
+}
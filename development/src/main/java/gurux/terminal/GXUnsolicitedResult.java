@@ -0,0 +1,144 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed unsolicited result code. Modem sends unsolicited result codes, like
+ * RING, +CREG or +CMTI, without a command.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#addUnsolicitedListener(IGXUnsolicitedListener)
+ */
+public final class GXUnsolicitedResult {
+    /**
+     * Prefix that was matched.
+     */
+    private final String prefix;
+    /**
+     * Received line.
+     */
+    private final String text;
+    /**
+     * Parameters.
+     */
+    private final String[] parameters;
+    /**
+     * Time when result code was received.
+     */
+    private final long time;
+
+    /**
+     * Constructor.
+     * 
+     * @param matchedPrefix
+     *            Prefix that was matched.
+     * @param line
+     *            Received line.
+     */
+    public GXUnsolicitedResult(final String matchedPrefix, final String line) {
+        prefix = matchedPrefix;
+        text = line;
+        parameters = parse(line);
+        time = System.currentTimeMillis();
+    }
+
+    /**
+     * Parse parameters after the colon. Parameters are separated with comma
+     * and quotes are removed from the string parameters.
+     * 
+     * @param line
+     *            Received line.
+     * @return Parameters.
+     */
+    private static String[] parse(final String line) {
+        int pos = line.indexOf(':');
+        if (pos == -1) {
+            return new String[0];
+        }
+        List<String> list = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (++pos; pos != line.length(); ++pos) {
+            char ch = line.charAt(pos);
+            if (ch == '"') {
+                quoted = !quoted;
+            } else if (ch == ',' && !quoted) {
+                list.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        list.add(sb.toString().trim());
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * @return Prefix that was matched.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return Received line.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return Parameters after the colon.
+     */
+    public String[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return Time when result code was received in milliseconds since epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
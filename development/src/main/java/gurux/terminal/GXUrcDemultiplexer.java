@@ -0,0 +1,441 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Separates unsolicited result codes from the received data. Line that starts
+ * with one of the prefixes is removed from the data, so it's not added to the
+ * synchronous receive buffer and it does not wake a waiting receive. Bytes
+ * at the start of the line are held until it's known if the line is an
+ * unsolicited result code. In data mode received data is not changed and
+ * only NO CARRIER is searched.
+ */
+final class GXUrcDemultiplexer {
+    /**
+     * Previous byte ended a line. Line terminators are held.
+     */
+    private static final int START = 0;
+    /**
+     * Line start matches a prefix.
+     */
+    private static final int CANDIDATE = 1;
+    /**
+     * Line is not an unsolicited result code.
+     */
+    private static final int DATA = 2;
+    /**
+     * Carriage return is received on the data line.
+     */
+    private static final int CR = 3;
+    /**
+     * Line is an unsolicited result code.
+     */
+    private static final int URC = 4;
+    /**
+     * Carriage return ended the unsolicited result code. Line feed that
+     * follows it is removed.
+     */
+    private static final int URC_END = 5;
+    /**
+     * Result code that ends the call in data mode.
+     */
+    private static final String NO_CARRIER = "NO CARRIER";
+    /**
+     * Line of NO CARRIER result code in data mode.
+     */
+    private static final byte[] NO_CARRIER_LINE =
+            ("\r\n" + NO_CARRIER + "\r").getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Prefixes of the unsolicited result codes.
+     */
+    private final String[] prefixes;
+    /**
+     * Is NO CARRIER searched in data mode.
+     */
+    private final boolean carrier;
+    /**
+     * Names of the commands that are waiting for a reply. Reply lines that
+     * start with the name are not unsolicited.
+     */
+    private volatile String[] commands = new String[0];
+    /**
+     * Parse state.
+     */
+    private int state = START;
+    /**
+     * Held bytes.
+     */
+    private byte[] pending = new byte[64];
+    /**
+     * Amount of held bytes.
+     */
+    private int pendingCount;
+    /**
+     * Position where the line starts in held bytes.
+     */
+    private int lineStart;
+    /**
+     * Amount of matched bytes of NO CARRIER line in data mode.
+     */
+    private int carrierMatch;
+    /**
+     * Bytes that are not unsolicited result codes.
+     */
+    private byte[] output = new byte[64];
+    /**
+     * Received unsolicited result codes.
+     */
+    private final List<GXUnsolicitedResult> results =
+            new ArrayList<GXUnsolicitedResult>();
+
+    /**
+     * Constructor.
+     * 
+     * @param values
+     *            Prefixes of the unsolicited result codes.
+     */
+    GXUrcDemultiplexer(final String[] values) {
+        prefixes = values.clone();
+        boolean found = false;
+        for (String it : prefixes) {
+            found |= NO_CARRIER.equals(it);
+        }
+        carrier = found;
+    }
+
+    /**
+     * Set command that is waiting for a reply. Information lines of the
+     * command are not handled as unsolicited result codes.
+     * 
+     * @param command
+     *            Sent command or null if reply is received.
+     */
+    void setCommand(final GXAtCommand command) {
+        if (command == null) {
+            commands = new String[0];
+            return;
+        }
+        String str = command.getText().trim();
+        if (str.regionMatches(true, 0, "AT", 0, 2)) {
+            str = str.substring(2);
+        }
+        List<String> list = new ArrayList<String>();
+        for (String it : str.split(";")) {
+            int end = 0;
+            while (end != it.length() && it.charAt(end) != '='
+                    && it.charAt(end) != '?') {
+                ++end;
+            }
+            if (end > 1) {
+                list.add(it.substring(0, end).toUpperCase());
+            }
+        }
+        commands = list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Separate unsolicited result codes from the received bytes in command
+     * mode.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param count
+     *            Amount of received bytes.
+     * @return Amount of bytes in the output buffer.
+     */
+    int process(final byte[] data, final int count) {
+        int len = 0;
+        for (int pos = 0; pos != count; ++pos) {
+            byte ch = data[pos];
+            boolean eol = ch == '\r' || ch == '\n';
+            if (state == URC_END) {
+                state = START;
+                if (ch == '\n') {
+                    continue;
+                }
+            }
+            switch (state) {
+            case DATA:
+            case CR:
+                len = put(len, ch);
+                if (ch == '\n') {
+                    state = START;
+                } else if (ch == '\r') {
+                    state = CR;
+                } else {
+                    state = DATA;
+                }
+                break;
+            case START:
+                hold(ch);
+                if (!eol) {
+                    lineStart = pendingCount - 1;
+                    state = CANDIDATE;
+                    len = classify(len, ch);
+                }
+                break;
+            case CANDIDATE:
+                hold(ch);
+                len = classify(len, ch);
+                break;
+            case URC:
+                if (eol) {
+                    String line = new String(pending, lineStart,
+                            pendingCount - lineStart, StandardCharsets.US_ASCII);
+                    results.add(new GXUnsolicitedResult(
+                            getPrefix(pendingCount - lineStart), line.trim()));
+                    pendingCount = 0;
+                    if (ch == '\r') {
+                        state = URC_END;
+                    } else {
+                        state = START;
+                    }
+                } else {
+                    hold(ch);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Search NO CARRIER from the received bytes in data mode. Received bytes
+     * are not changed, so they are given to the receivers as they are.
+     * Bytes that were held when data mode started are moved to the output
+     * buffer and they are given before the received bytes.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param count
+     *            Amount of received bytes.
+     * @return Amount of bytes in the output buffer.
+     */
+    int passThrough(final byte[] data, final int count) {
+        int len = release(0);
+        // Modem is in command mode when data mode ends.
+        state = START;
+        if (carrier) {
+            for (int pos = 0; pos != count; ++pos) {
+                byte ch = data[pos];
+                if (ch == NO_CARRIER_LINE[carrierMatch]) {
+                    ++carrierMatch;
+                    if (carrierMatch == NO_CARRIER_LINE.length) {
+                        carrierMatch = 0;
+                        results.add(
+                                new GXUnsolicitedResult(NO_CARRIER, NO_CARRIER));
+                    }
+                } else if (ch == NO_CARRIER_LINE[0]) {
+                    carrierMatch = 1;
+                } else {
+                    carrierMatch = 0;
+                }
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Check if held line is still an unsolicited result code candidate.
+     * 
+     * @param len
+     *            Amount of bytes in the output buffer.
+     * @param ch
+     *            Received byte.
+     * @return Amount of bytes in the output buffer.
+     */
+    private int classify(final int len, final byte ch) {
+        int cnt = pendingCount - lineStart;
+        if (ch != '\r' && ch != '\n') {
+            if (getPrefix(cnt) != null) {
+                if (!isCommand(cnt)) {
+                    state = URC;
+                    return len;
+                }
+            } else if (isCandidate(cnt)) {
+                return len;
+            }
+        }
+        int ret = release(len);
+        if (ch == '\n') {
+            state = START;
+        } else if (ch == '\r') {
+            state = CR;
+        } else {
+            state = DATA;
+        }
+        return ret;
+    }
+
+    /**
+     * Get prefix that held line starts with.
+     * 
+     * @param cnt
+     *            Length of the line.
+     * @return Matched prefix or null.
+     */
+    private String getPrefix(final int cnt) {
+        for (String it : prefixes) {
+            if (it.length() <= cnt && startsWith(it, it.length())) {
+                return it;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if held line is start of some prefix.
+     * 
+     * @param cnt
+     *            Length of the line.
+     * @return True, if held line can still match.
+     */
+    private boolean isCandidate(final int cnt) {
+        for (String it : prefixes) {
+            if (cnt < it.length() && startsWith(it, cnt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if held line is information line of the sent command.
+     * 
+     * @param cnt
+     *            Length of the line.
+     * @return True, if line is reply to the sent command.
+     */
+    private boolean isCommand(final int cnt) {
+        for (String it : commands) {
+            if (it.length() <= cnt && startsWith(it, it.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare start of held line.
+     * 
+     * @param value
+     *            Compared text.
+     * @param cnt
+     *            Amount of compared characters.
+     * @return True, if characters are equal.
+     */
+    private boolean startsWith(final String value, final int cnt) {
+        for (int pos = 0; pos != cnt; ++pos) {
+            if (pending[lineStart + pos] != value.charAt(pos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hold received byte.
+     * 
+     * @param ch
+     *            Received byte.
+     */
+    private void hold(final byte ch) {
+        if (pendingCount == pending.length) {
+            byte[] tmp = new byte[2 * pending.length];
+            System.arraycopy(pending, 0, tmp, 0, pendingCount);
+            pending = tmp;
+        }
+        pending[pendingCount] = ch;
+        ++pendingCount;
+    }
+
+    /**
+     * Move held bytes to the output buffer.
+     * 
+     * @param len
+     *            Amount of bytes in the output buffer.
+     * @return Amount of bytes in the output buffer.
+     */
+    private int release(final int len) {
+        int ret = len;
+        for (int pos = 0; pos != pendingCount; ++pos) {
+            ret = put(ret, pending[pos]);
+        }
+        pendingCount = 0;
+        return ret;
+    }
+
+    /**
+     * Add byte to the output buffer.
+     * 
+     * @param len
+     *            Amount of bytes in the output buffer.
+     * @param ch
+     *            Added byte.
+     * @return Amount of bytes in the output buffer.
+     */
+    private int put(final int len, final byte ch) {
+        if (len == output.length) {
+            byte[] tmp = new byte[2 * output.length];
+            System.arraycopy(output, 0, tmp, 0, len);
+            output = tmp;
+        }
+        output[len] = ch;
+        return len + 1;
+    }
+
+    /**
+     * @return Bytes that are not unsolicited result codes.
+     */
+    byte[] getOutput() {
+        return output;
+    }
+
+    /**
+     * @return Unsolicited result codes that are received in the last
+     *         process. Caller clears the list.
+     */
+    List<GXUnsolicitedResult> getResults() {
+        return results;
+    }
+}
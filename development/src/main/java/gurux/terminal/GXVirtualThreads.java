@@ -0,0 +1,133 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread support. Virtual threads are available from Java 21. They
+ * are used through reflection, so the component can still be used with
+ * older Java versions. Support is probed once by creating a virtual thread
+ * factory, so preview versions of Java 19 and 20 are not supported unless
+ * preview features are enabled.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXVirtualThreads {
+    /**
+     * Thread.isVirtual method or null if virtual threads are not supported.
+     */
+    private static final Method IS_VIRTUAL;
+
+    /**
+     * Virtual thread factory or null if virtual threads are not supported.
+     */
+    private static final ThreadFactory FACTORY;
+
+    static {
+        Method isVirtual = null;
+        ThreadFactory factory = null;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+        } catch (Exception ex) {
+            // Virtual threads are not supported or they are preview
+            // feature that is not enabled.
+            isVirtual = null;
+            factory = null;
+        }
+        IS_VIRTUAL = isVirtual;
+        FACTORY = factory;
+    }
+
+    /**
+     * Constructor.
+     */
+    private GXVirtualThreads() {
+
+    }
+
+    /**
+     * @return Are virtual threads supported.
+     */
+    static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * Check is thread virtual.
+     * 
+     * @param thread
+     *            Thread to check.
+     * @return True, if thread is virtual.
+     */
+    static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Create executor that starts every task in a new virtual thread.
+     * 
+     * @param name
+     *            Name of the started threads.
+     * @return Virtual thread executor.
+     */
+    static Executor newExecutor(final String name) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads require Java 21 or later.");
+        }
+        return new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                Thread t = FACTORY.newThread(command);
+                t.setName(name);
+                t.start();
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+/**
+ * Handler of the incoming calls.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminalServer
+ */
+public interface IGXCallHandler {
+    /**
+     * Call is connected. Method is called in own thread for each call. Call
+     * is ended when method returns.
+     * 
+     * @param terminal
+     *            Terminal that answered the call.
+     * @param caller
+     *            Phone number of the caller or null if it's not known.
+     * @throws Exception
+     *             Handling failed. Error is given to the media listeners of
+     *             the terminal.
+     */
+    void onCall(GXTerminal terminal, String caller) throws Exception;
+}
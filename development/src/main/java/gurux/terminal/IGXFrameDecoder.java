@@ -0,0 +1,67 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+import java.util.List;
+
+/**
+ * Frame decoder splits received data to complete frames. When frame decoder
+ * is set, listeners receive one complete frame in each received event.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#setFrameDecoder(IGXFrameDecoder)
+ */
+public interface IGXFrameDecoder {
+    /**
+     * Decode frames from received data. Data is continuation to the data that
+     * was given in the previous call.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Start index.
+     * @param count
+     *            Amount of received bytes.
+     * @param frames
+     *            Complete frames are added to this list.
+     */
+    void decode(byte[] data, int index, int count, List<byte[]> frames);
+
+    /**
+     * Remove partially received frame.
+     */
+    void reset();
+}
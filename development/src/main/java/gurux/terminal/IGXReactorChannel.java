@@ -0,0 +1,66 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+/**
+ * Channel that is serviced by the receive reactor.
+ * 
+ * @author Gurux Ltd.
+ * @see GXReceiveReactor
+ */
+public interface IGXReactorChannel {
+    /**
+     * Get amount of bytes that can be read without blocking. This is called
+     * from the reactor thread.
+     * 
+     * @return Amount of bytes waiting.
+     */
+    int getBytesToRead();
+
+    /**
+     * Read waiting bytes and handle them. This is called from the reactor
+     * thread when there are bytes to read.
+     */
+    void onReadable();
+
+    /**
+     * Error occurred while channel was serviced.
+     * 
+     * @param ex
+     *            Occurred error.
+     */
+    void onError(RuntimeException ex);
+}
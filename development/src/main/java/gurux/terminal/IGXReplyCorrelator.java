@@ -0,0 +1,63 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+/**
+ * Reply correlator maps received frames to pipelined requests. For example
+ * DLMS invoke ID can be used as a key.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#exchangePipelined(byte[], int)
+ */
+public interface IGXReplyCorrelator {
+    /**
+     * Get key of the request.
+     * 
+     * @param request
+     *            Sent request.
+     * @return Request key.
+     */
+    Object getRequestKey(byte[] request);
+
+    /**
+     * Get key of the received frame.
+     * 
+     * @param reply
+     *            Received frame.
+     * @return Reply key or null if frame is not a reply to any request.
+     */
+    Object getReplyKey(byte[] reply);
+}
@@ -0,0 +1,77 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal;
+
+/**
+ * Subscriber of the received data. Subscriber requests received frames with
+ * the subscription and terminal reads the serial port only when there is
+ * demand. Methods are called in the same order as in
+ * java.util.concurrent.Flow.Subscriber.
+ * 
+ * @author Gurux Ltd.
+ * @see GXTerminal#subscribe(IGXSubscriber)
+ */
+public interface IGXSubscriber {
+    /**
+     * Subscription is started.
+     * 
+     * @param subscription
+     *            Subscription that is used to request data.
+     */
+    void onSubscribe(IGXSubscription subscription);
+
+    /**
+     * Received frame. If frame decoder is not set, received bytes are given
+     * as they are read from the serial port.
+     * 
+     * @param data
+     *            Received data.
+     */
+    void onNext(byte[] data);
+
+    /**
+     * Subscription failed.
+     * 
+     * @param ex
+     *            Occurred error.
+     */
+    void onError(Throwable ex);
+
+    /**
+     * Connection is closed.
+     */
+    void onComplete();
+}
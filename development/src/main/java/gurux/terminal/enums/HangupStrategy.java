@@ -0,0 +1,113 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal.enums;
+
+import java.util.HashMap;
+
+/**
+ * Describes how the connected call is hung up.
+ */
+public enum HangupStrategy {
+    /**
+     * Modem is set to command mode with +++ escape sequence and call is ended
+     * with ATH.
+     */
+    ESCAPE(0),
+
+    /**
+     * DTR is dropped and call is ended when carrier detect is lost. Modem is
+     * configured with AT&amp;D2 when the port is opened. Escape sequence is
+     * used if modem does not accept AT&amp;D2 or carrier is not lost.
+     */
+    DTR_DROP(1);
+
+    /**
+     * Integer value of enumeration.
+     */
+    private int intValue;
+
+    /**
+     * Collection of integer and enumeration values.
+     */
+    private static java.util.HashMap<Integer, HangupStrategy> mappings;
+
+    /**
+     * Get mappings.
+     * 
+     * @return Hash map of enumeration and integer values.
+     */
+    private static HashMap<Integer, HangupStrategy> getMappings() {
+        synchronized (HangupStrategy.class) {
+            if (mappings == null) {
+                mappings = new HashMap<Integer, HangupStrategy>();
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Integer value for enumerator.
+     */
+    HangupStrategy(final int value) {
+        intValue = value;
+        synchronized (HangupStrategy.class) {
+            getMappings().put(value, this);
+        }
+    }
+
+    /**
+     * Get enemerator's integer value.
+     * 
+     * @return Integer value of enumerator.
+     */
+    public int getValue() {
+        return intValue;
+    }
+
+    /**
+     * Get enumerator from integer value.
+     * 
+     * @param value
+     *            integer value.
+     * @return Enumerator value.
+     */
+    public static HangupStrategy forValue(final int value) {
+        return getMappings().get(value);
+    }
+}
@@ -0,0 +1,120 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.terminal.enums;
+
+import java.util.HashMap;
+
+/**
+ * Describes how the receive thread reads data from the serial port.
+ */
+public enum ReceiveMode {
+    /**
+     * Receive thread reads the serial port, waits receive delay and reads
+     * the rest of the data. If nothing is received, the thread sleeps before
+     * it reads again.
+     */
+    POLLING(0),
+
+    /**
+     * Receive thread blocks until the serial port has data or the port is
+     * closed. Received bytes are handled as soon as they arrive.
+     */
+    EVENT(1),
+
+    /**
+     * Receive thread blocks until the serial port has data and reads until
+     * the line is quiet for inter-character timeout. Received frame is
+     * handled when the line goes quiet.
+     */
+    INTER_CHARACTER(2);
+
+    /**
+     * Integer value of enumeration.
+     */
+    private int intValue;
+
+    /**
+     * Collection of integer and enumeration values.
+     */
+    private static java.util.HashMap<Integer, ReceiveMode> mappings;
+
+    /**
+     * Get mappings.
+     * 
+     * @return Hash map of enumeration and integer values.
+     */
+    private static HashMap<Integer, ReceiveMode> getMappings() {
+        synchronized (ReceiveMode.class) {
+            if (mappings == null) {
+                mappings = new HashMap<Integer, ReceiveMode>();
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Integer value for enumerator.
+     */
+    ReceiveMode(final int value) {
+        intValue = value;
+        synchronized (ReceiveMode.class) {
+            getMappings().put(value, this);
+        }
+    }
+
+    /**
+     * Get enemerator's integer value.
+     * 
+     * @return Integer value of enumerator.
+     */
+    public int getValue() {
+        return intValue;
+    }
+
+    /**
+     * Get enumerator from integer value.
+     * 
+     * @param value
+     *            integer value.
+     * @return Enumerator value.
+     */
+    public static ReceiveMode forValue(final int value) {
+        return getMappings().get(value);
+    }
+}
@@ -0,0 +1,148 @@
+package gurux.terminal;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for AT reply tokenizer.
+ */
+public class GXAtTokenizerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXAtTokenizerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXAtTokenizerTest.class);
+    }
+
+    /**
+     * Parse reply.
+     * 
+     * @param t
+     *            Tokenizer.
+     * @param reply
+     *            Received reply.
+     * @return Is reply completed.
+     */
+    private static boolean parse(final GXAtTokenizer t, final String reply) {
+        byte[] data = reply.getBytes();
+        return t.parse(data, 0, data.length);
+    }
+
+    /**
+     * Information lines are collected before the final result code.
+     */
+    public final void testMultiLine() {
+        GXAtTokenizer t =
+                new GXAtTokenizer(new GXAtCommand("AT+CGMI;+CGMM\r"), false);
+        assertTrue(parse(t,
+                "\r\nSIEMENS\r\n\r\nMC55\r\n\r\nOK\r\n"));
+        GXAtResponse r = t.getResponse();
+        assertTrue(r.isOk());
+        assertFalse(r.isEcho());
+        assertEquals(2, r.getLines().size());
+        assertEquals("SIEMENS", r.getLines().get(0));
+        assertTrue(r.hasLine("mc55"));
+        assertEquals("SIEMENS\r\nMC55", r.getText());
+    }
+
+    /**
+     * Echo of the command is not an information line.
+     */
+    public final void testEcho() {
+        GXAtTokenizer t = new GXAtTokenizer(new GXAtCommand("AT+CSQ\r"), false);
+        assertFalse(parse(t, "at+csq\r"));
+        assertTrue(t.getResponse().isEcho());
+        assertTrue(parse(t, "\r\n+CSQ: 20,0\r\n\r\nOK\r\n"));
+        assertEquals(1, t.getResponse().getLines().size());
+        assertEquals("+CSQ: 20,0", t.getResponse().getLines().get(0));
+    }
+
+    /**
+     * Reply is completed by the echo when it's asked.
+     */
+    public final void testWaitEcho() {
+        GXAtTokenizer t = new GXAtTokenizer(GXAtCommand.ANSWER, true);
+        assertTrue(parse(t, "ATA\r\n"));
+        assertTrue(t.isCompleted());
+        assertTrue(t.getResponse().isEcho());
+        assertFalse(t.getResponse().isFinal());
+    }
+
+    /**
+     * Extended error result codes.
+     */
+    public final void testExtendedErrors() {
+        GXAtTokenizer t =
+                new GXAtTokenizer(new GXAtCommand("AT+CPIN?\r"), false);
+        assertTrue(parse(t, "\r\n+CME ERROR: SIM not inserted\r\n"));
+        GXAtResponse r = t.getResponse();
+        assertEquals(GXAtResponse.Result.CME_ERROR, r.getResult());
+        assertTrue(r.isError());
+        assertEquals("SIM not inserted", r.getError());
+
+        t = new GXAtTokenizer(new GXAtCommand("AT+CMGS=1\r"), false);
+        assertTrue(parse(t, "\r\n+CMS ERROR: 500\r\n"));
+        r = t.getResponse();
+        assertEquals(GXAtResponse.Result.CMS_ERROR, r.getResult());
+        assertEquals("500", r.getError());
+
+        t = new GXAtTokenizer(GXAtCommand.AT, false);
+        assertTrue(parse(t, "\r\nERROR\r\n"));
+        assertEquals(GXAtResponse.Result.ERROR, t.getResponse().getResult());
+        assertEquals("", t.getResponse().getError());
+    }
+
+    /**
+     * Final result code is split between reads.
+     */
+    public final void testSplit() {
+        GXAtTokenizer t = new GXAtTokenizer(GXAtCommand.DIAL, false);
+        assertFalse(parse(t, "\r\nCONN"));
+        assertFalse(parse(t, "ECT 96"));
+        assertFalse(t.getResponse().isFinal());
+        assertTrue(parse(t, "00\r\n"));
+        assertTrue(t.getResponse().isConnect());
+        assertEquals("9600", t.getResponse().getRate());
+    }
+
+    /**
+     * Empty lines and bytes after the final result code are ignored.
+     */
+    public final void testEmptyLines() {
+        GXAtTokenizer t = new GXAtTokenizer(GXAtCommand.AT, false);
+        assertFalse(parse(t, "\r\n\r\n\n\r"));
+        assertTrue(t.getResponse().getLines().isEmpty());
+        assertTrue(parse(t, "OK   \r\nRING\r\n"));
+        assertTrue(t.getResponse().isOk());
+        assertTrue(t.getResponse().getLines().isEmpty());
+    }
+
+    /**
+     * Call result codes.
+     */
+    public final void testCallResults() {
+        String[] replies = { "NO CARRIER", "BUSY", "NO ANSWER",
+                "NO DIALTONE", "NO DIAL TONE" };
+        GXAtResponse.Result[] results = { GXAtResponse.Result.NO_CARRIER,
+                GXAtResponse.Result.BUSY, GXAtResponse.Result.NO_ANSWER,
+                GXAtResponse.Result.NO_DIALTONE,
+                GXAtResponse.Result.NO_DIALTONE };
+        for (int pos = 0; pos != replies.length; ++pos) {
+            GXAtTokenizer t = new GXAtTokenizer(GXAtCommand.DIAL, false);
+            assertTrue(parse(t, "\r\n" + replies[pos] + "\r\n"));
+            assertEquals(results[pos], t.getResponse().getResult());
+            assertFalse(t.getResponse().isOk());
+        }
+    }
+}
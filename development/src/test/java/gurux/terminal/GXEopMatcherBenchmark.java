@@ -0,0 +1,116 @@
+package gurux.terminal;
+
+import java.util.Random;
+
+import gurux.common.GXSynchronousMediaBase;
+
+/**
+ * Benchmark that compares end of packet matcher with indexOf loop that
+ * searches every end of packet alternative from the received chunk. This is
+ * not a unit test, so it's not run with the test suite. Run it with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=gurux.terminal.GXEopMatcherBenchmark
+ * </pre>
+ */
+public final class GXEopMatcherBenchmark {
+    /**
+     * Size of the received chunk.
+     */
+    private static final int CHUNK = 64;
+    /**
+     * How many times received data is searched.
+     */
+    private static final int ROUNDS = 2000;
+
+    /**
+     * Constructor.
+     */
+    private GXEopMatcherBenchmark() {
+    }
+
+    /**
+     * Search data with end of packet matcher.
+     *
+     * @param eops
+     *            End of packet alternatives.
+     * @param data
+     *            Received data.
+     * @return Amount of found end of packets.
+     */
+    private static int matcher(final Object[] eops, final byte[] data) {
+        GXEopMatcher m = new GXEopMatcher(eops);
+        int found = 0;
+        for (int round = 0; round != ROUNDS; ++round) {
+            for (int pos = 0; pos < data.length; pos += CHUNK) {
+                if (m.match(data, pos, CHUNK) != -1) {
+                    ++found;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Search data with indexOf for each end of packet alternative.
+     *
+     * @param eops
+     *            End of packet alternatives.
+     * @param data
+     *            Received data.
+     * @return Amount of found end of packets.
+     */
+    private static int indexOf(final Object[] eops, final byte[] data) {
+        int found = 0;
+        byte[] buff = new byte[CHUNK];
+        for (int round = 0; round != ROUNDS; ++round) {
+            for (int pos = 0; pos < data.length; pos += CHUNK) {
+                System.arraycopy(data, pos, buff, 0, CHUNK);
+                for (Object eop : eops) {
+                    if (GXSynchronousMediaBase.indexOf(buff,
+                            GXSynchronousMediaBase.getAsByteArray(eop), 0,
+                            CHUNK) != -1) {
+                        ++found;
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args
+     *            Not used.
+     */
+    public static void main(final String[] args) {
+        Object[] eops = new Object[] { "\r\nOK\r\n", "ERROR", (byte) 0x7E };
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        // Data doesn't contain end of packet, so the whole chunk is searched.
+        for (int pos = 0; pos != data.length; ++pos) {
+            if (data[pos] == 0x7E || data[pos] == '\r' || data[pos] == 'E') {
+                data[pos] = 0;
+            }
+        }
+        // Warm up.
+        for (int pos = 0; pos != 5; ++pos) {
+            matcher(eops, data);
+            indexOf(eops, data);
+        }
+        long start = System.nanoTime();
+        int found = matcher(eops, data);
+        long matcherTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        found += indexOf(eops, data);
+        long indexOfTime = System.nanoTime() - start;
+        if (found != 0) {
+            throw new IllegalStateException("End of packet found.");
+        }
+        System.out.println("End of packet matcher: " + matcherTime / 1000000
+                + " ms. indexOf: " + indexOfTime / 1000000 + " ms.");
+    }
+}
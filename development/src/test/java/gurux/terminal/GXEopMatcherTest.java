@@ -0,0 +1,73 @@
+package gurux.terminal;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for end of packet matcher.
+ */
+public class GXEopMatcherTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXEopMatcherTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXEopMatcherTest.class);
+    }
+
+    /**
+     * Single end of packet test.
+     */
+    public final void testSingle() {
+        GXEopMatcher m = new GXEopMatcher((byte) 0x7E);
+        byte[] data = new byte[] { 1, 2, 0x7E, 3 };
+        assertEquals(3, m.match(data, 0, data.length));
+        assertEquals(-1, m.match(data, 0, 2));
+    }
+
+    /**
+     * End of packet is not used.
+     */
+    public final void testEmpty() {
+        assertTrue(new GXEopMatcher(null).isEmpty());
+        assertFalse(new GXEopMatcher("\r\n").isEmpty());
+    }
+
+    /**
+     * Several end of packet alternatives test.
+     */
+    public final void testAlternatives() {
+        GXEopMatcher m = new GXEopMatcher(new Object[] { "OK\r\n", "ERROR" });
+        byte[] data = "AT\r\nERROR".getBytes();
+        assertEquals(data.length, m.match(data, 0, data.length));
+        data = "xxOK\r\n".getBytes();
+        assertEquals(data.length, m.match(data, 0, data.length));
+        data = "ERRO".getBytes();
+        assertEquals(-1, m.match(data, 0, data.length));
+    }
+
+    /**
+     * End of packet is split between two chunks.
+     */
+    public final void testSplit() {
+        GXEopMatcher m = new GXEopMatcher("\r\n");
+        byte[] data = "AT\r".getBytes();
+        assertEquals(-1, m.match(data, 0, data.length));
+        data = "\nOK".getBytes();
+        assertEquals(1, m.match(data, 0, data.length));
+        // State is reset.
+        m.match("\r".getBytes(), 0, 1);
+        m.reset();
+        assertEquals(-1, m.match("\n".getBytes(), 0, 1));
+    }
+}
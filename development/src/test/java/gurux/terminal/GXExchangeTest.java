@@ -0,0 +1,209 @@
+package gurux.terminal;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import gurux.common.ReceiveParameters;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for asynchronous request and reply.
+ */
+public class GXExchangeTest extends TestCase {
+    /**
+     * Reply wait time in milliseconds.
+     */
+    private static final int WAIT_TIME = 1000;
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXExchangeTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXExchangeTest.class);
+    }
+
+    /**
+     * Open connection to the modem emulator.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @return Connected terminal.
+     */
+    private static GXTerminal connect(final GXModemEmulator modem)
+            throws Exception {
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        assertTrue(t.isConnected());
+        return t;
+    }
+
+    /**
+     * Check that received data is handled as usual.
+     *
+     * @param t
+     *            Terminal.
+     * @param expected
+     *            Expected data.
+     */
+    private static void checkReceived(final GXTerminal t,
+            final String expected) throws Exception {
+        ReceiveParameters<String> p =
+                new ReceiveParameters<String>(String.class);
+        p.setCount(expected.length());
+        p.setWaitTime(WAIT_TIME);
+        synchronized (t.getSynchronous()) {
+            assertTrue(t.receive(p));
+        }
+        assertEquals(expected, p.getReply());
+    }
+
+    /**
+     * Create receive parameters that wait line feed.
+     *
+     * @param waitTime
+     *            Wait time in milliseconds.
+     * @return Receive parameters.
+     */
+    private static ReceiveParameters<String> line(final int waitTime) {
+        ReceiveParameters<String> p =
+                new ReceiveParameters<String>(String.class);
+        p.setEop("\n");
+        p.setWaitTime(waitTime);
+        return p;
+    }
+
+    /**
+     * Future is completed with the reply. Bytes after the reply are handled
+     * as usual.
+     */
+    public final void testReply() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<String> f =
+                    t.exchangeAsync("request".getBytes(), line(WAIT_TIME));
+            assertEquals("request", modem.getData());
+            modem.inject("reply\nrest");
+            assertEquals("reply\n", f.get(WAIT_TIME, TimeUnit.MILLISECONDS));
+            checkReceived(t, "rest");
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Only one request can wait for the reply.
+     */
+    public final void testBusy() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            t.exchangeAsync("first".getBytes(), line(WAIT_TIME));
+            try {
+                t.exchangeAsync("second".getBytes(), line(WAIT_TIME));
+                fail("Second request is accepted.");
+            } catch (IllegalStateException ex) {
+                // Previous request is waiting for the reply.
+            }
+            assertEquals("first", modem.getData());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Future is completed with timeout if reply is not received. Next
+     * request can be sent after the timeout.
+     */
+    public final void testTimeout() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<String> f =
+                    t.exchangeAsync("first".getBytes(), line(100));
+            try {
+                f.get(WAIT_TIME, TimeUnit.MILLISECONDS);
+                fail("Request is not timed out.");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+            f = t.exchangeAsync("second".getBytes(), line(WAIT_TIME));
+            modem.inject("reply\n");
+            assertEquals("reply\n", f.get(WAIT_TIME, TimeUnit.MILLISECONDS));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Cancelled request stops waiting the reply and received data is handled
+     * as usual.
+     */
+    public final void testCancel() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<String> f =
+                    t.exchangeAsync("first".getBytes(), line(WAIT_TIME));
+            assertTrue(f.cancel(false));
+            try {
+                f.get();
+                fail("Request is not cancelled.");
+            } catch (CancellationException ex) {
+                // Request is cancelled.
+            }
+            modem.inject("late\n");
+            checkReceived(t, "late\n");
+            f = t.exchangeAsync("second".getBytes(), line(WAIT_TIME));
+            modem.inject("reply\n");
+            assertEquals("reply\n", f.get(WAIT_TIME, TimeUnit.MILLISECONDS));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Future is completed outside of the lock, so the next request can be
+     * sent from the completion handler.
+     */
+    public final void testNextFromCompletion() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        final GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<String> f = t
+                    .exchangeAsync("first".getBytes(), line(WAIT_TIME))
+                    .thenCompose(
+                            new Function<String, CompletableFuture<String>>() {
+                                @Override
+                                public CompletableFuture<String> apply(
+                                        final String reply) {
+                                    return t.exchangeAsync(
+                                            "second".getBytes(),
+                                            line(WAIT_TIME));
+                                }
+                            });
+            modem.inject("1\n");
+            GXPipelineTest.waitData(modem, "firstsecond");
+            modem.inject("2\n");
+            assertEquals("2\n", f.get(WAIT_TIME, TimeUnit.MILLISECONDS));
+        } finally {
+            t.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package gurux.terminal;
+
+import gurux.common.IGXMediaListener;
+import gurux.common.MediaStateEventArgs;
+import gurux.common.PropertyChangedEventArgs;
+import gurux.common.ReceiveEventArgs;
+import gurux.common.TraceEventArgs;
+import gurux.common.enums.TraceLevel;
+import gurux.common.enums.TraceTypes;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for dumping the flight recorder when error occurs.
+ */
+public class GXFlightRecorderDumpTest extends TestCase {
+    /**
+     * Listener that counts trace events.
+     */
+    static class TraceCounter implements IGXMediaListener {
+        /**
+         * Amount of trace events.
+         */
+        private int count;
+
+        /**
+         * @return Amount of trace events.
+         */
+        final synchronized int getCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized void onTrace(final Object sender,
+                final TraceEventArgs e) {
+            ++count;
+        }
+
+        @Override
+        public void onError(final Object sender, final Exception ex) {
+        }
+
+        @Override
+        public void onReceived(final Object sender,
+                final ReceiveEventArgs e) {
+        }
+
+        @Override
+        public void onMediaStateChange(final Object sender,
+                final MediaStateEventArgs e) {
+        }
+
+        @Override
+        public void onPropertyChanged(final Object sender,
+                final PropertyChangedEventArgs e) {
+        }
+    }
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXFlightRecorderDumpTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXFlightRecorderDumpTest.class);
+    }
+
+    /**
+     * Create terminal with flight recorder that has one record.
+     *
+     * @param listener
+     *            Trace listener.
+     * @return Terminal.
+     */
+    private static GXTerminal create(final TraceCounter listener)
+            throws Exception {
+        GXTerminal t = GXModemInitializerTest.create(new GXModemEmulator());
+        t.setFlightRecorderSize(1000);
+        byte[] data = "data".getBytes();
+        t.getFlightRecorder().record(TraceTypes.SENT, 0, data, 0,
+                data.length);
+        t.addListener(listener);
+        return t;
+    }
+
+    /**
+     * Flight recorder is not dumped when trace is off.
+     */
+    public final void testTraceOff() throws Exception {
+        TraceCounter listener = new TraceCounter();
+        GXTerminal t = create(listener);
+        t.setTrace(TraceLevel.OFF);
+        t.notifyError(new IllegalStateException("Error."));
+        assertEquals(0, listener.getCount());
+        assertEquals(2, t.getFlightRecorder().getCount());
+    }
+
+    /**
+     * Flight recorder is dumped only on the first error and records are
+     * kept for the dump on close.
+     */
+    public final void testFirstError() throws Exception {
+        TraceCounter listener = new TraceCounter();
+        GXTerminal t = create(listener);
+        t.setTrace(TraceLevel.ERROR);
+        t.notifyError(new IllegalStateException("First."));
+        // Two records and the error.
+        assertEquals(3, listener.getCount());
+        assertEquals(2, t.getFlightRecorder().getCount());
+        t.notifyError(new IllegalStateException("Second."));
+        assertEquals(4, listener.getCount());
+        assertEquals(3, t.getFlightRecorder().getCount());
+        t.dumpFlightRecorder();
+        assertEquals(7, listener.getCount());
+        assertEquals(0, t.getFlightRecorder().getCount());
+    }
+}
@@ -0,0 +1,415 @@
+package gurux.terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Modem emulator that replaces the native serial port in the tests.
+ * Commands are answered from the reply table. Modem is in data mode after
+ * it has answered CONNECT and returns to command mode with the escape
+ * sequence, ATH or DTR drop.
+ */
+class GXModemEmulator extends GXNativePort {
+    /**
+     * Replies of the commands. Empty reply is not answered.
+     */
+    private final Map<String, String[]> replies =
+            new HashMap<String, String[]>();
+    /**
+     * Received commands.
+     */
+    private final List<String> commands = new ArrayList<String>();
+    /**
+     * Command line that is received.
+     */
+    private final StringBuilder line = new StringBuilder();
+    /**
+     * Data that is received in data mode.
+     */
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    /**
+     * Data that is sent to the terminal.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /**
+     * Timer of the delayed replies.
+     */
+    private Timer timer;
+    /**
+     * Is modem in data mode.
+     */
+    private boolean dataMode;
+    /**
+     * Is carrier detected.
+     */
+    private boolean carrier;
+    /**
+     * Is DTR set.
+     */
+    private boolean dtr;
+    /**
+     * Is call ended when DTR is dropped.
+     */
+    private boolean dtrHangup = true;
+    /**
+     * Amount of escape characters received in data mode.
+     */
+    private int escape;
+    /**
+     * Is port open.
+     */
+    private boolean open;
+    /**
+     * Baud rate.
+     */
+    private int baudRate = 9600;
+    /**
+     * Amount of data bits.
+     */
+    private int dataBits = 8;
+    /**
+     * Parity as ordinal of the Parity enumeration.
+     */
+    private int parity;
+    /**
+     * Stop bits as ordinal of the StopBits enumeration.
+     */
+    private int stopBits;
+    /**
+     * Handshake as ordinal of the Handshake enumeration.
+     */
+    private int handshake;
+
+    /**
+     * Set reply of the command.
+     *
+     * @param command
+     *            Command without the carriage return.
+     * @param lines
+     *            Reply lines. Command is not answered if lines are not
+     *            given.
+     */
+    final synchronized void setReply(final String command,
+            final String... lines) {
+        replies.put(command.toUpperCase(), lines);
+    }
+
+    /**
+     * Get reply of the command. Commands that are not in the reply table
+     * are answered with OK, calls are answered with CONNECT and SIM is
+     * ready.
+     *
+     * @param command
+     *            Received command.
+     * @return Reply lines.
+     */
+    final synchronized String[] getReply(final String command) {
+        String[] lines = replies.get(command.toUpperCase());
+        if (lines != null) {
+            return lines;
+        }
+        if (command.equalsIgnoreCase("AT+CPIN?")) {
+            return new String[] { "+CPIN: READY", "OK" };
+        }
+        if (command.equalsIgnoreCase("ATA")
+                || command.toUpperCase().startsWith("ATD")) {
+            return new String[] { "CONNECT 9600" };
+        }
+        return new String[] { "OK" };
+    }
+
+    /**
+     * Command is received. Reply is sent from the reply table.
+     *
+     * @param command
+     *            Received command.
+     */
+    void onCommand(final String command) {
+        respond(0, getReply(command));
+    }
+
+    /**
+     * Send reply lines. Modem goes to data mode when CONNECT is sent and
+     * call is ended when NO CARRIER is sent.
+     *
+     * @param delay
+     *            Delay in milliseconds.
+     * @param lines
+     *            Reply lines.
+     */
+    final synchronized void respond(final int delay, final String... lines) {
+        if (lines.length == 0) {
+            return;
+        }
+        if (delay != 0) {
+            if (timer == null) {
+                timer = new Timer(true);
+            }
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    respond(0, lines);
+                }
+            }, delay);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String it : lines) {
+            sb.append("\r\n").append(it).append("\r\n");
+            if (it.startsWith("CONNECT")) {
+                dataMode = true;
+                carrier = true;
+            } else if (it.equals("NO CARRIER")) {
+                dataMode = false;
+                carrier = false;
+            }
+        }
+        inject(sb.toString());
+    }
+
+    /**
+     * Send text to the terminal as it is.
+     *
+     * @param text
+     *            Sent text.
+     */
+    final synchronized void inject(final String text) {
+        byte[] tmp = text.getBytes(StandardCharsets.US_ASCII);
+        pending.write(tmp, 0, tmp.length);
+        notifyAll();
+    }
+
+    /**
+     * Remote end hangs up the call.
+     */
+    final synchronized void remoteHangUp() {
+        respond(0, "NO CARRIER");
+    }
+
+    /**
+     * @return Received commands.
+     */
+    final synchronized List<String> getCommands() {
+        return new ArrayList<String>(commands);
+    }
+
+    /**
+     * @return Data that is received in data mode.
+     */
+    final synchronized String getData() {
+        return new String(data.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return Is modem in data mode.
+     */
+    final synchronized boolean isDataMode() {
+        return dataMode;
+    }
+
+    /**
+     * @return Is port open.
+     */
+    final synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @param value
+     *            Is call ended when DTR is dropped.
+     */
+    final synchronized void setDtrHangup(final boolean value) {
+        dtrHangup = value;
+    }
+
+    @Override
+    synchronized int openSerialPort(final String port,
+            final long[] closing) {
+        open = true;
+        return 1;
+    }
+
+    @Override
+    synchronized void closeSerialPort(final long handle,
+            final long closing) {
+        open = false;
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        notifyAll();
+    }
+
+    @Override
+    void write(final long handle, final byte[] value, final int timeout) {
+        List<String> received = new ArrayList<String>();
+        synchronized (this) {
+            for (byte it : value) {
+                if (dataMode) {
+                    data.write(it);
+                    if (it == '+') {
+                        ++escape;
+                    } else {
+                        escape = 0;
+                    }
+                } else if (it == '\r') {
+                    commands.add(line.toString());
+                    received.add(line.toString());
+                    line.setLength(0);
+                } else if (it != '\n') {
+                    line.append((char) it);
+                }
+            }
+            if (dataMode && escape == 3) {
+                escape = 0;
+                dataMode = false;
+                byte[] tmp = data.toByteArray();
+                data.reset();
+                data.write(tmp, 0, tmp.length - 3);
+                respond(0, "OK");
+            }
+        }
+        for (String it : received) {
+            if (it.toUpperCase().startsWith("ATH")) {
+                synchronized (this) {
+                    carrier = false;
+                }
+            }
+            onCommand(it);
+        }
+    }
+
+    @Override
+    synchronized byte[] read(final long handle, final int waitTime,
+            final long closing) {
+        long end = System.currentTimeMillis() + Math.max(1, waitTime);
+        while (open && pending.size() == 0) {
+            long left = end - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        byte[] tmp = pending.toByteArray();
+        pending.reset();
+        return tmp;
+    }
+
+    @Override
+    synchronized int getBytesToRead(final long handle) {
+        return pending.size();
+    }
+
+    @Override
+    int getBytesToWrite(final long handle) {
+        return 0;
+    }
+
+    @Override
+    boolean getBreakState(final long handle) {
+        return false;
+    }
+
+    @Override
+    void setBreakState(final long handle, final boolean value) {
+    }
+
+    @Override
+    synchronized boolean getCDHolding(final long handle) {
+        return carrier;
+    }
+
+    @Override
+    boolean getCtsHolding(final long handle) {
+        return true;
+    }
+
+    @Override
+    boolean getDsrHolding(final long handle) {
+        return true;
+    }
+
+    @Override
+    synchronized boolean getDtrEnable(final long handle) {
+        return dtr;
+    }
+
+    @Override
+    synchronized void setDtrEnable(final long handle, final boolean value) {
+        dtr = value;
+        if (!value && carrier && dtrHangup) {
+            carrier = false;
+            dataMode = false;
+        }
+    }
+
+    @Override
+    boolean getRtsEnable(final long handle) {
+        return true;
+    }
+
+    @Override
+    void setRtsEnable(final long handle, final boolean value) {
+    }
+
+    @Override
+    synchronized int getBaudRate(final long handle) {
+        return baudRate;
+    }
+
+    @Override
+    synchronized void setBaudRate(final long handle, final int value) {
+        baudRate = value;
+    }
+
+    @Override
+    synchronized int getDataBits(final long handle) {
+        return dataBits;
+    }
+
+    @Override
+    synchronized void setDataBits(final long handle, final int value) {
+        dataBits = value;
+    }
+
+    @Override
+    synchronized int getParity(final long handle) {
+        return parity;
+    }
+
+    @Override
+    synchronized void setParity(final long handle, final int value) {
+        parity = value;
+    }
+
+    @Override
+    synchronized int getStopBits(final long handle) {
+        return stopBits;
+    }
+
+    @Override
+    synchronized void setStopBits(final long handle, final int value) {
+        stopBits = value;
+    }
+
+    @Override
+    synchronized int getHandshake(final long handle) {
+        return handshake;
+    }
+
+    @Override
+    synchronized void setHandshake(final long handle, final int value) {
+        handshake = value;
+    }
+}
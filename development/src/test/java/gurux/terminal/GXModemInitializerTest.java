@@ -0,0 +1,218 @@
+package gurux.terminal;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for modem initialization.
+ */
+public class GXModemInitializerTest extends TestCase {
+    /**
+     * Initialize commands.
+     */
+    private static final String[] COMMANDS =
+            new String[] { "ATE0", "AT&C1", "AT+CMEE=2" };
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXModemInitializerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXModemInitializerTest.class);
+    }
+
+    /**
+     * Create terminal that uses the modem emulator.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @return Terminal.
+     */
+    static GXTerminal create(final GXModemEmulator modem) {
+        GXTerminal t = new GXTerminal(modem);
+        t.setPortName("COM1");
+        t.setCommandWaitTime(1000);
+        t.setConnectionWaitTime(1000);
+        return t;
+    }
+
+    /**
+     * Late reply of the unanswered probe is not taken as a reply to the
+     * next commands.
+     */
+    public final void testLateProbeReply() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator() {
+            private boolean first = true;
+
+            @Override
+            void onCommand(final String command) {
+                if (first && command.equals("AT")) {
+                    first = false;
+                    respond(GXModemInitializer.PROBE_WAIT_TIME + 50, "OK");
+                } else {
+                    super.onCommand(command);
+                }
+            }
+        };
+        modem.setReply("AT+CPIN=?", "ERROR");
+        GXTerminal t = create(modem);
+        try {
+            t.open();
+            assertTrue(t.isConnected());
+            List<String> commands = modem.getCommands();
+            assertEquals("AT", commands.get(0));
+            assertEquals("AT", commands.get(1));
+            assertTrue(commands.contains("AT+CPIN=?"));
+            // PIN status is not asked when PIN code is not supported.
+            assertFalse(commands.contains("AT+CPIN?"));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Modem without SIM can be used for data calls.
+     */
+    public final void testSimNotInserted() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setReply("AT+CPIN?", "+CME ERROR: SIM not inserted");
+        GXTerminal t = create(modem);
+        try {
+            t.open();
+            assertTrue(t.isConnected());
+            assertTrue(modem.getCommands().contains("ATD"));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Other errors of the PIN status query fail the open.
+     */
+    public final void testPinStatusError() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setReply("AT+CPIN?", "+CME ERROR: SIM failure");
+        GXTerminal t = create(modem);
+        try {
+            t.open();
+            fail("PIN status error is not reported.");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().startsWith("Failed to read PIN code."));
+        } finally {
+            t.close();
+        }
+        assertFalse(modem.getCommands().contains("ATD"));
+    }
+
+    /**
+     * PIN code is entered when it's needed.
+     */
+    public final void testEnterPin() throws Exception {
+        final GXModemEmulator modem = new GXModemEmulator() {
+            @Override
+            void onCommand(final String command) {
+                if (command.equals("AT+CPIN=\"1234\"")) {
+                    setReply("AT+CPIN?", "+CPIN: READY", "OK");
+                }
+                super.onCommand(command);
+            }
+        };
+        modem.setReply("AT+CPIN?", "+CPIN: SIM PIN", "OK");
+        GXTerminal t = create(modem);
+        t.setPINCode("1234");
+        try {
+            t.open();
+            assertTrue(t.isConnected());
+            List<String> commands = modem.getCommands();
+            int pos = commands.indexOf("AT+CPIN=?");
+            assertEquals("AT+CPIN?", commands.get(pos + 1));
+            assertEquals("AT+CPIN=\"1234\"", commands.get(pos + 2));
+            assertEquals("AT+CPIN?", commands.get(pos + 3));
+            assertEquals("ATD", commands.get(pos + 4));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Commands are sent one by one if concatenated command line is rejected.
+     * Concatenation is not used on the next open.
+     */
+    public final void testConcatenationRejected() throws Exception {
+        checkConcatenation("ERROR");
+    }
+
+    /**
+     * Commands are sent one by one if concatenated command line is not
+     * answered.
+     */
+    public final void testConcatenationNotAnswered() throws Exception {
+        checkConcatenation();
+    }
+
+    /**
+     * Check that initialize commands are sent one by one when concatenated
+     * command line fails.
+     *
+     * @param reply
+     *            Reply of the concatenated command line.
+     */
+    private static void checkConcatenation(final String... reply)
+            throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setReply("ATE0&C1+CMEE=2", reply);
+        GXModemProfileCache cache = new GXModemProfileCache();
+        GXTerminal t = create(modem);
+        t.setModemProfileCache(cache);
+        t.setInitializeCommands(COMMANDS);
+        try {
+            t.open();
+            assertTrue(t.isConnected());
+            List<String> commands = modem.getCommands();
+            int pos = commands.indexOf("ATE0&C1+CMEE=2");
+            assertTrue(pos != -1);
+            assertEquals("ATE0", commands.get(pos + 1));
+            assertEquals("AT&C1", commands.get(pos + 2));
+            assertEquals("AT+CMEE=2", commands.get(pos + 3));
+            t.close();
+            assertEquals(Boolean.FALSE,
+                    cache.get("COM1", "").getConcatenation());
+            t.open();
+            assertEquals(1, count(modem.getCommands(), "ATE0&C1+CMEE=2"));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Count how many times the command is sent.
+     *
+     * @param commands
+     *            Sent commands.
+     * @param command
+     *            Searched command.
+     * @return Amount of sent commands.
+     */
+    private static int count(final List<String> commands,
+            final String command) {
+        int count = 0;
+        for (String it : commands) {
+            if (it.equals(command)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
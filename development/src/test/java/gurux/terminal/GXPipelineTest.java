@@ -0,0 +1,268 @@
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for pipelined requests.
+ */
+public class GXPipelineTest extends TestCase {
+    /**
+     * Reply wait time in milliseconds.
+     */
+    private static final int WAIT_TIME = 1000;
+
+    /**
+     * Reply correlator that uses the first character as a key.
+     */
+    private static final IGXReplyCorrelator FIRST_CHARACTER =
+            new IGXReplyCorrelator() {
+                @Override
+                public Object getRequestKey(final byte[] request) {
+                    return request[0];
+                }
+
+                @Override
+                public Object getReplyKey(final byte[] reply) {
+                    return reply[0];
+                }
+            };
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXPipelineTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXPipelineTest.class);
+    }
+
+    /**
+     * Open connection that splits frames with line feed.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @return Connected terminal.
+     */
+    static GXTerminal connect(final GXModemEmulator modem) throws Exception {
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        assertTrue(t.isConnected());
+        t.setFrameDecoder(new GXDelimiterFrameDecoder("\n"));
+        return t;
+    }
+
+    /**
+     * Send pipelined request.
+     *
+     * @param t
+     *            Terminal.
+     * @param request
+     *            Request text.
+     * @return Future that is completed with the reply.
+     */
+    private static CompletableFuture<byte[]> send(final GXTerminal t,
+            final String request) {
+        return t.exchangePipelined(
+                request.getBytes(StandardCharsets.US_ASCII), WAIT_TIME);
+    }
+
+    /**
+     * Get reply of the request.
+     *
+     * @param future
+     *            Future of the request.
+     * @return Reply text.
+     */
+    private static String reply(final CompletableFuture<byte[]> future)
+            throws Exception {
+        return new String(future.get(WAIT_TIME, TimeUnit.MILLISECONDS),
+                StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Wait until modem has received the data.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @param expected
+     *            Expected data.
+     */
+    static void waitData(final GXModemEmulator modem, final String expected)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + WAIT_TIME;
+        while (!modem.getData().equals(expected)
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, modem.getData());
+    }
+
+    /**
+     * Next request is sent when the reply of the previous request is
+     * received. Replies complete the requests in the request order.
+     */
+    public final void testOrder() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<byte[]> a = send(t, "A\n");
+            CompletableFuture<byte[]> b = send(t, "B\n");
+            waitData(modem, "A\n");
+            modem.inject("1\n");
+            assertEquals("1\n", reply(a));
+            waitData(modem, "A\nB\n");
+            assertFalse(b.isDone());
+            modem.inject("2\n");
+            assertEquals("2\n", reply(b));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Amount of requests waiting for the reply is limited by the window.
+     */
+    public final void testWindow() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        t.setPipelineWindow(2);
+        try {
+            CompletableFuture<byte[]> a = send(t, "A\n");
+            CompletableFuture<byte[]> b = send(t, "B\n");
+            CompletableFuture<byte[]> c = send(t, "C\n");
+            waitData(modem, "A\nB\n");
+            modem.inject("1\n");
+            assertEquals("1\n", reply(a));
+            waitData(modem, "A\nB\nC\n");
+            modem.inject("2\n3\n");
+            assertEquals("2\n", reply(b));
+            assertEquals("3\n", reply(c));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Reply correlator maps replies to the requests in any order.
+     */
+    public final void testCorrelator() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        t.setPipelineWindow(3);
+        t.setReplyCorrelator(FIRST_CHARACTER);
+        try {
+            CompletableFuture<byte[]> a = send(t, "A\n");
+            CompletableFuture<byte[]> b = send(t, "B\n");
+            CompletableFuture<byte[]> c = send(t, "C\n");
+            waitData(modem, "A\nB\nC\n");
+            modem.inject("C3\nA1\n");
+            assertEquals("C3\n", reply(c));
+            assertEquals("A1\n", reply(a));
+            assertFalse(b.isDone());
+            modem.inject("B2\n");
+            assertEquals("B2\n", reply(b));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Late reply of the timed out request is not taken as a reply to the
+     * next request when replies are received in request order.
+     */
+    public final void testLateReply() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<byte[]> a = t.exchangePipelined(
+                    "A\n".getBytes(StandardCharsets.US_ASCII), 300);
+            try {
+                a.get(WAIT_TIME, TimeUnit.MILLISECONDS);
+                fail("Request is not timed out.");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+            CompletableFuture<byte[]> b = send(t, "B\n");
+            waitData(modem, "A\nB\n");
+            modem.inject("1\n");
+            Thread.sleep(100);
+            assertFalse(b.isDone());
+            modem.inject("2\n");
+            assertEquals("2\n", reply(b));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Requests of several threads are sent in the order the replies are
+     * expected. Modem echoes the requests, so each request must get its own
+     * reply.
+     */
+    public final void testConcurrentOrder() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator() {
+            @Override
+            void write(final long handle, final byte[] value,
+                    final int timeout) {
+                boolean echo = isDataMode();
+                super.write(handle, value, timeout);
+                if (echo) {
+                    inject(new String(value, StandardCharsets.US_ASCII));
+                }
+            }
+        };
+        final GXTerminal t = connect(modem);
+        t.setPipelineWindow(4);
+        final List<CompletableFuture<byte[]>> futures =
+                new ArrayList<CompletableFuture<byte[]>>();
+        final List<String> requests = new ArrayList<String>();
+        try {
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int pos = 0; pos != 4; ++pos) {
+                final int id = pos;
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int index = 0; index != 50; ++index) {
+                            String request = String.valueOf(id) + "-"
+                                    + String.valueOf(index) + "\n";
+                            CompletableFuture<byte[]> f = send(t, request);
+                            synchronized (futures) {
+                                futures.add(f);
+                                requests.add(request);
+                            }
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread it : threads) {
+                it.join();
+            }
+            for (int pos = 0; pos != futures.size(); ++pos) {
+                assertEquals(requests.get(pos), reply(futures.get(pos)));
+            }
+        } finally {
+            t.close();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import gurux.io.Handshake;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for subscriber of the received data.
+ */
+public class GXReceivePublisherTest extends TestCase {
+    /**
+     * Wait time in milliseconds.
+     */
+    private static final int WAIT_TIME = 1000;
+
+    /**
+     * Subscriber that saves received frames.
+     */
+    static class Subscriber implements IGXSubscriber {
+        /**
+         * Subscription.
+         */
+        private IGXSubscription subscription;
+        /**
+         * Received frames.
+         */
+        private final List<String> frames = new ArrayList<String>();
+        /**
+         * Occurred error.
+         */
+        private Throwable error;
+        /**
+         * Is subscription completed.
+         */
+        private boolean completed;
+
+        @Override
+        public synchronized void onSubscribe(
+                final IGXSubscription value) {
+            subscription = value;
+        }
+
+        @Override
+        public synchronized void onNext(final byte[] data) {
+            frames.add(new String(data, StandardCharsets.US_ASCII));
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onError(final Throwable ex) {
+            error = ex;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            completed = true;
+            notifyAll();
+        }
+
+        /**
+         * @return Subscription.
+         */
+        final synchronized IGXSubscription getSubscription() {
+            return subscription;
+        }
+
+        /**
+         * @return Received frames.
+         */
+        final synchronized List<String> getFrames() {
+            return new ArrayList<String>(frames);
+        }
+
+        /**
+         * @return Occurred error.
+         */
+        final synchronized Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @return Is subscription completed.
+         */
+        final synchronized boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Wait until frames are received.
+         *
+         * @param count
+         *            Amount of frames.
+         */
+        final synchronized void waitFrames(final int count)
+                throws InterruptedException {
+            long end = System.currentTimeMillis() + WAIT_TIME;
+            while (frames.size() < count) {
+                long left = end - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                wait(left);
+            }
+            assertEquals(count, frames.size());
+        }
+
+        /**
+         * Wait until subscription is completed or failed.
+         */
+        final synchronized void waitDone() throws InterruptedException {
+            long end = System.currentTimeMillis() + WAIT_TIME;
+            while (!completed && error == null) {
+                long left = end - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                wait(left);
+            }
+        }
+    }
+
+    /**
+     * Modem emulator that saves RTS changes.
+     */
+    static class RtsRecorder extends GXModemEmulator {
+        /**
+         * RTS changes.
+         */
+        private final List<Boolean> changes = new ArrayList<Boolean>();
+
+        /**
+         * @return Last RTS change or null if RTS is not changed.
+         */
+        final synchronized Boolean getLastRts() {
+            if (changes.isEmpty()) {
+                return null;
+            }
+            return changes.get(changes.size() - 1);
+        }
+
+        @Override
+        synchronized void setRtsEnable(final long handle,
+                final boolean value) {
+            changes.add(value);
+        }
+
+        /**
+         * Wait until RTS is changed.
+         *
+         * @param expected
+         *            Expected RTS state.
+         */
+        final void waitRts(final boolean expected)
+                throws InterruptedException {
+            long end = System.currentTimeMillis() + WAIT_TIME;
+            while (!Boolean.valueOf(expected).equals(getLastRts())
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals(Boolean.valueOf(expected), getLastRts());
+        }
+    }
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXReceivePublisherTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXReceivePublisherTest.class);
+    }
+
+    /**
+     * Frames are delivered only when the subscriber has requested them.
+     */
+    public final void testDemand() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXPipelineTest.connect(modem);
+        try {
+            Subscriber s = new Subscriber();
+            t.subscribe(s);
+            modem.inject("a\nb\nc\n");
+            Thread.sleep(200);
+            assertTrue(s.getFrames().isEmpty());
+            s.getSubscription().request(1);
+            s.waitFrames(1);
+            assertEquals("a\n", s.getFrames().get(0));
+            Thread.sleep(100);
+            assertEquals(1, s.getFrames().size());
+            s.getSubscription().request(2);
+            s.waitFrames(3);
+            assertEquals("b\n", s.getFrames().get(1));
+            assertEquals("c\n", s.getFrames().get(2));
+            assertNull(s.getError());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * RTS is cleared when there is no demand and set again when subscriber
+     * requests more frames.
+     */
+    public final void testFlowControl() throws Exception {
+        RtsRecorder modem = new RtsRecorder();
+        GXTerminal t = GXPipelineTest.connect(modem);
+        try {
+            t.setHandshake(Handshake.REQUEST_TO_SEND);
+            Subscriber s = new Subscriber();
+            t.subscribe(s);
+            assertEquals(Boolean.FALSE, modem.getLastRts());
+            s.getSubscription().request(1);
+            assertEquals(Boolean.TRUE, modem.getLastRts());
+            modem.inject("a\n");
+            s.waitFrames(1);
+            // RTS is cleared after the requested frame is delivered.
+            modem.waitRts(false);
+            s.getSubscription().cancel();
+            assertEquals(Boolean.TRUE, modem.getLastRts());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Subscription is completed when the terminal is closed.
+     */
+    public final void testCompleteOnClose() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXPipelineTest.connect(modem);
+        try {
+            Subscriber s = new Subscriber();
+            t.subscribe(s);
+            s.getSubscription().request(Long.MAX_VALUE);
+            modem.inject("a\n");
+            s.waitFrames(1);
+            t.close();
+            s.waitDone();
+            assertTrue(s.isCompleted());
+            assertNull(s.getError());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Exception of the subscriber cancels the subscription and it's given
+     * to the subscriber. Receiver is not stopped.
+     */
+    public final void testSubscriberException() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXPipelineTest.connect(modem);
+        try {
+            final RuntimeException failure =
+                    new IllegalStateException("Subscriber failed.");
+            Subscriber s = new Subscriber() {
+                @Override
+                public synchronized void onNext(final byte[] data) {
+                    throw failure;
+                }
+            };
+            t.subscribe(s);
+            s.getSubscription().request(Long.MAX_VALUE);
+            modem.inject("a\n");
+            s.waitDone();
+            assertSame(failure, s.getError());
+            assertFalse(s.isCompleted());
+            assertNull(t.getPublisher());
+            // Data is received with a new subscriber.
+            Subscriber s2 = new Subscriber();
+            t.subscribe(s2);
+            s2.getSubscription().request(1);
+            modem.inject("b\n");
+            s2.waitFrames(1);
+            assertEquals("b\n", s2.getFrames().get(0));
+        } finally {
+            t.close();
+        }
+    }
+}
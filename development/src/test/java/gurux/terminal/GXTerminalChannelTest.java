@@ -0,0 +1,99 @@
+package gurux.terminal;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.WritePendingException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for asynchronous byte channel of the terminal.
+ */
+public class GXTerminalChannelTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXTerminalChannelTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXTerminalChannelTest.class);
+    }
+
+    /**
+     * Convert text to byte buffer.
+     *
+     * @param text
+     *            Text.
+     * @return Byte buffer.
+     */
+    private static ByteBuffer wrap(final String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Write is completed when bytes are written and received bytes are read.
+     */
+    public final void testWriteAndRead() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        try {
+            AsynchronousByteChannel ch = t.getAsynchronousChannel();
+            ByteBuffer src = wrap("data");
+            assertEquals(4, ch.write(src).get(1, TimeUnit.SECONDS).intValue());
+            assertFalse(src.hasRemaining());
+            assertEquals("data", modem.getData());
+            ByteBuffer dst = ByteBuffer.allocate(10);
+            Future<Integer> r = ch.read(dst);
+            modem.inject("reply");
+            assertEquals(5, r.get(1, TimeUnit.SECONDS).intValue());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Write is queued and only one write can be pending.
+     */
+    public final void testWritePending() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        try {
+            t.setTransmitBufferSize(100);
+            t.setTransmitDelay(200);
+            AsynchronousByteChannel ch = t.getAsynchronousChannel();
+            ByteBuffer src = wrap("first");
+            Future<Integer> w = ch.write(src);
+            // Caller is not blocked while the writer waits the delay.
+            assertFalse(w.isDone());
+            assertEquals(5, src.remaining());
+            try {
+                ch.write(wrap("second"));
+                fail("Overlapping write is accepted.");
+            } catch (WritePendingException ex) {
+                // Previous write is pending.
+            }
+            assertEquals(5, w.get(1, TimeUnit.SECONDS).intValue());
+            assertEquals("first", modem.getData());
+            assertEquals(6, ch.write(wrap("second"))
+                    .get(1, TimeUnit.SECONDS).intValue());
+            assertEquals("firstsecond", modem.getData());
+        } finally {
+            t.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package gurux.terminal;
+
+import java.util.List;
+
+import gurux.terminal.enums.HangupStrategy;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for hanging up the call.
+ */
+public class GXTerminalHangUpTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXTerminalHangUpTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXTerminalHangUpTest.class);
+    }
+
+    /**
+     * Dial with DTR drop hang up strategy.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @return Connected terminal.
+     */
+    private static GXTerminal dial(final GXModemEmulator modem)
+            throws Exception {
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.setCommandWaitTime(300);
+        t.setHangupStrategy(HangupStrategy.DTR_DROP);
+        t.open();
+        assertTrue(t.isConnected());
+        assertTrue(modem.isDataMode());
+        return t;
+    }
+
+    /**
+     * Call is ended by dropping DTR. Escape sequence is not sent.
+     */
+    public final void testDtrDrop() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = dial(modem);
+        try {
+            t.hangUp();
+            assertFalse(t.isConnected());
+            assertFalse(modem.isDataMode());
+            List<String> commands = modem.getCommands();
+            assertTrue(commands.contains("AT&D2"));
+            assertFalse(commands.contains("ATH0"));
+            assertEquals("", modem.getData());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Escape sequence and ATH are used if carrier is not lost when DTR is
+     * dropped.
+     */
+    public final void testDtrDropFallback() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setDtrHangup(false);
+        GXTerminal t = dial(modem);
+        try {
+            long start = System.currentTimeMillis();
+            t.hangUp();
+            // Carrier loss is waited command wait time.
+            assertTrue(System.currentTimeMillis() - start >= 300);
+            assertFalse(t.isConnected());
+            assertFalse(modem.isDataMode());
+            List<String> commands = modem.getCommands();
+            assertEquals("ATH0", commands.get(commands.size() - 1));
+            // Escape sequence is not left in the data.
+            assertEquals("", modem.getData());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Escape sequence is used without dropping DTR if modem doesn't accept
+     * AT&amp;D2.
+     */
+    public final void testDtrNotSupported() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setReply("AT&D2", "ERROR");
+        GXTerminal t = dial(modem);
+        try {
+            long start = System.currentTimeMillis();
+            t.hangUp();
+            // Carrier is not waited.
+            assertTrue(System.currentTimeMillis() - start < 300);
+            assertFalse(modem.isDataMode());
+            List<String> commands = modem.getCommands();
+            assertEquals("ATH0", commands.get(commands.size() - 1));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Call is ended when remote end has already hung up and ATH is answered
+     * with NO CARRIER.
+     */
+    public final void testNoCarrier() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        modem.setReply("ATH0", "NO CARRIER");
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        assertTrue(t.isConnected());
+        t.close();
+        assertFalse(t.isOpen());
+        assertFalse(modem.isOpen());
+        assertEquals("ATH0",
+                modem.getCommands().get(modem.getCommands().size() - 1));
+    }
+
+    /**
+     * Serial port is closed even if hang up fails.
+     */
+    public final void testCloseInterrupted() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        assertTrue(t.isConnected());
+        Thread.currentThread().interrupt();
+        try {
+            t.close();
+            fail("Interrupted hang up is not reported.");
+        } catch (RuntimeException ex) {
+            // Hang up is interrupted.
+        } finally {
+            Thread.interrupted();
+        }
+        assertFalse(t.isOpen());
+        assertFalse(t.isConnected());
+        assertFalse(modem.isOpen());
+    }
+}
@@ -0,0 +1,191 @@
+package gurux.terminal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for dial-in server.
+ */
+public class GXTerminalServerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXTerminalServerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXTerminalServerTest.class);
+    }
+
+    /**
+     * Handler is required.
+     */
+    public void testHandler() {
+        try {
+            new GXTerminalServer(null);
+            fail("Handler is required.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Amount of rings is checked.
+     */
+    public void testAutoAnswerRings() {
+        final GXTerminalServer server = new GXTerminalServer(new IGXCallHandler() {
+            @Override
+            public void onCall(final GXTerminal terminal, final String caller) {
+            }
+        });
+        assertEquals(0, server.getAutoAnswerRings());
+        server.setAutoAnswerRings(2);
+        assertEquals(2, server.getAutoAnswerRings());
+        try {
+            server.setAutoAnswerRings(-1);
+            fail("Invalid amount of rings.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+        assertEquals(0, server.getTerminals().length);
+        assertEquals(0, server.getCallCount());
+        server.close();
+    }
+
+    /**
+     * Wait until the call is hung up.
+     *
+     * @param server
+     *            Server.
+     * @param terminal
+     *            Terminal.
+     */
+    private static void waitHangUp(final GXTerminalServer server,
+            final GXTerminal terminal) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (server.getActiveCallCount() != 0 || terminal.isConnected()) {
+            assertTrue("Call is not hung up.",
+                    System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Incoming calls are answered with ATA and terminal waits for the next
+     * call after the handler returns.
+     */
+    public final void testAnswer() throws Exception {
+        final GXModemEmulator modem = new GXModemEmulator();
+        final GXTerminal t = GXModemInitializerTest.create(modem);
+        final Semaphore calls = new Semaphore(0);
+        final String[] callers = new String[2];
+        final GXTerminalServer server = new GXTerminalServer(new IGXCallHandler() {
+            private int count;
+
+            @Override
+            public void onCall(final GXTerminal terminal, final String caller) {
+                assertSame(t, terminal);
+                assertTrue(terminal.isConnected());
+                callers[count] = caller;
+                ++count;
+                terminal.send("data", null);
+                calls.release();
+            }
+        });
+        server.add(t);
+        server.start();
+        try {
+            assertTrue(t.isOpen());
+            assertFalse(t.isConnected());
+            List<String> commands = modem.getCommands();
+            assertTrue(commands.contains("AT+CLIP=1"));
+            assertTrue(commands.contains("ATS0=0"));
+            modem.inject("\r\nRING\r\n\r\n+CLIP: \"123456\",129\r\n");
+            assertTrue(calls.tryAcquire(5, TimeUnit.SECONDS));
+            waitHangUp(server, t);
+            assertFalse(modem.isDataMode());
+            assertEquals("data", modem.getData());
+            assertEquals("123456", callers[0]);
+            assertTrue(modem.getCommands().contains("ATH0"));
+            // Modem rings until the next call is answered.
+            while (!calls.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                modem.inject("\r\nRING\r\n");
+            }
+            waitHangUp(server, t);
+            assertEquals(2, server.getCallCount());
+            assertNull(callers[1]);
+            assertEquals(2, count(modem.getCommands(), "ATA"));
+        } finally {
+            server.close();
+        }
+        assertFalse(t.isOpen());
+        assertTrue(Arrays.equals(GXTerminal.DEFAULT_UNSOLICITED_PREFIXES,
+                t.getUnsolicitedPrefixes()));
+    }
+
+    /**
+     * Modem answers the call and handler is called when CONNECT is
+     * received.
+     */
+    public final void testAutoAnswer() throws Exception {
+        final GXModemEmulator modem = new GXModemEmulator();
+        final GXTerminal t = GXModemInitializerTest.create(modem);
+        final String[] prefixes = new String[] { "+CREG:" };
+        t.setUnsolicitedPrefixes(prefixes);
+        final Semaphore calls = new Semaphore(0);
+        final GXTerminalServer server = new GXTerminalServer(new IGXCallHandler() {
+            @Override
+            public void onCall(final GXTerminal terminal, final String caller) {
+                calls.release();
+            }
+        });
+        server.setAutoAnswerRings(1);
+        server.add(t);
+        server.start();
+        try {
+            assertTrue(modem.getCommands().contains("ATS0=1"));
+            modem.respond(0, "RING");
+            modem.respond(50, "CONNECT 9600");
+            assertTrue(calls.tryAcquire(5, TimeUnit.SECONDS));
+            waitHangUp(server, t);
+            assertEquals(1, server.getCallCount());
+            assertEquals(0, count(modem.getCommands(), "ATA"));
+        } finally {
+            server.close();
+        }
+        assertTrue(Arrays.equals(prefixes, t.getUnsolicitedPrefixes()));
+    }
+
+    /**
+     * Count how many times the command is sent.
+     *
+     * @param commands
+     *            Sent commands.
+     * @param command
+     *            Searched command.
+     * @return Amount of sent commands.
+     */
+    private static int count(final List<String> commands,
+            final String command) {
+        int count = 0;
+        for (String it : commands) {
+            if (it.equals(command)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,176 @@
+package gurux.terminal;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for input and output streams of the terminal.
+ */
+public class GXTerminalStreamTest extends TestCase {
+    /**
+     * Wait time in milliseconds.
+     */
+    private static final int WAIT_TIME = 1000;
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXTerminalStreamTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXTerminalStreamTest.class);
+    }
+
+    /**
+     * Read one byte in another thread.
+     *
+     * @param executor
+     *            Executor where read is made.
+     * @param in
+     *            Input stream.
+     * @return Future that is completed with the read byte.
+     */
+    private static Future<Integer> read(final ExecutorService executor,
+            final InputStream in) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return in.read();
+            }
+        });
+    }
+
+    /**
+     * Written bytes are sent to the serial port and received bytes are read
+     * from the input stream.
+     */
+    public final void testWriteAndRead() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXTransmitQueueTest.connect(modem);
+        try {
+            OutputStream out = t.getOutputStream();
+            out.write("request".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("request", modem.getData());
+            t.setReadTimeout(WAIT_TIME);
+            InputStream in = t.getInputStream();
+            modem.inject("reply");
+            byte[] buff = new byte[10];
+            int count = 0;
+            while (count != 5) {
+                count += in.read(buff, count, buff.length - count);
+            }
+            assertEquals("reply",
+                    new String(buff, 0, count, StandardCharsets.US_ASCII));
+            assertEquals(0, in.available());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Read throws InterruptedIOException when read timeout elapses.
+     */
+    public final void testReadTimeout() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXTransmitQueueTest.connect(modem);
+        try {
+            t.setReadTimeout(100);
+            InputStream in = t.getInputStream();
+            long start = System.currentTimeMillis();
+            try {
+                in.read();
+                fail("Read timeout is not elapsed.");
+            } catch (InterruptedIOException ex) {
+                // Nothing is received.
+            }
+            assertTrue(System.currentTimeMillis() - start >= 100);
+            modem.inject("a");
+            t.setReadTimeout(WAIT_TIME);
+            assertEquals('a', in.read());
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Read waits until data is received when read timeout is zero.
+     */
+    public final void testZeroTimeout() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXTransmitQueueTest.connect(modem);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            t.setReadTimeout(0);
+            Future<Integer> f = read(executor, t.getInputStream());
+            Thread.sleep(200);
+            assertFalse(f.isDone());
+            modem.inject("a");
+            assertEquals('a', f.get(WAIT_TIME, TimeUnit.MILLISECONDS)
+                    .intValue());
+        } finally {
+            t.close();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Closing the terminal ends the stream. Waiting reader gets end of
+     * stream.
+     */
+    public final void testCloseEndsStream() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXTransmitQueueTest.connect(modem);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            t.setReadTimeout(0);
+            InputStream in = t.getInputStream();
+            Future<Integer> f = read(executor, in);
+            Thread.sleep(100);
+            assertFalse(f.isDone());
+            t.close();
+            assertEquals(-1, f.get(WAIT_TIME, TimeUnit.MILLISECONDS)
+                    .intValue());
+            assertEquals(-1, in.read());
+        } finally {
+            t.close();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Input stream can be used when read buffer size is zero.
+     */
+    public final void testZeroReadBufferSize() throws Exception {
+        GXModemEmulator modem = new GXModemEmulator();
+        GXTerminal t = GXTransmitQueueTest.connect(modem);
+        try {
+            t.setReadBufferSize(0);
+            t.setReadTimeout(WAIT_TIME);
+            InputStream in = t.getInputStream();
+            modem.inject("ab");
+            assertEquals('a', in.read());
+            assertEquals('b', in.read());
+        } finally {
+            t.close();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for transmit queue.
+ */
+public class GXTransmitQueueTest extends TestCase {
+    /**
+     * Wait time in milliseconds.
+     */
+    private static final int WAIT_TIME = 1000;
+
+    /**
+     * Modem emulator that saves native writes of the data mode.
+     */
+    static class WriteRecorder extends GXModemEmulator {
+        /**
+         * Native writes in data mode.
+         */
+        private final List<String> writes = new ArrayList<String>();
+
+        /**
+         * @return Native writes in data mode.
+         */
+        final synchronized List<String> getWrites() {
+            return new ArrayList<String>(writes);
+        }
+
+        @Override
+        void write(final long handle, final byte[] value, final int timeout) {
+            if (isDataMode()) {
+                synchronized (this) {
+                    writes.add(new String(value, StandardCharsets.US_ASCII));
+                }
+            }
+            super.write(handle, value, timeout);
+        }
+    }
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXTransmitQueueTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXTransmitQueueTest.class);
+    }
+
+    /**
+     * Open connection to the modem emulator.
+     *
+     * @param modem
+     *            Modem emulator.
+     * @return Connected terminal.
+     */
+    static GXTerminal connect(final GXModemEmulator modem) throws Exception {
+        GXTerminal t = GXModemInitializerTest.create(modem);
+        t.open();
+        assertTrue(t.isConnected());
+        return t;
+    }
+
+    /**
+     * Wait until future is completed.
+     *
+     * @param future
+     *            Future.
+     * @return Amount of sent bytes.
+     */
+    static int waitSent(final CompletableFuture<Integer> future)
+            throws Exception {
+        return future.get(WAIT_TIME, TimeUnit.MILLISECONDS).intValue();
+    }
+
+    /**
+     * Messages that are queued within transmit delay are written with one
+     * native write.
+     */
+    public final void testCoalesce() throws Exception {
+        WriteRecorder modem = new WriteRecorder();
+        GXTerminal t = connect(modem);
+        try {
+            t.setTransmitBufferSize(100);
+            t.setTransmitDelay(100);
+            CompletableFuture<Integer> a = t.sendAsync("a");
+            CompletableFuture<Integer> b = t.sendAsync("bc");
+            CompletableFuture<Integer> c = t.sendAsync("d");
+            assertEquals(1, waitSent(a));
+            assertEquals(2, waitSent(b));
+            assertEquals(1, waitSent(c));
+            assertEquals(1, modem.getWrites().size());
+            assertEquals("abcd", modem.getWrites().get(0));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Queued message is written when it has waited transmit delay.
+     */
+    public final void testDelayFlush() throws Exception {
+        WriteRecorder modem = new WriteRecorder();
+        GXTerminal t = connect(modem);
+        try {
+            t.setTransmitBufferSize(100);
+            t.setTransmitDelay(200);
+            long start = System.currentTimeMillis();
+            CompletableFuture<Integer> a = t.sendAsync("a");
+            Thread.sleep(50);
+            assertTrue(modem.getWrites().isEmpty());
+            assertEquals(1, waitSent(a));
+            assertTrue(System.currentTimeMillis() - start >= 200);
+            assertEquals("a", modem.getWrites().get(0));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Queued messages are written without waiting the delay when transmit
+     * buffer size is reached. One write is never longer than the buffer
+     * size, but a message is not split.
+     */
+    public final void testBufferSizeFlush() throws Exception {
+        WriteRecorder modem = new WriteRecorder();
+        GXTerminal t = connect(modem);
+        try {
+            t.setTransmitBufferSize(4);
+            t.setTransmitDelay(WAIT_TIME * 10);
+            CompletableFuture<Integer> a = t.sendAsync("abc");
+            CompletableFuture<Integer> b = t.sendAsync("def");
+            assertEquals(3, waitSent(a));
+            assertEquals(3, waitSent(b));
+            List<String> writes = modem.getWrites();
+            assertEquals(2, writes.size());
+            assertEquals("abc", writes.get(0));
+            assertEquals("def", writes.get(1));
+            CompletableFuture<Integer> c = t.sendAsync("gh");
+            CompletableFuture<Integer> d = t.sendAsync("ij");
+            assertEquals(2, waitSent(c));
+            assertEquals(2, waitSent(d));
+            assertEquals("ghij", modem.getWrites().get(2));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Synchronous send is written after the asynchronous messages that are
+     * queued before it and it's not mixed with them.
+     */
+    public final void testWriteDirectOrder() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WriteRecorder modem = new WriteRecorder() {
+            @Override
+            void write(final long handle, final byte[] value,
+                    final int timeout) {
+                super.write(handle, value, timeout);
+                if (value.length == 1 && value[0] == 'a') {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        final GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<Integer> a = t.sendAsync("a");
+            assertTrue(blocked.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+            // Writer is writing a. b is queued.
+            CompletableFuture<Integer> b = t.sendAsync("b");
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    t.send("c", null);
+                }
+            });
+            thread.start();
+            Thread.sleep(100);
+            assertEquals(1, modem.getWrites().size());
+            release.countDown();
+            thread.join(WAIT_TIME);
+            assertEquals(1, waitSent(a));
+            assertEquals(1, waitSent(b));
+            List<String> writes = modem.getWrites();
+            assertEquals("a", writes.get(0));
+            assertEquals("b", writes.get(1));
+            assertEquals("c", writes.get(2));
+        } finally {
+            release.countDown();
+            t.close();
+        }
+    }
+
+    /**
+     * Modem emulator whose output buffer keeps the written bytes until they
+     * are sent.
+     */
+    static class OutputBuffer extends WriteRecorder {
+        /**
+         * Amount of bytes in the output buffer.
+         */
+        private int bytesToWrite;
+
+        /**
+         * @param value
+         *            Amount of bytes in the output buffer.
+         */
+        final synchronized void setBytesToWrite(final int value) {
+            bytesToWrite = value;
+        }
+
+        @Override
+        void write(final long handle, final byte[] value, final int timeout) {
+            boolean data = isDataMode();
+            super.write(handle, value, timeout);
+            if (data) {
+                synchronized (this) {
+                    bytesToWrite += value.length;
+                }
+            }
+        }
+
+        @Override
+        synchronized int getBytesToWrite(final long handle) {
+            return bytesToWrite;
+        }
+    }
+
+    /**
+     * Future of sendAsync is completed when the message has left the output
+     * buffer of the serial port.
+     */
+    public final void testDrainCompletion() throws Exception {
+        OutputBuffer modem = new OutputBuffer();
+        GXTerminal t = connect(modem);
+        try {
+            CompletableFuture<Integer> a = t.sendAsync("abcd");
+            CompletableFuture<Integer> b = t.sendAsync("ef");
+            Thread.sleep(100);
+            assertEquals("abcdef", modem.getData());
+            assertFalse(a.isDone());
+            assertFalse(b.isDone());
+            // First message is sent.
+            modem.setBytesToWrite(2);
+            assertEquals(4, waitSent(a));
+            Thread.sleep(100);
+            assertFalse(b.isDone());
+            modem.setBytesToWrite(0);
+            assertEquals(2, waitSent(b));
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Writer doesn't write while the output buffer is above the high
+     * watermark.
+     */
+    public final void testHighWatermark() throws Exception {
+        OutputBuffer modem = new OutputBuffer();
+        GXTerminal t = connect(modem);
+        try {
+            t.setTransmitHighWatermark(4);
+            modem.setBytesToWrite(10);
+            assertFalse(t.isWritable());
+            CompletableFuture<Integer> a = t.sendAsync("ab");
+            Thread.sleep(100);
+            assertTrue(modem.getWrites().isEmpty());
+            assertFalse(a.isDone());
+            modem.setBytesToWrite(3);
+            // Message is written when output buffer is below the watermark.
+            long end = System.currentTimeMillis() + WAIT_TIME;
+            while (modem.getWrites().isEmpty()
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals("ab", modem.getWrites().get(0));
+            assertFalse(t.isWritable());
+            modem.setBytesToWrite(0);
+            assertEquals(2, waitSent(a));
+            assertTrue(t.isWritable());
+        } finally {
+            modem.setBytesToWrite(0);
+            t.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package gurux.terminal;
+
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for unsolicited result code demultiplexer.
+ */
+public class GXUrcDemultiplexerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXUrcDemultiplexerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXUrcDemultiplexerTest.class);
+    }
+
+    /**
+     * Separate received text in command mode.
+     *
+     * @param urc
+     *            Demultiplexer.
+     * @param text
+     *            Received text.
+     * @return Text that is not unsolicited.
+     */
+    private static String process(final GXUrcDemultiplexer urc,
+            final String text) {
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        int len = urc.process(data, data.length);
+        return new String(urc.getOutput(), 0, len, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Search NO CARRIER from the received text in data mode.
+     *
+     * @param urc
+     *            Demultiplexer.
+     * @param text
+     *            Received text.
+     * @return Held text that is released.
+     */
+    private static String passThrough(final GXUrcDemultiplexer urc,
+            final String text) {
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        int len = urc.passThrough(data, data.length);
+        return new String(urc.getOutput(), 0, len, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Unsolicited result code is found when it's split to several reads.
+     */
+    public final void testSplit() {
+        GXUrcDemultiplexer urc = new GXUrcDemultiplexer(
+                GXTerminal.DEFAULT_UNSOLICITED_PREFIXES);
+        assertEquals("", process(urc, "\r\n+CR"));
+        assertTrue(urc.getResults().isEmpty());
+        assertEquals("", process(urc, "EG: 1,"));
+        assertEquals("", process(urc, "5\r"));
+        assertEquals(1, urc.getResults().size());
+        assertEquals("+CREG:", urc.getResults().get(0).getPrefix());
+        assertEquals("+CREG: 1,5", urc.getResults().get(0).getText());
+        urc.getResults().clear();
+        // Line feed of the result code is removed.
+        assertEquals("", process(urc, "\n"));
+        assertEquals("\r\nOK\r\n", process(urc, "\r\nOK\r\n"));
+        assertTrue(urc.getResults().isEmpty());
+    }
+
+    /**
+     * Unsolicited result code is removed from the reply of the command.
+     * Information line of the command is not unsolicited.
+     */
+    public final void testReply() {
+        GXUrcDemultiplexer urc = new GXUrcDemultiplexer(
+                GXTerminal.DEFAULT_UNSOLICITED_PREFIXES);
+        urc.setCommand(new GXAtCommand("AT+CSQ\r"));
+        assertEquals("\r\n+CSQ: 20,0\r\n\r\nOK\r\n",
+                process(urc, "\r\n+CSQ: 20,0\r\n\r\nRING\r\n\r\nOK\r\n"));
+        assertEquals(1, urc.getResults().size());
+        assertEquals("RING", urc.getResults().get(0).getText());
+        urc.getResults().clear();
+        urc.setCommand(null);
+        assertEquals("", process(urc, "\r\n+CSQ: 21,0\r\n"));
+        assertEquals(1, urc.getResults().size());
+    }
+
+    /**
+     * Start of the line is held until it's known if it's unsolicited.
+     */
+    public final void testHeld() {
+        GXUrcDemultiplexer urc = new GXUrcDemultiplexer(
+                GXTerminal.DEFAULT_UNSOLICITED_PREFIXES);
+        assertEquals("", process(urc, "\r\nRI"));
+        assertEquals("\r\nRIX\r\n", process(urc, "X\r\n"));
+        assertTrue(urc.getResults().isEmpty());
+    }
+
+    /**
+     * Data is not changed in data mode and held bytes are released when
+     * data mode starts.
+     */
+    public final void testDataMode() {
+        GXUrcDemultiplexer urc = new GXUrcDemultiplexer(
+                GXTerminal.DEFAULT_UNSOLICITED_PREFIXES);
+        assertEquals("", process(urc, "\r\n+C"));
+        assertEquals("\r\n+C", passThrough(urc, "\r\nRING\r\n+CREG: 1\r\n"));
+        assertTrue(urc.getResults().isEmpty());
+        assertEquals("", passThrough(urc, "data\r\nNO CAR"));
+        assertTrue(urc.getResults().isEmpty());
+        assertEquals("", passThrough(urc, "RIER\r\n"));
+        assertEquals(1, urc.getResults().size());
+        assertEquals("NO CARRIER", urc.getResults().get(0).getText());
+        urc.getResults().clear();
+        // Command mode starts from the beginning of the line.
+        assertEquals("", process(urc, "\r\nRING\r\n"));
+        assertEquals(1, urc.getResults().size());
+    }
+
+    /**
+     * NO CARRIER is not searched if it's not one of the prefixes.
+     */
+    public final void testDataModeWithoutNoCarrier() {
+        GXUrcDemultiplexer urc =
+                new GXUrcDemultiplexer(new String[] { "RING" });
+        assertEquals("", passThrough(urc, "\r\nNO CARRIER\r\n"));
+        assertTrue(urc.getResults().isEmpty());
+    }
+}
@@ -0,0 +1,235 @@
+package gurux.terminal.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import gurux.common.IGXMediaListener;
+import gurux.common.MediaStateEventArgs;
+import gurux.common.PropertyChangedEventArgs;
+import gurux.common.ReceiveEventArgs;
+import gurux.common.TraceEventArgs;
+import gurux.terminal.GXAsyncListener;
+import gurux.terminal.enums.OverflowPolicy;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for asynchronous listener.
+ */
+public class GXAsyncListenerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXAsyncListenerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXAsyncListenerTest.class);
+    }
+
+    /**
+     * Executor that runs the tasks when asked.
+     */
+    static class ManualExecutor implements Executor {
+        /**
+         * Queued tasks.
+         */
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        /**
+         * Run queued tasks.
+         */
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    /**
+     * Listener that saves the events.
+     */
+    static class TestListener implements IGXMediaListener {
+        /**
+         * Received data.
+         */
+        private final List<byte[]> received = new ArrayList<byte[]>();
+        /**
+         * Errors.
+         */
+        private final List<Exception> errors = new ArrayList<Exception>();
+        /**
+         * Changed properties.
+         */
+        private int properties;
+
+        @Override
+        public void onError(final Object sender, final Exception ex) {
+            errors.add(ex);
+        }
+
+        @Override
+        public void onReceived(final Object sender, final ReceiveEventArgs e) {
+            received.add((byte[]) e.getData());
+        }
+
+        @Override
+        public void onMediaStateChange(final Object sender,
+                final MediaStateEventArgs e) {
+        }
+
+        @Override
+        public void onTrace(final Object sender, final TraceEventArgs e) {
+        }
+
+        @Override
+        public void onPropertyChanged(final Object sender,
+                final PropertyChangedEventArgs e) {
+            ++properties;
+        }
+    }
+
+    /**
+     * Received data that is queued is delivered in one event.
+     */
+    public final void testBatch() {
+        ManualExecutor executor = new ManualExecutor();
+        TestListener target = new TestListener();
+        GXAsyncListener l = new GXAsyncListener(target, executor);
+        l.onReceived(this, new ReceiveEventArgs(new byte[] { 1 }, "COM1"));
+        l.onReceived(this, new ReceiveEventArgs(new byte[] { 2, 3 }, "COM1"));
+        l.onPropertyChanged(this, new PropertyChangedEventArgs("BaudRate"));
+        l.onReceived(this, new ReceiveEventArgs(new byte[] { 4 }, "COM1"));
+        assertEquals(4, l.getQueueDepth());
+        executor.runAll();
+        assertEquals(0, l.getQueueDepth());
+        assertEquals(4, l.getMaxQueueDepth());
+        assertEquals(1, l.getBatches());
+        assertEquals(2, target.received.size());
+        assertEquals(3, target.received.get(0).length);
+        assertEquals(3, target.received.get(0)[2]);
+        assertEquals(1, target.received.get(1).length);
+        assertEquals(1, target.properties);
+    }
+
+    /**
+     * Oldest event is removed when queue is full.
+     */
+    public final void testDropOldest() {
+        ManualExecutor executor = new ManualExecutor();
+        TestListener target = new TestListener();
+        GXAsyncListener l = new GXAsyncListener(target, executor, 2,
+                OverflowPolicy.DROP_OLDEST);
+        for (int pos = 0; pos != 3; ++pos) {
+            l.onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        }
+        executor.runAll();
+        assertEquals(2, target.properties);
+        assertEquals(1, l.getDroppedEvents());
+    }
+
+    /**
+     * Listener is notified with an error when queue is full.
+     */
+    public final void testError() {
+        ManualExecutor executor = new ManualExecutor();
+        TestListener target = new TestListener();
+        GXAsyncListener l = new GXAsyncListener(target, executor, 1,
+                OverflowPolicy.ERROR);
+        for (int pos = 0; pos != 3; ++pos) {
+            l.onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        }
+        executor.runAll();
+        assertEquals(1, target.properties);
+        assertEquals(1, target.errors.size());
+        assertEquals(2, l.getDroppedEvents());
+    }
+
+    /**
+     * Delivery continues when the listener fails also in the error handler.
+     */
+    public final void testFailingListener() {
+        ManualExecutor executor = new ManualExecutor();
+        final int[] properties = new int[1];
+        TestListener target = new TestListener() {
+            @Override
+            public void onError(final Object sender, final Exception ex) {
+                throw new RuntimeException("onError failed.");
+            }
+
+            @Override
+            public void onPropertyChanged(final Object sender,
+                    final PropertyChangedEventArgs e) {
+                ++properties[0];
+                throw new RuntimeException("onPropertyChanged failed.");
+            }
+        };
+        GXAsyncListener l = new GXAsyncListener(target, executor, 1,
+                OverflowPolicy.BLOCK);
+        l.onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        executor.runAll();
+        l.onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        executor.runAll();
+        assertEquals(2, properties[0]);
+        assertEquals(0, l.getQueueDepth());
+    }
+
+    /**
+     * Events that the listener causes while it handles an event are queued
+     * without waiting even if the queue is full.
+     */
+    public final void testBlockOnDeliveryThread() {
+        ManualExecutor executor = new ManualExecutor();
+        final GXAsyncListener[] l = new GXAsyncListener[1];
+        final int[] properties = new int[1];
+        TestListener target = new TestListener() {
+            @Override
+            public void onPropertyChanged(final Object sender,
+                    final PropertyChangedEventArgs e) {
+                if (++properties[0] == 1) {
+                    l[0].onPropertyChanged(this,
+                            new PropertyChangedEventArgs("Eop"));
+                    l[0].onPropertyChanged(this,
+                            new PropertyChangedEventArgs("Eop"));
+                }
+            }
+        };
+        l[0] = new GXAsyncListener(target, executor, 1, OverflowPolicy.BLOCK);
+        l[0].onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        executor.runAll();
+        assertEquals(3, properties[0]);
+        assertEquals(0, l[0].getDroppedEvents());
+    }
+
+    /**
+     * Listener is notified with an error when queue of the default
+     * constructor is full.
+     */
+    public final void testDefaultPolicy() {
+        ManualExecutor executor = new ManualExecutor();
+        TestListener target = new TestListener();
+        GXAsyncListener l = new GXAsyncListener(target, executor);
+        for (int pos = 0; pos != GXAsyncListener.DEFAULT_QUEUE_SIZE + 1;
+                ++pos) {
+            l.onPropertyChanged(this, new PropertyChangedEventArgs("Eop"));
+        }
+        executor.runAll();
+        assertEquals(GXAsyncListener.DEFAULT_QUEUE_SIZE, target.properties);
+        assertEquals(1, target.errors.size());
+        assertEquals(1, l.getDroppedEvents());
+    }
+}
@@ -0,0 +1,79 @@
+package gurux.terminal.java;
+
+import java.util.Arrays;
+import java.util.List;
+
+import gurux.common.enums.TraceTypes;
+import gurux.terminal.GXFlightRecord;
+import gurux.terminal.GXFlightRecorder;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for flight recorder.
+ */
+public class GXFlightRecorderTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXFlightRecorderTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXFlightRecorderTest.class);
+    }
+
+    /**
+     * Records are decoded in the recorded order.
+     */
+    public final void testDecode() {
+        GXFlightRecorder fr = new GXFlightRecorder(100);
+        byte[] data = new byte[] { 1, 2, 3, 4, 5 };
+        fr.record(TraceTypes.SENT, 0, data, 0, 5);
+        fr.record(TraceTypes.RECEIVED, 2, data, 1, 3);
+        List<GXFlightRecord> records = fr.decode();
+        assertEquals(2, records.size());
+        assertEquals(TraceTypes.SENT, records.get(0).getType());
+        assertTrue(Arrays.equals(data, records.get(0).getData()));
+        assertEquals(TraceTypes.RECEIVED, records.get(1).getType());
+        assertEquals(2, records.get(1).getState());
+        assertTrue(Arrays.equals(new byte[] { 2, 3, 4 },
+                records.get(1).getData()));
+        assertEquals(2, GXFlightRecorder.decode(fr.dump()).size());
+    }
+
+    /**
+     * Oldest records are overwritten when the ring is full.
+     */
+    public final void testOverwrite() {
+        // Room for two records with 10 bytes.
+        GXFlightRecorder fr = new GXFlightRecorder(50);
+        byte[] data = new byte[10];
+        for (int pos = 0; pos != 7; ++pos) {
+            Arrays.fill(data, (byte) pos);
+            fr.record(TraceTypes.SENT, 0, data, 0, data.length);
+        }
+        List<GXFlightRecord> records = fr.decode();
+        assertEquals(2, records.size());
+        assertEquals(5, records.get(0).getData()[0]);
+        assertEquals(6, records.get(1).getData()[9]);
+    }
+
+    /**
+     * Too long data is truncated to the ring size.
+     */
+    public final void testTruncate() {
+        GXFlightRecorder fr = new GXFlightRecorder(30);
+        fr.record(TraceTypes.RECEIVED, 0, new byte[100], 0, 100);
+        assertEquals(1, fr.getCount());
+        assertEquals(16, fr.decode().get(0).getData().length);
+    }
+}
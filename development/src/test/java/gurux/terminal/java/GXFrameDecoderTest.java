@@ -0,0 +1,109 @@
+package gurux.terminal.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gurux.terminal.GXDelimiterFrameDecoder;
+import gurux.terminal.GXHdlcFrameDecoder;
+import gurux.terminal.GXLengthFieldFrameDecoder;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for frame decoders.
+ */
+public class GXFrameDecoderTest extends TestCase {
+    /**
+     * SNRM frame.
+     */
+    private static final byte[] SNRM = new byte[] { 0x7E, (byte) 0xA0, 0x07,
+            0x03, 0x21, (byte) 0x93, 0x0F, 0x01, 0x7E };
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXFrameDecoderTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXFrameDecoderTest.class);
+    }
+
+    /**
+     * HDLC frames are found from split and noisy data.
+     */
+    public final void testHdlc() {
+        GXHdlcFrameDecoder decoder = new GXHdlcFrameDecoder();
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] data = new byte[2 + 2 * SNRM.length];
+        data[0] = 1;
+        data[1] = 2;
+        System.arraycopy(SNRM, 0, data, 2, SNRM.length);
+        System.arraycopy(SNRM, 0, data, 2 + SNRM.length, SNRM.length);
+        decoder.decode(data, 0, 6, frames);
+        assertEquals(0, frames.size());
+        decoder.decode(data, 6, data.length - 6, frames);
+        assertEquals(2, frames.size());
+        assertTrue(Arrays.equals(SNRM, frames.get(0)));
+        assertTrue(Arrays.equals(SNRM, frames.get(1)));
+    }
+
+    /**
+     * HDLC frame with invalid FCS is discarded.
+     */
+    public final void testHdlcInvalidFcs() {
+        GXHdlcFrameDecoder decoder = new GXHdlcFrameDecoder();
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] data = SNRM.clone();
+        data[6] = 0;
+        decoder.decode(data, 0, data.length, frames);
+        assertEquals(0, frames.size());
+        assertEquals(1, decoder.getInvalidFrames());
+        decoder.decode(SNRM, 0, SNRM.length, frames);
+        assertEquals(1, frames.size());
+    }
+
+    /**
+     * Wrapper frames are split using length field.
+     */
+    public final void testLengthField() {
+        GXLengthFieldFrameDecoder decoder =
+                new GXLengthFieldFrameDecoder(6, 2, 0);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] data = new byte[] { 0, 1, 0, 1, 0, 1, 0, 2, 0x61, 0x62, 0, 1,
+                0, 1, 0, 1, 0, 1, 0x63 };
+        decoder.decode(data, 0, 9, frames);
+        assertEquals(0, frames.size());
+        decoder.decode(data, 9, data.length - 9, frames);
+        assertEquals(2, frames.size());
+        assertEquals(10, frames.get(0).length);
+        assertEquals(9, frames.get(1).length);
+    }
+
+    /**
+     * Frames are split with delimiter.
+     */
+    public final void testDelimiter() {
+        GXDelimiterFrameDecoder decoder = new GXDelimiterFrameDecoder("\r\n");
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] data = "OK\r\nRING\r\n+CSQ".getBytes();
+        decoder.decode(data, 0, 3, frames);
+        assertEquals(0, frames.size());
+        decoder.decode(data, 3, data.length - 3, frames);
+        assertEquals(2, frames.size());
+        assertEquals("OK\r\n", new String(frames.get(0)));
+        assertEquals("RING\r\n", new String(frames.get(1)));
+        frames.clear();
+        decoder.decode("\r\n".getBytes(), 0, 2, frames);
+        assertEquals("+CSQ\r\n", new String(frames.get(0)));
+    }
+}
@@ -0,0 +1,159 @@
+package gurux.terminal.java;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import gurux.terminal.GXModemProfile;
+import gurux.terminal.GXModemProfileCache;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for modem profile cache.
+ */
+public class GXModemProfileCacheTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXModemProfileCacheTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXModemProfileCacheTest.class);
+    }
+
+    /**
+     * Profile is not used if modem is changed.
+     */
+    public final void testIdentity() {
+        GXModemProfileCache cache = new GXModemProfileCache();
+        cache.put(new GXModemProfile("COM1", "123"));
+        assertNotNull(cache.get("COM1", "123"));
+        assertNull(cache.get("COM1", "456"));
+        assertNull(cache.get("COM1", "123"));
+    }
+
+    /**
+     * Profile expires.
+     */
+    public final void testTimeToLive() {
+        GXModemProfileCache cache = new GXModemProfileCache();
+        GXModemProfile p = new GXModemProfile("COM1", "123");
+        cache.put(p);
+        p.setUpdated(System.currentTimeMillis()
+                - GXModemProfileCache.DEFAULT_TIME_TO_LIVE - 1);
+        assertNull(cache.get("COM1", "123"));
+    }
+
+    /**
+     * Profiles are saved to the file.
+     * 
+     * @throws IOException
+     *             Reading the file failed.
+     */
+    public final void testFile() throws IOException {
+        File file = File.createTempFile("gurux", ".properties");
+        try {
+            GXModemProfileCache cache = new GXModemProfileCache(file);
+            GXModemProfile p = new GXModemProfile("/dev/ttyUSB0", "123");
+            p.setModel("MC55");
+            p.setErrorMode(1);
+            p.setPinSupported(Boolean.TRUE);
+            p.setPinReady(true);
+            p.setConcatenation(false);
+            cache.put(p);
+            cache = new GXModemProfileCache(file);
+            p = cache.get("/dev/ttyUSB0", "123");
+            assertNotNull(p);
+            assertEquals("MC55", p.getModel());
+            assertNull(p.getFirmware());
+            assertEquals(1, p.getErrorMode());
+            assertEquals(Boolean.TRUE, p.getPinSupported());
+            assertTrue(p.getPinReady());
+            assertEquals(Boolean.FALSE, p.getConcatenation());
+        } finally {
+            file.delete();
+            new File(file.getPath() + ".lock").delete();
+        }
+    }
+
+    /**
+     * Profiles that are saved from several threads are all in the file and
+     * temporary files are removed.
+     */
+    public final void testConcurrentSave() throws Exception {
+        final File file = File.createTempFile("gurux", ".properties");
+        try {
+            final GXModemProfileCache cache = new GXModemProfileCache(file);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int pos = 0; pos != 8; ++pos) {
+                final String port = "COM" + String.valueOf(pos);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int index = 0; index != 20; ++index) {
+                            cache.put(new GXModemProfile(port, "123"));
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread it : threads) {
+                it.join();
+            }
+            GXModemProfileCache tmp = new GXModemProfileCache(file);
+            for (int pos = 0; pos != 8; ++pos) {
+                assertNotNull(tmp.get("COM" + String.valueOf(pos), "123"));
+            }
+            File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+            for (File it : files) {
+                assertFalse(it.getName().startsWith(file.getName())
+                        && it.getName().endsWith(".tmp"));
+            }
+        } finally {
+            file.delete();
+            new File(file.getPath() + ".lock").delete();
+        }
+    }
+
+    /**
+     * Invalid profile in the file is skipped.
+     * 
+     * @throws IOException
+     *             Reading the file failed.
+     */
+    public final void testCorruptFile() throws IOException {
+        File file = File.createTempFile("gurux", ".properties");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(("COM1.identity=123\nCOM1.errorMode=x\n"
+                        + "COM2.identity=456\nCOM2.updated=y\n"
+                        + "COM3.identity=789\nCOM3.errorMode=1\n")
+                                .getBytes(StandardCharsets.ISO_8859_1));
+            }
+            GXModemProfileCache cache = new GXModemProfileCache(file);
+            cache.setTimeToLive(Long.MAX_VALUE);
+            assertNull(cache.get("COM1", "123"));
+            assertNull(cache.get("COM2", "456"));
+            GXModemProfile p = cache.get("COM3", "789");
+            assertNotNull(p);
+            assertEquals(1, p.getErrorMode());
+        } finally {
+            file.delete();
+        }
+    }
+}
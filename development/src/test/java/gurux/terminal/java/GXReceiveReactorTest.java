@@ -0,0 +1,280 @@
+package gurux.terminal.java;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import gurux.io.NativeCode;
+import gurux.terminal.GXReceiveReactor;
+import gurux.terminal.GXTerminal;
+import gurux.terminal.IGXReactorChannel;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for receive reactor.
+ */
+public class GXReceiveReactorTest extends TestCase {
+    /**
+     * Python script that opens pseudo-terminals, prints the names of the
+     * slave ends and echoes bytes that are written to them. Script ends when
+     * standard input is closed.
+     */
+    private static final String ECHO_SCRIPT = "import os, select, sys, tty\n"
+            + "masters = []\n"
+            + "for i in range(int(sys.argv[1])):\n"
+            + "    m, s = os.openpty()\n"
+            + "    tty.setraw(s)\n"
+            + "    masters.append(m)\n"
+            + "    print(os.ttyname(s))\n"
+            + "sys.stdout.flush()\n"
+            + "while True:\n"
+            + "    r = select.select(masters + [0], [], [])[0]\n"
+            + "    if 0 in r and not os.read(0, 1):\n"
+            + "        break\n"
+            + "    for m in r:\n"
+            + "        if m != 0:\n"
+            + "            os.write(m, os.read(m, 1024))\n";
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXReceiveReactorTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXReceiveReactorTest.class);
+    }
+
+    /**
+     * Channel that has given amount of bytes to read.
+     */
+    static class TestChannel implements IGXReactorChannel {
+        /**
+         * Bytes waiting.
+         */
+        private final AtomicInteger waiting = new AtomicInteger();
+        /**
+         * Bytes read.
+         */
+        private final AtomicInteger read = new AtomicInteger();
+        /**
+         * Error that occurred in the reactor thread. Error is checked in the
+         * test thread, because failure is not reported from other threads.
+         */
+        private final AtomicReference<RuntimeException> error =
+                new AtomicReference<RuntimeException>();
+
+        @Override
+        public int getBytesToRead() {
+            return waiting.get();
+        }
+
+        @Override
+        public void onReadable() {
+            read.addAndGet(waiting.getAndSet(0));
+        }
+
+        @Override
+        public void onError(final RuntimeException ex) {
+            error.compareAndSet(null, ex);
+        }
+    }
+
+    /**
+     * Channel that reads a serial port with the native code.
+     */
+    static class PortChannel extends TestChannel {
+        /**
+         * Serial port handle.
+         */
+        private final long handle;
+        /**
+         * Closing handle.
+         */
+        private final long closing;
+
+        /**
+         * Constructor.
+         *
+         * @param portName
+         *            Serial port name.
+         */
+        PortChannel(final String portName) {
+            long[] tmp = new long[1];
+            handle = NativeCode.openSerialPort(portName, tmp);
+            closing = tmp[0];
+        }
+
+        @Override
+        public int getBytesToRead() {
+            return NativeCode.getBytesToRead(handle);
+        }
+
+        @Override
+        public void onReadable() {
+            super.read.addAndGet(NativeCode.read(handle, 100, closing).length);
+        }
+
+        /**
+         * Close the serial port.
+         */
+        final void close() {
+            NativeCode.closeSerialPort(handle, closing);
+        }
+    }
+
+    /**
+     * Wait until channels have read the bytes. Errors of the reactor threads
+     * are checked here.
+     *
+     * @param channels
+     *            Channels.
+     * @param expected
+     *            Expected amount of read bytes for each channel.
+     * @throws InterruptedException
+     *             Test is interrupted.
+     */
+    private static void waitRead(final TestChannel[] channels,
+            final int expected) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        for (TestChannel it : channels) {
+            while (it.read.get() != expected
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            assertNull(it.error.get());
+            assertEquals(expected, it.read.get());
+        }
+    }
+
+    /**
+     * Many channels are serviced from few threads.
+     * 
+     * @throws InterruptedException
+     *             Test is interrupted.
+     */
+    public final void testChannels() throws InterruptedException {
+        TestChannel[] channels = new TestChannel[200];
+        try (GXReceiveReactor reactor = new GXReceiveReactor(2)) {
+            for (int pos = 0; pos != channels.length; ++pos) {
+                channels[pos] = new TestChannel();
+                reactor.register(channels[pos]);
+            }
+            assertEquals(channels.length, reactor.getChannelCount());
+            for (int round = 0; round != 10; ++round) {
+                for (TestChannel it : channels) {
+                    it.waiting.addAndGet(3);
+                }
+                Thread.sleep(20);
+            }
+            waitRead(channels, 30);
+            for (TestChannel it : channels) {
+                reactor.unregister(it);
+            }
+            assertEquals(0, reactor.getChannelCount());
+        }
+    }
+
+    /**
+     * Channel that fails is reported once and it's not polled again.
+     * 
+     * @throws InterruptedException
+     *             Test is interrupted.
+     */
+    public final void testError() throws InterruptedException {
+        final AtomicInteger polls = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        IGXReactorChannel failing = new IGXReactorChannel() {
+            @Override
+            public int getBytesToRead() {
+                polls.incrementAndGet();
+                throw new RuntimeException("getBytesToRead failed.");
+            }
+
+            @Override
+            public void onReadable() {
+            }
+
+            @Override
+            public void onError(final RuntimeException ex) {
+                errors.incrementAndGet();
+            }
+        };
+        try (GXReceiveReactor reactor = new GXReceiveReactor(1, 1)) {
+            reactor.register(failing);
+            long end = System.currentTimeMillis() + 5000;
+            while (errors.get() == 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            assertEquals(1, errors.get());
+            assertEquals(1, polls.get());
+            assertEquals(0, reactor.getChannelCount());
+        }
+    }
+
+    /**
+     * Serial ports that are opened to pseudo-terminals are read from the
+     * reactor threads. Test is run only on Linux when the native library is
+     * available and Python can open pseudo-terminals.
+     */
+    public final void testPseudoTerminals() throws Exception {
+        if (!System.getProperty("os.name").toLowerCase().startsWith("linux")) {
+            return;
+        }
+        try {
+            // Load the native library.
+            GXTerminal.getPortNames();
+        } catch (RuntimeException | UnsatisfiedLinkError ex) {
+            return;
+        }
+        final int count = 8;
+        Process echo;
+        try {
+            echo = new ProcessBuilder("python3", "-c", ECHO_SCRIPT,
+                    String.valueOf(count)).start();
+        } catch (IOException ex) {
+            return;
+        }
+        PortChannel[] channels = new PortChannel[count];
+        try (GXReceiveReactor reactor = new GXReceiveReactor(2)) {
+            BufferedReader names = new BufferedReader(new InputStreamReader(
+                    echo.getInputStream(), StandardCharsets.US_ASCII));
+            for (int pos = 0; pos != count; ++pos) {
+                String name = names.readLine();
+                assertNotNull(name);
+                channels[pos] = new PortChannel(name);
+                reactor.register(channels[pos]);
+            }
+            for (int round = 0; round != 10; ++round) {
+                for (PortChannel it : channels) {
+                    NativeCode.write(it.handle, "abc".getBytes(), 1000);
+                }
+                Thread.sleep(20);
+            }
+            waitRead(channels, 30);
+            for (PortChannel it : channels) {
+                reactor.unregister(it);
+            }
+        } finally {
+            for (PortChannel it : channels) {
+                if (it != null) {
+                    it.close();
+                }
+            }
+            echo.destroy();
+        }
+    }
+}
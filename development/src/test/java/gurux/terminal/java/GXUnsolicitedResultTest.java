@@ -0,0 +1,64 @@
+package gurux.terminal.java;
+
+import gurux.terminal.GXUnsolicitedResult;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for unsolicited result code parsing.
+ */
+public class GXUnsolicitedResultTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXUnsolicitedResultTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXUnsolicitedResultTest.class);
+    }
+
+    /**
+     * Result code without parameters.
+     */
+    public void testRing() {
+        GXUnsolicitedResult r = new GXUnsolicitedResult("RING", "RING");
+        assertEquals("RING", r.getPrefix());
+        assertEquals("RING", r.getText());
+        assertEquals(0, r.getParameters().length);
+    }
+
+    /**
+     * Parameters are separated with comma.
+     */
+    public void testParameters() {
+        GXUnsolicitedResult r =
+                new GXUnsolicitedResult("+CREG:", "+CREG: 1,\"00C3\",\"0010\"");
+        assertEquals("+CREG:", r.getPrefix());
+        String[] p = r.getParameters();
+        assertEquals(3, p.length);
+        assertEquals("1", p[0]);
+        assertEquals("00C3", p[1]);
+        assertEquals("0010", p[2]);
+    }
+
+    /**
+     * Comma inside quotes does not separate parameters.
+     */
+    public void testQuoted() {
+        GXUnsolicitedResult r =
+                new GXUnsolicitedResult("+CMTI:", "+CMTI: \"SM,ME\",3");
+        String[] p = r.getParameters();
+        assertEquals(2, p.length);
+        assertEquals("SM,ME", p[0]);
+        assertEquals("3", p[1]);
+    }
+}